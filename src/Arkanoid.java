@@ -9,7 +9,13 @@ import java.util.List;
 import java.util.ArrayList;
 
 import biuoop.GUI;
+import biuoop.KeyboardSensor;
 import game.GameFlow;
+import game.GameSettings;
+import game.animation.AnimationRunner;
+import game.animation.Display;
+import game.animation.GuiDisplay;
+import game.animation.HeadlessDisplay;
 import game.axes.Counter;
 import game.axes.Point;
 import game.axes.Rectangle;
@@ -18,6 +24,8 @@ import game.levels.DirectHit;
 import game.levels.FinalFour;
 import game.levels.Green3;
 import game.levels.WideEasy;
+import game.profiling.FrameProfiler;
+import game.sprites.HeadlessDrawSurface;
 
 /**
  * The class create new game of arkanoid.
@@ -43,6 +51,21 @@ public class Arkanoid {
         userChoices.put("3d", null);    // key: 3d               val: null will be treated as false, otherwise true
         userChoices.put("lvl", "1234"); // key: levels or lvl    val: string
         userChoices.put("h", null);     // key: help or h or ?   val: null will be treated as false, otherwise true
+        userChoices.put("broadphase", GameSettings.GRID_BROADPHASE); // key: broadphase   val: grid / bvh / linear
+        userChoices.put("swept", null); // key: swept            val: null will be treated as false, otherwise true
+        userChoices.put("events", null); // key: events          val: null will be treated as false, otherwise true
+        userChoices.put("substeps", "1"); // key: substeps       val: int
+        userChoices.put("parallel", null); // key: parallel      val: null will be treated as false, otherwise true
+        userChoices.put("dirty", null); // key: dirty            val: null will be treated as false, otherwise true
+        userChoices.put("batched", null); // key: batched        val: null will be treated as false, otherwise true
+        userChoices.put("pipelined", null); // key: pipelined    val: null will be treated as false, otherwise true
+        userChoices.put("tps", "60");   // key: tps              val: int
+        userChoices.put("fps", "60");   // key: fps              val: int
+        userChoices.put("catchup", "4"); // key: catchup         val: int
+        userChoices.put("skip", "0");   // key: skip             val: int
+        userChoices.put("profile", null); // key: profile        val: null will be treated as false, otherwise true
+        userChoices.put("headless", null); // key: headless      val: null = gui window, otherwise null / image / count
+        userChoices.put("maxframes", "100000"); // key: maxframes val: long, 0 = no limit [only headless]
         for (String str : args) {
             // remove leading char and turn to lower
             str = str.toLowerCase().replace("-", "").replace("/", "");
@@ -65,18 +88,33 @@ public class Arkanoid {
             System.out.println("    hit the blocks with the balls until the level is clear");
             System.out.println("    move the paddle with ARROWS or 'WASD' to avoid the balls from falling down");
             System.out.println("    hit 'P' to pause, and SPACE to continue");
-            System.out.println("    each level start with only enabling left/right but you can enable up/down with 'U'");
+            System.out.println("    each level start with only left/right enabled, you can enable up/down with 'U'");
             System.out.println("Using ant with given 'build.xml'");
             System.out.println("    ant clean");
             System.out.println("    ant compile");
-            System.out.println("    ant run [-Dargs=\"[--help] [--levels=(1|2|3|4)*] [--lives=7] [--3d]\"]");
+            System.out.println("    ant run [-Dargs=\"[--help] [--levels=(1|2|3|4)*] [--lives=7] [--3d] [...]\"]");
             System.out.println("Running command:");
-            System.out.println("    java -jar Arkanoid.jar [--help] [--levels=(1|2|3|4)*] [--lives=7] [--3d]");
+            System.out.println("    java -jar Arkanoid.jar [--help] [--levels=(1|2|3|4)*] [--lives=7] [--3d] [...]");
             System.out.println("${args}:");
             System.out.println("    --help  --h  --?              show this msg");
-            System.out.println("    --levels=12  --lvl=334        sequence of levels to be played [there are 1-4 lvls]");
+            System.out.println("    --levels=12  --lvl=334        sequence of levels to play [there are 1-4 lvls]");
             System.out.println("    --lives=10   --live=7         lives for the game, positive integer");
+            System.out.println("    --parallel                    collision queries of the balls run in parallel");
             System.out.println("    --3d                          3D view");
+            System.out.println("    --broadphase=grid             collision index: grid (default) / bvh / linear");
+            System.out.println("    --swept                       balls collide as moving circles (with radius)");
+            System.out.println("    --events                      event-driven physics (impact found once per bounce)");
+            System.out.println("    --substeps=1                  max hits of a ball in one frame, positive integer");
+            System.out.println("    --dirty                       redraw only the changed regions of the screen");
+            System.out.println("    --batched                     record the drawing and replay it batched by color");
+            System.out.println("    --pipelined                   draw the frames by separate render thread");
+            System.out.println("    --tps=60                      simulation ticks per second, positive integer");
+            System.out.println("    --fps=60                      drawn frames per second (smooth between ticks)");
+            System.out.println("    --catchup=4                   max late ticks run at once before a frame is drawn");
+            System.out.println("    --skip=0                      max frames in a row not drawn while ticks are late");
+            System.out.println("    --profile                     measure the frame phases, print them at exit");
+            System.out.println("    --headless[=null|image]       run without window, count the drawing calls by type");
+            System.out.println("    --max-frames=100000           headless run ends after it shows them, 0 = no limit");
             return;
         }
         int borderThick = 30;
@@ -84,9 +122,36 @@ public class Arkanoid {
         int winHeight = 600;
         int lives = Integer.parseInt(userChoices.get("live"));
         boolean is3D = userChoices.get("3d") != null;
-        // create new gui
-        GUI gui = new GUI("Arkanoid", winWidth, winHeight);
-        GameFlow gameFlow = new GameFlow(gui, new Counter(), new Counter(lives), borderThick, is3D);
+        GameSettings settings = new GameSettings();
+        settings.setBroadphase(userChoices.get("broadphase"));
+        settings.setSweptCollision(userChoices.get("swept") != null);
+        settings.setEventDriven(userChoices.get("events") != null);
+        settings.setSubsteps(Integer.parseInt(userChoices.get("substeps")));
+        settings.setParallel(userChoices.get("parallel") != null);
+        settings.setDirtyRegions(userChoices.get("dirty") != null);
+        settings.setBatchedRendering(userChoices.get("batched") != null);
+        settings.setPipelinedRendering(userChoices.get("pipelined") != null);
+        settings.setTicksPerSecond(Integer.parseInt(userChoices.get("tps")));
+        settings.setFramesPerSecond(Integer.parseInt(userChoices.get("fps")));
+        settings.setMaxCatchUpTicks(Integer.parseInt(userChoices.get("catchup")));
+        settings.setMaxSkippedFrames(Integer.parseInt(userChoices.get("skip")));
+        FrameProfiler.setEnabled(userChoices.get("profile") != null);
+        // create new gui, or headless display that counts [and draws on image / ignores] the drawing
+        Display display;
+        String headless = userChoices.get("headless");
+        if (headless == null) {
+            display = new GuiDisplay(new GUI("Arkanoid", winWidth, winHeight));
+        } else {
+            int mode = headless.equals("null") ? HeadlessDisplay.NULL_SINK
+                       : headless.equals("image") ? HeadlessDisplay.RASTERIZING : HeadlessDisplay.COUNTING;
+            HeadlessDisplay headlessDisplay = new HeadlessDisplay(winWidth, winHeight, mode);
+            // nobody plays, so the game ends when the balls fall, and the end screen is stopped by tapping space
+            headlessDisplay.getHeadlessKeyboard().tap(KeyboardSensor.SPACE_KEY);
+            // the balls may bounce forever without clearing the level, so the run ends after the max frames
+            headlessDisplay.setMaxFrames(Long.parseLong(userChoices.get("maxframes")));
+            display = headlessDisplay;
+        }
+        GameFlow gameFlow = new GameFlow(display, new Counter(), new Counter(lives), borderThick, is3D, settings);
 
         // the blocks should be within the follow rectangle, because outside it there will be the border Blocks
         Rectangle rect = new Rectangle(new Point(borderThick, 2 * borderThick),
@@ -125,6 +190,45 @@ public class Arkanoid {
 
         gameFlow.runLevels(lvlsInfo);
         // close the gui afterwards
-        gui.close();
+        display.close();
+        if (display instanceof HeadlessDisplay) {
+            printDrawingCounts((HeadlessDisplay) display);
+        }
+        if (FrameProfiler.isEnabled()) {
+            printProfile(gameFlow.getRunner());
+        }
+    }
+
+    /**
+     * Print the durations of the phases of the frames, and how much frames were late / skipped.
+     *
+     * @param runner the animation runner that ran the game, may be null
+     */
+    private static void printProfile(AnimationRunner runner) {
+        FrameProfiler.dump(System.out);
+        if (runner != null) {
+            System.out.println("late frames: " + runner.getLateFrames() + "  skipped frames: "
+                               + runner.getSkippedFrames() + "  dropped ticks: " + runner.getDroppedTicks());
+        }
+    }
+
+    /**
+     * Print how much frames were run on headless display, and how much drawing calls of each type were made.
+     *
+     * @param display the headless display the game was run on
+     */
+    private static void printDrawingCounts(HeadlessDisplay display) {
+        System.out.println("frames: " + display.getFrames());
+        if (display.isFinished()) {
+            System.out.println("    the game was ended by the max frames");
+        }
+        if (display.getLastFrame() != null && display.getLastFrame().getImage() != null) {
+            // the same frames give the same checksum, whatever the drawing settings (like --dirty --pipelined) are
+            System.out.println("frames checksum: " + Long.toHexString(display.getFrameChecksum()));
+        }
+        System.out.println("primitives: " + display.getTotalPrimitiveCount());
+        for (int type = 0; type < HeadlessDrawSurface.TYPE_COUNT; type++) {
+            System.out.println("    " + HeadlessDrawSurface.getTypeName(type) + ": " + display.getTotalCount(type));
+        }
     }
 }
\ No newline at end of file
@@ -10,15 +10,18 @@ import game.animation.Animation;
 import game.animation.GameOverScreen;
 import game.animation.YouWinScreen;
 import game.animation.AnimationRunner;
+import game.animation.Display;
+import game.animation.GuiDisplay;
 import game.animation.KeyPressStoppableAnimation;
 import game.axes.Counter;
+import game.profiling.LevelEvent;
 
 /** The class to run levels one after one, and show YouWinScreen / GameOverScreen at the end.
-  * The class won't close the given gui.
+  * The class won't close the given gui / display.
   */
 public class GameFlow {
-    /** Gui to run the levels within. */
-    private GUI gui;
+    /** Display (gui window or headless) to run the levels within. */
+    private Display display;
     /** User Score. */
     private Counter score;
     /** User 'lives'. */
@@ -27,6 +30,10 @@ public class GameFlow {
     private int borderThick;
     /** Property to decide if the animation will be '3D'. */
     private boolean is3D;
+    /** The optional settings of the game. */
+    private GameSettings settings;
+    /** The animation runner of the last runLevels(), null before it. */
+    private AnimationRunner runner;
 
     /**
      * Constructor with adjustable setting of the start point of the game.
@@ -39,11 +46,54 @@ public class GameFlow {
      * @param is3D decide if the animation will be '3D'.
      */
     public GameFlow(GUI gui, Counter score, Counter lives, int borderThick, boolean is3D) {
-        this.gui = gui;
+        this(gui, score, lives, borderThick, is3D, new GameSettings());
+    }
+
+    /**
+     * Constructor with adjustable setting of the start point of the game, and optional settings.
+     * The given gui must be created before, and should be close manually.(after runLevels()).
+     *
+     * @param gui to draw the animation within.
+     * @param score the start score of the user.(usually should be set to 0).
+     * @param lives of the user in the game. should be positive.
+     * @param borderThick which represnts the border blocks thick. shouldn't be negative.
+     * @param is3D decide if the animation will be '3D'.
+     * @param settings the optional settings of the game.
+     */
+    public GameFlow(GUI gui, Counter score, Counter lives, int borderThick, boolean is3D, GameSettings settings) {
+        this(new GuiDisplay(gui), score, lives, borderThick, is3D, settings);
+    }
+
+    /**
+     * Constructor with adjustable setting of the start point of the game, and optional settings,
+     * on any display (gui window or headless).
+     * The given display must be created before, and should be close manually.(after runLevels()).
+     *
+     * @param display to draw the animation within.
+     * @param score the start score of the user.(usually should be set to 0).
+     * @param lives of the user in the game. should be positive.
+     * @param borderThick which represnts the border blocks thick. shouldn't be negative.
+     * @param is3D decide if the animation will be '3D'.
+     * @param settings the optional settings of the game.
+     */
+    public GameFlow(Display display, Counter score, Counter lives, int borderThick, boolean is3D,
+                    GameSettings settings) {
+        this.display = display;
         this.score = score;
         this.lives = lives;
         this.borderThick = borderThick;
         this.is3D = is3D;
+        this.settings = settings;
+        this.runner = null;
+    }
+
+    /**
+     * Get the animation runner that ran the last levels - for its counters of late / skipped frames.
+     *
+     * @return the runner of the last runLevels(), or null if no levels were run
+     */
+    public AnimationRunner getRunner() {
+        return this.runner;
     }
 
     /**
@@ -57,30 +107,47 @@ public class GameFlow {
         if (levels == null) {
             return;
         }
-        // create animation runner with default value = 60 frames per seconds
-        AnimationRunner runner = new AnimationRunner(this.gui, 60);
+        // create animation runner with the ticks & frames rates of the settings [and render thread if pipelined]
+        AnimationRunner runner = new AnimationRunner(this.display, this.settings.getTicksPerSecond(),
+                                                     this.settings.getFramesPerSecond(),
+                                                     this.settings.isPipelinedRendering());
+        runner.setMaxCatchUpTicks(this.settings.getMaxCatchUpTicks());
+        runner.setMaxSkippedFrames(this.settings.getMaxSkippedFrames());
+        this.runner = runner;
 
         for (LevelInformation levelInfo : levels) {
             if (levelInfo == null) {
                 continue;
             }
+            LevelEvent event = new LevelEvent();
+            event.begin();
             // pass the current lives & score to the game level
-            GameLevel level = new GameLevel(runner, this.gui, levelInfo, score, lives, this.borderThick, is3D);
+            GameLevel level = new GameLevel(runner, this.display, levelInfo, score, lives, this.borderThick, is3D,
+                                            this.settings);
             level.initialize();
             // while the user didn't finish the level and he has 'lives' play a turn in the GameLevel
-            while (this.lives.getValue() > 0 && level.remainedBlocks() > 0) {
+            while (this.lives.getValue() > 0 && level.remainedBlocks() > 0 && !this.display.isFinished()) {
                 level.playOneTurn();
             }
-            // if the user has no more 'lives' stop the loop
-            if (this.lives.getValue() == 0) {
+            if (event.shouldCommit()) {
+                event.setLevelName(levelInfo.levelName());
+                event.setCleared(level.remainedBlocks() == 0);
+                event.setResult(this.score.getValue(), this.lives.getValue());
+                event.commit();
+            }
+            // if the user has no more 'lives' [or the display shows no more frames] stop the loop
+            if (this.lives.getValue() == 0 || this.display.isFinished()) {
                 break;
             }
             //otherwise, continue to the next level the user need to pass
         }
 
+        if (this.display.isFinished()) {
+            return;
+        }
         String msg;
         Animation animation;
-        KeyboardSensor keyboard = this.gui.getKeyboardSensor();
+        KeyboardSensor keyboard = this.display.getKeyboardSensor();
         // check if the user loose
         if (this.lives.getValue() == 0) {
             animation = new GameOverScreen(score);
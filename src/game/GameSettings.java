@@ -0,0 +1,335 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game;
+
+import game.animation.AnimationRunner;
+import game.sprites.Broadphase;
+import game.sprites.DynamicAabbTree;
+import game.sprites.SpatialHashGrid;
+
+/**
+ * The class that unites the optional settings of the game that aren't part of the game rules,
+ * like the index the collision queries use. mutable object, the default values give the regular game.
+ */
+public class GameSettings {
+
+    /** Broadphase name of uniform spatial hash grid (the default). */
+    public static final String GRID_BROADPHASE = "grid";
+    /** Broadphase name of dynamic AABB tree. */
+    public static final String TREE_BROADPHASE = "bvh";
+    /** Broadphase name of no index at all (linear scan over the collidables). */
+    public static final String LINEAR_BROADPHASE = "linear";
+    /** The simulation ticks per second the speeds of the levels are given for. */
+    public static final int DEFAULT_TICKS_PER_SECOND = 60;
+
+    /** The name of the broadphase the game environments use. */
+    private String broadphase;
+    /** Whether the balls collide as moving circles (swept circle), or as moving points (the regular game). */
+    private boolean sweptCollision;
+    /** Whether the balls are moved by their impact events (ImpactScheduler), or each ball checks every frame. */
+    private boolean eventDriven;
+    /** The maximum number of collisions a ball resolves in one step (the rest of the step is dropped). */
+    private int substeps;
+    /** Whether the collision queries of the balls run in parallel before their hits are done by order. */
+    private boolean parallel;
+    /** Whether the game levels redraw only the changed regions of the screen (dirty rectangles). */
+    private boolean dirtyRegions;
+    /** Whether the game levels record the sprites drawing and replay it batched by color. */
+    private boolean batchedRendering;
+    /** Whether the frames are drawn by separate render thread, while the next frame is simulated. */
+    private boolean pipelinedRendering;
+    /** How many simulation ticks (moves of the sprites) run in a second. */
+    private int ticksPerSecond;
+    /** How many frames of the game levels are drawn in a second. */
+    private int framesPerSecond;
+    /** The maximum number of late ticks that are run before a frame is drawn, more than the tick of the frame. */
+    private int maxCatchUpTicks;
+    /** The maximum number of frames in a row that are not drawn while the ticks are late. */
+    private int maxSkippedFrames;
+
+    /**
+     * Constructor with the default settings.
+     */
+    public GameSettings() {
+        this.broadphase = GRID_BROADPHASE;
+        this.sweptCollision = false;
+        this.eventDriven = false;
+        this.substeps = 1;
+        this.parallel = false;
+        this.dirtyRegions = false;
+        this.batchedRendering = false;
+        this.pipelinedRendering = false;
+        this.ticksPerSecond = DEFAULT_TICKS_PER_SECOND;
+        this.framesPerSecond = DEFAULT_TICKS_PER_SECOND;
+        this.maxCatchUpTicks = AnimationRunner.DEFAULT_MAX_CATCH_UP_TICKS;
+        this.maxSkippedFrames = 0;
+    }
+
+    /**
+     * Get the name of the broadphase the game environments use.
+     *
+     * @return name of the broadphase
+     */
+    public String getBroadphase() {
+        return this.broadphase;
+    }
+
+    /**
+     * Set the name of the broadphase the game environments use. unknown name is treated as the default.
+     *
+     * @param name of the broadphase: GRID_BROADPHASE / TREE_BROADPHASE / LINEAR_BROADPHASE
+     */
+    public void setBroadphase(String name) {
+        this.broadphase = name;
+    }
+
+    /**
+     * Get whether the balls collide as moving circles (swept circle, with their radius),
+     * or as moving points (ray from the ball center).
+     *
+     * @return true for swept circle collision
+     */
+    public boolean isSweptCollision() {
+        return this.sweptCollision;
+    }
+
+    /**
+     * Set whether the balls collide as moving circles (swept circle, with their radius),
+     * or as moving points (ray from the ball center).
+     *
+     * @param state true for swept circle collision
+     */
+    public void setSweptCollision(boolean state) {
+        this.sweptCollision = state;
+    }
+
+    /**
+     * Get whether the balls are moved by their impact events (event-driven physics) -
+     * the next impact of each ball is found once and not in every frame.
+     *
+     * @return true for event-driven physics
+     */
+    public boolean isEventDriven() {
+        return this.eventDriven;
+    }
+
+    /**
+     * Set whether the balls are moved by their impact events (event-driven physics) -
+     * the next impact of each ball is found once and not in every frame.
+     *
+     * @param state true for event-driven physics
+     */
+    public void setEventDriven(boolean state) {
+        this.eventDriven = state;
+    }
+
+    /**
+     * Get the maximum number of collisions a ball resolves in one step [frame].
+     * After each collision the ball goes on with the rest of its step, till the limit -
+     * then the rest of the step is dropped (1 = the regular game).
+     *
+     * @return the maximum collisions in one ball step
+     */
+    public int getSubsteps() {
+        return this.substeps;
+    }
+
+    /**
+     * Set the maximum number of collisions a ball resolves in one step [frame].
+     * not positive value is treated as 1.
+     *
+     * @param maxCollisions in one ball step
+     */
+    public void setSubsteps(int maxCollisions) {
+        this.substeps = Math.max(1, maxCollisions);
+    }
+
+    /**
+     * Get whether the collision queries of the balls run in parallel (on the common ForkJoinPool),
+     * while the hits are still done one by one in the order of the balls.
+     *
+     * @return true for parallel collision queries
+     */
+    public boolean isParallel() {
+        return this.parallel;
+    }
+
+    /**
+     * Set whether the collision queries of the balls run in parallel (on the common ForkJoinPool),
+     * while the hits are still done one by one in the order of the balls.
+     *
+     * @param state true for parallel collision queries
+     */
+    public void setParallel(boolean state) {
+        this.parallel = state;
+    }
+
+    /**
+     * Get whether the game levels redraw only the changed regions of the screen (dirty rectangles)
+     * over the previous frame, instead of drawing all the sprites every frame. The frames look the same.
+     *
+     * @return true for incremental redraw
+     */
+    public boolean isDirtyRegions() {
+        return this.dirtyRegions;
+    }
+
+    /**
+     * Set whether the game levels redraw only the changed regions of the screen (dirty rectangles)
+     * over the previous frame, instead of drawing all the sprites every frame. The frames look the same.
+     *
+     * @param state true for incremental redraw
+     */
+    public void setDirtyRegions(boolean state) {
+        this.dirtyRegions = state;
+    }
+
+    /**
+     * Get whether the game levels record the drawing of the sprites to a render command buffer, and replay it
+     * batched by color (less color changes), instead of drawing the sprites directly. The frames look the same.
+     *
+     * @return true for batched rendering
+     */
+    public boolean isBatchedRendering() {
+        return this.batchedRendering;
+    }
+
+    /**
+     * Set whether the game levels record the drawing of the sprites to a render command buffer, and replay it
+     * batched by color (less color changes), instead of drawing the sprites directly. The frames look the same.
+     *
+     * @param state true for batched rendering
+     */
+    public void setBatchedRendering(boolean state) {
+        this.batchedRendering = state;
+    }
+
+    /**
+     * Get whether the frames are recorded to snapshots and drawn by separate render thread (RenderPipeline),
+     * while the next frame is simulated.
+     *
+     * @return true for pipelined rendering
+     */
+    public boolean isPipelinedRendering() {
+        return this.pipelinedRendering;
+    }
+
+    /**
+     * Set whether the frames are recorded to snapshots and drawn by separate render thread (RenderPipeline),
+     * while the next frame is simulated.
+     *
+     * @param state true for pipelined rendering
+     */
+    public void setPipelinedRendering(boolean state) {
+        this.pipelinedRendering = state;
+    }
+
+    /**
+     * Get how many simulation ticks (moves of the sprites) run in a second.
+     *
+     * @return ticks per second
+     */
+    public int getTicksPerSecond() {
+        return this.ticksPerSecond;
+    }
+
+    /**
+     * Set how many simulation ticks (moves of the sprites) run in a second.
+     * The speeds of the balls and the paddle are scaled, so the game has the same speed in any rate.
+     * not positive value is treated as 1.
+     *
+     * @param ticks per second
+     */
+    public void setTicksPerSecond(int ticks) {
+        this.ticksPerSecond = Math.max(1, ticks);
+    }
+
+    /**
+     * Get how many frames of the game levels are drawn in a second. In other rate than the ticks,
+     * the balls and the paddle are drawn between their places before and after the last tick.
+     *
+     * @return frames per second
+     */
+    public int getFramesPerSecond() {
+        return this.framesPerSecond;
+    }
+
+    /**
+     * Set how many frames of the game levels are drawn in a second. In other rate than the ticks,
+     * the balls and the paddle are drawn between their places before and after the last tick.
+     * not positive value is treated as 1.
+     *
+     * @param frames per second
+     */
+    public void setFramesPerSecond(int frames) {
+        this.framesPerSecond = Math.max(1, frames);
+    }
+
+    /**
+     * Get the maximum number of late ticks that are run to catch up the real time before a frame is drawn,
+     * more than the one tick of the frame. The time of more late ticks is given up (the game is slower).
+     *
+     * @return maximum extra ticks per frame
+     */
+    public int getMaxCatchUpTicks() {
+        return this.maxCatchUpTicks;
+    }
+
+    /**
+     * Set the maximum number of late ticks that are run to catch up the real time before a frame is drawn,
+     * more than the one tick of the frame. The time of more late ticks is given up (the game is slower).
+     * negative value is treated as 0.
+     *
+     * @param ticks maximum extra ticks per frame
+     */
+    public void setMaxCatchUpTicks(int ticks) {
+        this.maxCatchUpTicks = Math.max(0, ticks);
+    }
+
+    /**
+     * Get the maximum number of frames in a row that are not drawn while the ticks are late,
+     * so the late ticks are run at once.
+     *
+     * @return maximum skipped frames in a row, 0 if all the frames are drawn
+     */
+    public int getMaxSkippedFrames() {
+        return this.maxSkippedFrames;
+    }
+
+    /**
+     * Set the maximum number of frames in a row that are not drawn while the ticks are late,
+     * so the late ticks are run at once. negative value is treated as 0.
+     *
+     * @param frames maximum skipped frames in a row, 0 if all the frames are drawn
+     */
+    public void setMaxSkippedFrames(int frames) {
+        this.maxSkippedFrames = Math.max(0, frames);
+    }
+
+    /**
+     * Get how much the speeds of the levels (given per tick of DEFAULT_TICKS_PER_SECOND) are multiplied by,
+     * so the game has the same speed in the ticks rate of the settings.
+     *
+     * @return the speed scale, 1 for the default ticks rate
+     */
+    public double getSpeedScale() {
+        return (double) DEFAULT_TICKS_PER_SECOND / this.ticksPerSecond;
+    }
+
+    /**
+     * Create new empty broadphase according to the broadphase setting.
+     *
+     * @return new broadphase, or null for linear scan
+     */
+    public Broadphase createBroadphase() {
+        if (TREE_BROADPHASE.equals(this.broadphase)) {
+            return new DynamicAabbTree();
+        }
+        if (LINEAR_BROADPHASE.equals(this.broadphase)) {
+            return null;
+        }
+        return new SpatialHashGrid();
+    }
+}
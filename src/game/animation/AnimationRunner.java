@@ -3,15 +3,43 @@ package game.animation;
 import biuoop.GUI;
 import biuoop.DrawSurface;
 import biuoop.Sleeper;
+import game.profiling.FrameEvent;
+import game.profiling.FrameProfiler;
+import game.sprites.RenderCommandBuffer;
 
 /**
  * The class for running animations that implement Animation interface.
  */
 public class AnimationRunner {
-    /** The gui to draw the frames of the animation on it. */
-    private GUI gui;
-    /** How many frames should be per second. */
+    /** Nanoseconds in one second. */
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    /** Nanoseconds in one millisecond. */
+    private static final long NANOS_PER_MILLISECOND = 1000000L;
+    /** Default maximum number of ticks that are run to catch up the real time, more than the tick of a frame. */
+    public static final int DEFAULT_MAX_CATCH_UP_TICKS = 4;
+
+    /** The display to draw the frames of the animation on it. */
+    private Display display;
+    /** How many frames should be per second (simulation ticks, for FixedStepAnimation). */
     private int framesPerSecond;
+    /** How many frames of FixedStepAnimation should be drawn per second. */
+    private int renderFramesPerSecond;
+    /** The pipeline that draws the frames by render thread, null if the frames are drawn by the running thread. */
+    private RenderPipeline pipeline;
+    /** How much animations are running now (animation may run another animation in the middle of its frame). */
+    private int runDepth;
+    /** How much animations were started to run by this runner. */
+    private long startedRuns;
+    /** The maximum number of ticks that are run before a frame is drawn, more than one tick. */
+    private int maxCatchUpTicks;
+    /** The maximum number of frames in a row that are not drawn, so the due ticks are run at once. */
+    private int maxSkippedFrames;
+    /** How much frames were late - drawn after the time of the next frame / tick. */
+    private long lateFrames;
+    /** How much frames were not drawn, in order to catch up the real time. */
+    private long skippedFrames;
+    /** How much ticks were given up, because they couldn't catch up the real time (the animation was slower). */
+    private long droppedTicks;
 
     /**
      * Constructor which gets gui to draw the animation on,
@@ -21,37 +49,350 @@ public class AnimationRunner {
      * @param framesPerSecond how many (estimated)frames will be in a second.
      */
     public AnimationRunner(GUI gui, int framesPerSecond) {
-        this.gui = gui;
+        this(new GuiDisplay(gui), framesPerSecond);
+    }
+
+    /**
+     * Constructor which gets display to draw the animation on (gui window or headless),
+     * and number of frames per second.
+     *
+     * @param display to draw the animation on it.
+     * @param framesPerSecond how many (estimated)frames will be in a second, if the display is real time.
+     */
+    public AnimationRunner(Display display, int framesPerSecond) {
+        this(display, framesPerSecond, false);
+    }
+
+    /**
+     * Constructor which gets display to draw the animation on (gui window or headless),
+     * number of frames per second, and whether the frames are drawn by separate render thread.
+     *
+     * @param display to draw the animation on it.
+     * @param framesPerSecond how many (estimated)frames will be in a second, if the display is real time.
+     * @param isPipelined true to record each frame to a snapshot that is drawn by render thread (RenderPipeline)
+     */
+    public AnimationRunner(Display display, int framesPerSecond, boolean isPipelined) {
+        this(display, framesPerSecond, framesPerSecond, isPipelined);
+    }
+
+    /**
+     * Constructor which gets display to draw the animation on (gui window or headless), number of simulation ticks
+     * per second, number of drawn frames per second (of FixedStepAnimation, the other animations draw frame per
+     * tick), and whether the frames are drawn by separate render thread.
+     *
+     * @param display to draw the animation on it.
+     * @param framesPerSecond how many ticks will be in a second, if the display is real time.
+     * @param renderFramesPerSecond how many frames of FixedStepAnimation will be drawn in a second
+     * @param isPipelined true to record each frame to a snapshot that is drawn by render thread (RenderPipeline)
+     */
+    public AnimationRunner(Display display, int framesPerSecond, int renderFramesPerSecond, boolean isPipelined) {
+        this.display = display;
         this.framesPerSecond = framesPerSecond;
+        this.renderFramesPerSecond = renderFramesPerSecond;
+        this.pipeline = isPipelined ? new RenderPipeline(display) : null;
+        this.runDepth = 0;
+        this.startedRuns = 0;
+        this.maxCatchUpTicks = DEFAULT_MAX_CATCH_UP_TICKS;
+        this.maxSkippedFrames = 0;
+    }
+
+    /**
+     * Get the display the animations are drawn on.
+     *
+     * @return Display of this runner
+     */
+    public Display getDisplay() {
+        return this.display;
+    }
+
+    /**
+     * Get the maximum number of ticks that are run to catch up the real time before a frame is drawn,
+     * more than the one tick of the frame.
+     *
+     * @return maximum extra ticks per frame
+     */
+    public int getMaxCatchUpTicks() {
+        return this.maxCatchUpTicks;
+    }
+
+    /**
+     * Set the maximum number of ticks that are run to catch up the real time before a frame is drawn,
+     * more than the one tick of the frame. When more ticks are due, the time of the rest is given up.
+     * negative value is treated as 0.
+     *
+     * @param ticks maximum extra ticks per frame
+     */
+    public void setMaxCatchUpTicks(int ticks) {
+        this.maxCatchUpTicks = Math.max(0, ticks);
+    }
+
+    /**
+     * Get the maximum number of frames in a row (of FixedStepAnimation) that are not drawn while the ticks are late,
+     * so the due ticks are run at once.
+     *
+     * @return maximum skipped frames in a row, 0 if all the frames are drawn
+     */
+    public int getMaxSkippedFrames() {
+        return this.maxSkippedFrames;
+    }
+
+    /**
+     * Set the maximum number of frames in a row (of FixedStepAnimation) that are not drawn while the ticks are late,
+     * so the due ticks are run at once. negative value is treated as 0.
+     *
+     * @param frames maximum skipped frames in a row, 0 if all the frames are drawn
+     */
+    public void setMaxSkippedFrames(int frames) {
+        this.maxSkippedFrames = Math.max(0, frames);
+    }
+
+    /**
+     * Get how much frames were late - drawn after the time of the next frame, or while more ticks were due
+     * than could be caught up.
+     *
+     * @return number of late frames
+     */
+    public long getLateFrames() {
+        return this.lateFrames;
+    }
+
+    /**
+     * Get how much frames were not drawn, in order to catch up the real time.
+     *
+     * @return number of skipped frames
+     */
+    public long getSkippedFrames() {
+        return this.skippedFrames;
+    }
+
+    /**
+     * Get how much ticks were given up, because they couldn't catch up the real time (the animation was slower).
+     *
+     * @return number of dropped ticks
+     */
+    public long getDroppedTicks() {
+        return this.droppedTicks;
+    }
+
+    /**
+     * Get the pipeline that draws the frames by render thread.
+     *
+     * @return RenderPipeline of this runner, or null if the frames are drawn by the running thread
+     */
+    public RenderPipeline getPipeline() {
+        return this.pipeline;
     }
 
     /**
      * Run a given animation until the animation notify to stop the running.
-     * The method uses the given gui & framesPerSecond that was given in the constructor.
+     * The method uses the given display & framesPerSecond that was given in the constructor.
+     * Display that isn't real time (headless) runs the frames without waiting between them.
      * No problem should be if another animation will be start in the middle of one animation.
+     * In pipelined runner, the frames are recorded to snapshots and drawn by the render thread of the pipeline,
+     * which runs while the outer animation runs.
      *
      * @param animation to run and draw
      */
     public void run(Animation animation) {
-        // how much time per frame
-        int millisecondsPerFrame = 1000 / this.framesPerSecond;
+        if (this.pipeline != null && this.runDepth == 0) {
+            this.pipeline.start();
+        }
+        this.runDepth++;
+        this.startedRuns++;
+        try {
+            runFrames(animation);
+        } finally {
+            this.runDepth--;
+            if (this.pipeline != null && this.runDepth == 0) {
+                this.pipeline.stop();
+            }
+        }
+    }
+
+    /**
+     * Run the frames of a given animation until the animation notify to stop the running.
+     * On real time display, the time is measured by System.nanoTime(), and the time that passed is accumulated:
+     * each 1/framesPerSecond second of it is one simulation tick. FixedStepAnimation runs all the ticks whose time
+     * passed and draws frame each 1/renderFramesPerSecond second, other animation runs one frame (which is also a
+     * tick) when its time passed.
+     * The accumulated time is exact (it is counted in units of 1/framesPerSecond nanosecond), so the ticks don't
+     * drift from the real time, whatever the sleep granularity and the load are.
+     * If the frames are drawn in other rate than the ticks, FixedStepAnimation is drawn between the states before
+     * and after the last tick, by the part of the tick time that passed since it (interpolation alpha).
+     * In the same rates each frame is drawn right after its tick, so the state after the tick is drawn (alpha 1).
+     * The time of an animation that runs in the middle of a tick (like pause screen) isn't accumulated.
+     * When the ticks are late, up to maxCatchUpTicks more ticks are run before a frame is drawn, and up to
+     * maxSkippedFrames frames in a row are not drawn so the due ticks run at once. The time of ticks that are
+     * still due after that is given up - only then the animation is slower than the real time.
+     *
+     * @param animation to run and draw
+     */
+    private void runFrames(Animation animation) {
+        // display that isn't real time shows the frames one after another, without waiting between them
+        if (!this.display.isRealTime()) {
+            while (!animation.shouldStop() && !this.display.isFinished()) {
+                FrameEvent event = new FrameEvent();
+                event.begin();
+                long startTime = FrameProfiler.start();
+                showFrame(animation, true, 1);
+                FrameProfiler.record(FrameProfiler.FRAME, startTime);
+                commitFrame(event, 1, true, false);
+            }
+            return;
+        }
+        FixedStepAnimation stepped = null;
+        if (animation instanceof FixedStepAnimation) {
+            stepped = (FixedStepAnimation) animation;
+        }
         Sleeper sleeper = new Sleeper();
-        // run the animation while it returns that it shouldn't stop
-        while (!animation.shouldStop()) {
-             // timing
-            long startTime = System.currentTimeMillis();
-            DrawSurface d = gui.getDrawSurface();
+        // the time that passed and wasn't simulated yet, in units of 1/framesPerSecond nanosecond (tick = 1 second)
+        // the first frame of animation that can't be split is a tick that is due at once
+        long lag = stepped == null ? NANOS_PER_SECOND : 0;
+        // the time that passed since the last drawn frame, in units of 1/renderFramesPerSecond nanosecond,
+        // the first frame is drawn at once
+        long frameLag = NANOS_PER_SECOND;
+        boolean isInterpolated = this.renderFramesPerSecond != this.framesPerSecond;
+        long lastTime = System.nanoTime();
+        long runs = this.startedRuns;
+        int skippedInRow = 0;
+        // run the animation while it returns that it shouldn't stop [and the display shows frames]
+        while (!animation.shouldStop() && !this.display.isFinished()) {
+            if (runs != this.startedRuns) {
+                // another animation ran in the middle, start to count the time again from now
+                runs = this.startedRuns;
+                lastTime = System.nanoTime();
+                lag = 0;
+                frameLag = NANOS_PER_SECOND;
+            }
+            FrameEvent event = new FrameEvent();
+            event.begin();
+            long now = System.nanoTime();
+            long startTime = FrameProfiler.start();
+            int ticks = 0;
+            boolean isDrawn = false;
+            boolean isLate = false;
+            lag += (now - lastTime) * this.framesPerSecond;
+            frameLag += (now - lastTime) * this.renderFramesPerSecond;
+            lastTime = now;
+            if (stepped != null) {
+                // simulate the ticks whose time passed [up to the catch up bound], and draw the state after them
+                while (lag >= NANOS_PER_SECOND && ticks <= this.maxCatchUpTicks && !animation.shouldStop()) {
+                    stepped.step();
+                    lag -= NANOS_PER_SECOND;
+                    ticks++;
+                }
+                if (animation.shouldStop()) {
+                    commitFrame(event, ticks, false, false);
+                    break;
+                }
+                isLate = frameLag >= 2 * NANOS_PER_SECOND;
+                if (lag >= NANOS_PER_SECOND) {
+                    // more ticks are due than the bound
+                    isLate = true;
+                    if (skippedInRow < this.maxSkippedFrames) {
+                        // don't draw the frame, and run the due ticks at once
+                        this.lateFrames++;
+                        this.skippedFrames++;
+                        skippedInRow++;
+                        commitFrame(event, ticks, false, true);
+                        continue;
+                    }
+                    // the time of the ticks that can't be caught up is given up, the animation is slower for it
+                    this.droppedTicks += lag / NANOS_PER_SECOND;
+                    lag %= NANOS_PER_SECOND;
+                }
+                if (frameLag >= NANOS_PER_SECOND) {
+                    if (isLate) {
+                        this.lateFrames++;
+                    }
+                    skippedInRow = 0;
+                    double alpha = isInterpolated ? (double) lag / NANOS_PER_SECOND : 1;
+                    showFrame(animation, false, alpha);
+                    isDrawn = true;
+                    // only the newest state is drawn, frames that their time passed aren't drawn later
+                    frameLag %= NANOS_PER_SECOND;
+                }
+            } else if (lag >= NANOS_PER_SECOND) {
+                // the frame is late if the time of the next frame passed too, and the frames after the catch up
+                // bound are given up
+                long due = lag / NANOS_PER_SECOND;
+                if (due > 1) {
+                    this.lateFrames++;
+                    isLate = true;
+                }
+                if (due > 1 + this.maxCatchUpTicks) {
+                    this.droppedTicks += due - 1 - this.maxCatchUpTicks;
+                    lag -= (due - 1 - this.maxCatchUpTicks) * NANOS_PER_SECOND;
+                }
+                // draw the frame & make move to next frame
+                showFrame(animation, true, 1);
+                lag -= NANOS_PER_SECOND;
+                ticks = 1;
+                isDrawn = true;
+            }
+            // wait until the time of the next tick / frame (rounded up to milliseconds, the accumulated time is exact)
+            long nanosLeft = (NANOS_PER_SECOND - lag) / this.framesPerSecond;
+            if (stepped != null) {
+                nanosLeft = Math.min(nanosLeft, (NANOS_PER_SECOND - frameLag) / this.renderFramesPerSecond);
+            }
+            nanosLeft -= System.nanoTime() - lastTime;
+            FrameProfiler.record(FrameProfiler.FRAME, startTime);
+            commitFrame(event, ticks, isDrawn, isLate);
+            if (nanosLeft > 0) {
+                long sleepTime = FrameProfiler.start();
+                sleeper.sleepFor((nanosLeft + NANOS_PER_MILLISECOND - 1) / NANOS_PER_MILLISECOND);
+                FrameProfiler.record(FrameProfiler.SLEEP, sleepTime);
+            }
+        }
+    }
 
+    /**
+     * Commit the flight recorder event of a frame, if it is recorded.
+     *
+     * @param event the event that began at the start of the frame
+     * @param ticks how much simulation ticks ran in the frame
+     * @param isDrawn whether the frame was drawn and shown
+     * @param isLate whether the frame was late
+     */
+    private static void commitFrame(FrameEvent event, int ticks, boolean isDrawn, boolean isLate) {
+        if (event.shouldCommit()) {
+            event.setTicks(ticks);
+            event.setDrawn(isDrawn);
+            event.setLate(isLate);
+            event.commit();
+        }
+    }
+
+    /**
+     * Draw one frame of an animation and show it in the display (or publish it to the render thread).
+     *
+     * @param animation to draw
+     * @param isTick true to run the whole frame (doOneFrame), false to only draw FixedStepAnimation (drawFrame)
+     * @param alpha the interpolation alpha FixedStepAnimation is drawn by, if the frame isn't a tick
+     */
+    private void showFrame(Animation animation, boolean isTick, double alpha) {
+        DrawSurface d;
+        RenderCommandBuffer snapshot = null;
+        if (this.pipeline != null) {
+            // record the frame to a snapshot, the render thread will show it
+            snapshot = this.pipeline.acquire();
+            d = snapshot;
+        } else {
+            d = this.display.getDrawSurface();
+        }
+        if (isTick) {
             // draw the frame on the surface & make move to next frame
             animation.doOneFrame(d);
-            // show the frame in the gui
-            gui.show(d);
-            // wait for the next frame until enough time will pass to draw 'framesPerSecond' frames in second
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                sleeper.sleepFor(milliSecondLeftToSleep);
-            }
+        } else {
+            ((FixedStepAnimation) animation).drawFrame(d, alpha);
+        }
+        // show the frame in the display
+        if (snapshot != null) {
+            this.pipeline.publish(snapshot);
+        } else {
+            long startTime = FrameProfiler.start();
+            this.display.show(d);
+            FrameProfiler.record(FrameProfiler.SHOW, startTime);
         }
     }
 }
\ No newline at end of file
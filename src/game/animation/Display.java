@@ -0,0 +1,71 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.animation;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+
+/**
+ * Interface of the place the animations are shown on - a gui window (GuiDisplay), or no window at all
+ * (HeadlessDisplay). AnimationRunner gets a new surface for each frame, draws the frame on it, and shows it.
+ */
+public interface Display {
+
+    /**
+     * Get the width of the surfaces of the display.
+     *
+     * @return width in pixels
+     */
+    int getWidth();
+
+    /**
+     * Get the height of the surfaces of the display.
+     *
+     * @return height in pixels
+     */
+    int getHeight();
+
+    /**
+     * Get a surface to draw the next frame on it.
+     *
+     * @return DrawSurface of the next frame
+     */
+    DrawSurface getDrawSurface();
+
+    /**
+     * Show a frame that was drawn on a surface of this display.
+     *
+     * @param d the surface of the frame
+     */
+    void show(DrawSurface d);
+
+    /**
+     * Get the keyboard of the display.
+     *
+     * @return KeyboardSensor of the display
+     */
+    KeyboardSensor getKeyboardSensor();
+
+    /**
+     * Check if the frames are watched in real time - then the runner waits between the frames,
+     * to keep the frames per second. Otherwise the frames are run as fast as possible.
+     *
+     * @return true for display that is watched in real time
+     */
+    boolean isRealTime();
+
+    /**
+     * Check if the display doesn't show more frames (like headless display that showed its max frames).
+     * The runner stops the animations on finished display, and the game flow doesn't start more turns / levels.
+     *
+     * @return true if no more frames should be run
+     */
+    boolean isFinished();
+
+    /**
+     * Close the display, it can't be used after it.
+     */
+    void close();
+}
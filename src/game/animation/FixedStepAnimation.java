@@ -0,0 +1,30 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.animation;
+
+import biuoop.DrawSurface;
+
+/**
+ * Interface of Animation whose frame can be split to drawing and simulation tick (step),
+ * so AnimationRunner can run the ticks at fixed rate, apart from the drawing of the frames.
+ * When the frames are drawn between the ticks, the moving things can be drawn between their states before and
+ * after the last tick (interpolation), so they move smoothly.
+ * doOneFrame(d) should be the same as drawFrame(d, 1) and then step().
+ */
+public interface FixedStepAnimation extends Animation {
+
+    /**
+     * Draw the state of the animation on given surface, without moving to the next frame.
+     *
+     * @param d DrawSurface to draw the frame on it
+     * @param alpha the part of the way from the state before the last tick (0) to the current state (1)
+     */
+    void drawFrame(DrawSurface d, double alpha);
+
+    /**
+     * Make one simulation tick - move the animation to the state of the next frame.
+     */
+    void step();
+}
@@ -10,6 +10,7 @@ import biuoop.GUI;
 import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 
+import game.GameSettings;
 import game.levels.LevelInformation;
 
 import game.axes.Counter;
@@ -21,11 +22,17 @@ import game.listeners.BallRemover;
 import game.listeners.BlockRemover;
 import game.listeners.ScoreTrackingListener;
 
+import game.profiling.FrameProfiler;
 import game.sprites.Ball;
+import game.sprites.BallSystem;
 import game.sprites.Block;
+import game.sprites.CachedSprite;
 import game.sprites.Collidable;
+import game.sprites.DirtyRegionRenderer;
 import game.sprites.GameEnvironment;
+import game.sprites.ImpactScheduler;
 import game.sprites.Paddle;
+import game.sprites.RenderCommandBuffer;
 import game.sprites.ScoreIndicator;
 import game.sprites.Sprite;
 import game.sprites.SpriteCollection;
@@ -34,7 +41,7 @@ import game.sprites.SpriteCollection;
  * The class for making new instance of an arkanoid game. should be called initialize() before playOneTurn().
  * shouldStop() & doOneFrame() for inner use only.(use only playOneTurn() outside this class)
  */
-public class GameLevel implements Animation {
+public class GameLevel implements FixedStepAnimation {
 
     /** The AnimationRunner which is important in order to remain in the same framesPerSeconds. */
     private AnimationRunner runner;
@@ -50,9 +57,9 @@ public class GameLevel implements Animation {
     private int winWidth;
     /** Height of the gui window. */
     private int winHeight;
-    /** The gui of this game level. */
-    private GUI gui;
-    /** The KeyboardSensor of the gui. */
+    /** The display (gui window or headless) of this game level. */
+    private Display display;
+    /** The KeyboardSensor of the display. */
     private KeyboardSensor keyboard;
 
     /** The thick of the border blocks. */
@@ -67,8 +74,16 @@ public class GameLevel implements Animation {
 
     /** The collection of the sprites in the game level. */
     private SpriteCollection sprites;
+    /** The balls of the game level (one sprite in the sprites collection). */
+    private BallSystem ballSystem;
     /** The collection of the collidables in the game level. */
     private GameEnvironment environment;
+    /** The renderer that redraws only the changed regions of the sprites, null if they are fully drawn. */
+    private DirtyRegionRenderer dirtyRenderer;
+    /** The buffer the sprites drawing is recorded to and replayed batched by color, null if they are drawn directly. */
+    private RenderCommandBuffer frameCommands;
+    /** The scheduler that moves the balls in event-driven game level, null otherwise. */
+    private ImpactScheduler impactScheduler;
     /** The counter of the remaing Vulnerable(not border blocks etc.) Blocks. */
     private Counter remainedVulnerableBlocks;
     /** The counter of the remaing Balls in the game level. */
@@ -81,6 +96,8 @@ public class GameLevel implements Animation {
 
     /** Property if the game is '3D'. */
     private boolean is3D;
+    /** The optional settings of the game. */
+    private GameSettings settings;
 
     /**
      * Constructor with adjustable values.
@@ -95,17 +112,52 @@ public class GameLevel implements Animation {
      */
     public GameLevel(AnimationRunner runner, GUI gui, LevelInformation levelInfo, Counter score,
                                                     Counter lives, int borderThick, boolean is3D) {
+        this(runner, gui, levelInfo, score, lives, borderThick, is3D, new GameSettings());
+    }
+
+    /**
+     * Constructor with adjustable values and optional settings.
+     *
+     * @param runner The AnimationRunner which runs this game level, and can also run other things.
+     * @param gui which this game level occurs within.
+     * @param levelInfo the information to initialize the game level
+     * @param score the current score of the user in the WHOLE GAME
+     * @param lives the current 'lives' of the user in the WHOLE GAME
+     * @param borderThick The thick of the border blocks.
+     * @param is3D wheter the game is 3D
+     * @param settings the optional settings of the game
+     */
+    public GameLevel(AnimationRunner runner, GUI gui, LevelInformation levelInfo, Counter score,
+                        Counter lives, int borderThick, boolean is3D, GameSettings settings) {
+        this(runner, new GuiDisplay(gui), levelInfo, score, lives, borderThick, is3D, settings);
+    }
+
+    /**
+     * Constructor with adjustable values and optional settings, on any display (gui window or headless).
+     *
+     * @param runner The AnimationRunner which runs this game level, and can also run other things.
+     * @param display which this game level occurs within.
+     * @param levelInfo the information to initialize the game level
+     * @param score the current score of the user in the WHOLE GAME
+     * @param lives the current 'lives' of the user in the WHOLE GAME
+     * @param borderThick The thick of the border blocks.
+     * @param is3D wheter the game is 3D
+     * @param settings the optional settings of the game
+     */
+    public GameLevel(AnimationRunner runner, Display display, LevelInformation levelInfo, Counter score,
+                        Counter lives, int borderThick, boolean is3D, GameSettings settings) {
         this.runner = runner;
-        this.gui = gui;
+        this.display = display;
         this.levelInfo = levelInfo;
         this.score = score;
         this.lives = lives;
         this.borderThick = borderThick;
         this.is3D = is3D;
+        this.settings = settings;
 
-        this.keyboard = this.gui.getKeyboardSensor();
-        this.winWidth = gui.getDrawSurface().getWidth();
-        this.winHeight = gui.getDrawSurface().getHeight();
+        this.keyboard = this.display.getKeyboardSensor();
+        this.winWidth = display.getWidth();
+        this.winHeight = display.getHeight();
         // default value
         this.paddleHeight = 15;
     }
@@ -113,10 +165,22 @@ public class GameLevel implements Animation {
     /**
      * Get the gameLevel gui.
      *
-     * @return GUI of this GameLevel
+     * @return GUI of this GameLevel, or null if the game level isn't shown on gui window
      */
     public GUI getGUI() {
-        return gui;
+        if (display instanceof GuiDisplay) {
+            return ((GuiDisplay) display).getGUI();
+        }
+        return null;
+    }
+
+    /**
+     * Get the gameLevel display.
+     *
+     * @return Display of this GameLevel (gui window or headless)
+     */
+    public Display getDisplay() {
+        return display;
     }
 
     /**
@@ -128,6 +192,24 @@ public class GameLevel implements Animation {
         return sprites;
     }
 
+    /**
+     * Get the system that keeps the balls of the game level.
+     *
+     * @return BallSystem of this game level
+     */
+    public BallSystem getBallSystem() {
+        return ballSystem;
+    }
+
+    /**
+     * Get the optional settings of this game level.
+     *
+     * @return GameSettings of this game level
+     */
+    public GameSettings getSettings() {
+        return settings;
+    }
+
     /**
      * Get the environment(collidables collection) of this game level.
      *
@@ -138,7 +220,34 @@ public class GameLevel implements Animation {
     }
 
     /**
-     * Add sprite to this game level sprite collection.
+     * Get the scheduler that moves the balls of this game level, if the game level is event-driven.
+     *
+     * @return ImpactScheduler of this game level, or null if each ball moves itself
+     */
+    public ImpactScheduler getImpactScheduler() {
+        return impactScheduler;
+    }
+
+    /**
+     * Get the renderer that redraws only the changed regions of this game level.
+     *
+     * @return DirtyRegionRenderer of this game level, or null if the sprites are fully drawn every frame
+     */
+    public DirtyRegionRenderer getDirtyRenderer() {
+        return dirtyRenderer;
+    }
+
+    /**
+     * Get the buffer the drawing of the sprites is recorded to each frame, and replayed batched by color.
+     *
+     * @return the frame render command buffer, or null if the sprites are drawn directly
+     */
+    public RenderCommandBuffer getFrameCommands() {
+        return this.frameCommands;
+    }
+
+    /**
+     * Add sprite to this game level sprite collection, at the actors layer.
      * The sprite isn't be added to something else(like collidable collection).
      *
      * @param s sprite to be added
@@ -147,6 +256,17 @@ public class GameLevel implements Animation {
         this.sprites.addSprite(s);
     }
 
+    /**
+     * Add sprite to a layer of this game level sprite collection.
+     * The sprite isn't be added to something else(like collidable collection).
+     *
+     * @param s sprite to be added
+     * @param layer the render layer of the sprite, like SpriteCollection.BACKGROUND_LAYER
+     */
+    public void addSprite(Sprite s, int layer) {
+        this.sprites.addSprite(s, layer);
+    }
+
     /**
      * Add collidable to this game level collidable collection.
      * The collidable isn't be added to something else(like sprite collection).
@@ -189,17 +309,33 @@ public class GameLevel implements Animation {
         this.remainedVulnerableBlocks = new Counter(levelInfo.numberOfBlocksToRemove());
 
         this.sprites = new SpriteCollection();
-        this.environment = new GameEnvironment();
+        // the blocks don't change their drawing till they are removed
+        this.sprites.setLayerStatic(SpriteCollection.BLOCK_LAYER, true);
+        this.ballSystem = new BallSystem();
+        this.environment = new GameEnvironment(this.settings.createBroadphase());
+        this.dirtyRenderer = null;
+        if (this.settings.isDirtyRegions()) {
+            this.dirtyRenderer = new DirtyRegionRenderer();
+        }
+        this.frameCommands = null;
+        if (this.settings.isBatchedRendering()) {
+            this.frameCommands = new RenderCommandBuffer(this.winWidth, this.winHeight);
+        }
+        this.impactScheduler = null;
+        if (this.settings.isEventDriven()) {
+            this.impactScheduler = new ImpactScheduler(this.environment, this.settings.isSweptCollision());
+            this.environment.addEnvironmentListener(this.impactScheduler);
+        }
 
-        // the first sprite will be drawn at back, so add the background of the levelInfo
-        levelInfo.getBackground().addToGameLevel(this);
+        // the background of the levelInfo is at the background layer, so it is drawn at back.
+        // it is drawn once on an image, which is drawn every frame (till the background reports it was changed)
+        new CachedSprite(levelInfo.getBackground(), SpriteCollection.BACKGROUND_LAYER).addToGameLevel(this);
 
-        // add sign of the current score & lives & level name
-        // However, we will add it to game at last in order it will be drawn at the top
-        // scoreIndicator.addToGameLevel(this); ---> at the end of this method
+        // add sign of the current score & lives & level name, at the HUD layer which is drawn at the top
         Rectangle scoreIndicatorRect = new Rectangle(new Point(0, 0), this.winWidth, this.borderThick);
         ScoreIndicator scoreIndicator = new ScoreIndicator(this.lives, this.score, this.levelInfo.levelName(),
                                                                                             scoreIndicatorRect);
+        scoreIndicator.addToGameLevel(this);
 
         // add the border blocks which thickness is according to this.borderThick
         Rectangle leftBorderBlockRect = new Rectangle(new Point(0, 0), this.borderThick, this.winHeight);
@@ -239,9 +375,6 @@ public class GameLevel implements Animation {
                 // add block remover as listener to that block
                 block.addHitListener(blockRemover);
         }
-
-        // we are adding to the the game at last the scoreIndicator because we want it will be draw at the top layer
-        scoreIndicator.addToGameLevel(this);
     }
 
     @Override
@@ -251,9 +384,38 @@ public class GameLevel implements Animation {
 
     @Override
     public void doOneFrame(DrawSurface d) {
-        this.sprites.drawAllOn(d);
+        this.drawFrame(d, 1);
+        this.step();
+    }
+
+    @Override
+    public void drawFrame(DrawSurface d, double alpha) {
+        long startTime = FrameProfiler.start();
+        // the balls and the paddle are drawn between their places before and after the last step
+        this.sprites.setInterpolation(alpha);
+        if (this.dirtyRenderer != null) {
+            this.dirtyRenderer.drawAllOn(this.sprites, d);
+        } else if (this.frameCommands != null) {
+            // the same buffer is recorded every frame, without allocations after the first frames
+            this.frameCommands.reset(d.getWidth(), d.getHeight());
+            this.sprites.drawAllOn(this.frameCommands);
+            this.frameCommands.replayBatched(d);
+        } else {
+            this.sprites.drawAllOn(d);
+        }
+        FrameProfiler.record(FrameProfiler.DRAW, startTime);
+    }
+
+    @Override
+    public void step() {
+        long startTime = FrameProfiler.start();
         // be prepare for the next frame[/move]
         this.sprites.notifyAllTimePassed();
+        // in event-driven game level the balls are moved (after the paddle) by the scheduler
+        if (this.impactScheduler != null) {
+            this.impactScheduler.advance();
+        }
+        FrameProfiler.record(FrameProfiler.TIME_PASSED, startTime);
 
         // if the user press 'p' pause the game until he will press space bar
         if (this.keyboard.isPressed("p") || this.keyboard.isPressed("P")) {
@@ -285,8 +447,10 @@ public class GameLevel implements Animation {
         // create paddle at the middle at the bottom, and new balls
         this.createBallsAndPaddle();
         this.running = true;
-        // show countdown animation (2 seconds count from 3)
-        this.runner.run(new CountdownAnimation(2, 3, this.sprites));
+        // show countdown animation (2 seconds count from 3), only if someone watches the display in real time
+        if (this.display.isRealTime()) {
+            this.runner.run(new CountdownAnimation(2, 3, this.sprites));
+        }
         // use our runner to run the current animation -- which is one turn of
         // the game.
         this.runner.run(this);
@@ -307,7 +471,9 @@ public class GameLevel implements Animation {
         // add paddle to the game at the middle of the width, and bottom of height
         Point paddleStartPt = new Point(middleOfScreenX - this.levelInfo.paddleWidth() / 2, paddleY);
         Rectangle paddleRect = new Rectangle(paddleStartPt, this.levelInfo.paddleWidth(), this.paddleHeight);
-        this.paddle =  new Paddle(paddleRect , Color.ORANGE, this.keyboard, this.levelInfo.paddleSpeed());
+        // the speeds of the level are per default tick, scale them to the ticks rate of the settings
+        double paddleSpeed = this.levelInfo.paddleSpeed() * this.settings.getSpeedScale();
+        this.paddle =  new Paddle(paddleRect , Color.ORANGE, this.keyboard, paddleSpeed);
         paddle.set3D(this.is3D);
         paddle.addToGameLevel(this);
     }
@@ -319,6 +485,8 @@ public class GameLevel implements Animation {
     public void createBallsAndPaddle() {
         //replace the current paddle with another paddle which will be at bottom at middle
         replacePaddle();
+        // the balls are moved and drawn after the paddle
+        this.ballSystem.addToGameLevel(this);
 
         // put the balls just little higher than the paddle
         Point center = this.paddle.getCollisionRectangle().getUpperLine().middle();
@@ -328,7 +496,8 @@ public class GameLevel implements Animation {
         int ballSize = 5;
         Color ballColor = Color.WHITE;
         for (int i = 0; i < this.levelInfo.numberOfBalls(); i++) {
-            new Ball(center, ballSize, ballColor, this.levelInfo.initialBallVelocities().get(i)).addToGameLevel(this);
+            Velocity velocity = this.levelInfo.initialBallVelocities().get(i).multiply(this.settings.getSpeedScale());
+            new Ball(center, ballSize, ballColor, velocity).addToGameLevel(this);
             this.remainedBalls.increase(1);
         }
     }
@@ -0,0 +1,86 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.animation;
+
+import biuoop.DrawSurface;
+import biuoop.GUI;
+import biuoop.KeyboardSensor;
+
+/**
+ * The class of Display that shows the frames on a biuoop gui window.
+ */
+public class GuiDisplay implements Display {
+
+    /** The gui window. */
+    private GUI gui;
+    /** The width of the gui surfaces. */
+    private int width;
+    /** The height of the gui surfaces. */
+    private int height;
+
+    /**
+     * Constructor which gets the gui window to show the frames on.
+     *
+     * @param gui the gui window, should be closed by close()
+     */
+    public GuiDisplay(GUI gui) {
+        this.gui = gui;
+        DrawSurface surface = gui.getDrawSurface();
+        this.width = surface.getWidth();
+        this.height = surface.getHeight();
+    }
+
+    /**
+     * Get the gui window of the display.
+     *
+     * @return the gui
+     */
+    public GUI getGUI() {
+        return this.gui;
+    }
+
+    /* Display interface methods */
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return this.gui.getDrawSurface();
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        this.gui.show(d);
+    }
+
+    @Override
+    public KeyboardSensor getKeyboardSensor() {
+        return this.gui.getKeyboardSensor();
+    }
+
+    @Override
+    public boolean isRealTime() {
+        return true;
+    }
+
+    @Override
+    public boolean isFinished() {
+        // the window shows frames till the game ends
+        return false;
+    }
+
+    @Override
+    public void close() {
+        this.gui.close();
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.animation;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+
+import game.sprites.HeadlessDrawSurface;
+import game.sprites.NullDrawSurface;
+
+/**
+ * The class of Display without window, that runs on a machine without screen - for benchmarks and servers.
+ * The frames are drawn on a null sink (NullDrawSurface), or on a surface that counts the drawing calls by their
+ * type and optionally draws them on an image (HeadlessDrawSurface). The same surface is reused for all the frames.
+ * The keys are pressed by the program (HeadlessKeyboard), and the frames are run as fast as possible.
+ * Nobody plays, so the balls may never fall nor clear the level - the display can be limited to max frames,
+ * then it is finished after them and the game ends.
+ * In RASTERIZING mode the display keeps a checksum of the pixels of all the shown frames, so runs with different
+ * drawing settings (like dirty regions, batched or pipelined drawing) can be checked to show the same frames.
+ */
+public class HeadlessDisplay implements Display {
+
+    /** Mode of drawing on a null sink - nothing is drawn or counted. */
+    public static final int NULL_SINK = 0;
+    /** Mode of counting the drawing calls by their type. */
+    public static final int COUNTING = 1;
+    /** Mode of counting the drawing calls and drawing them on an image. */
+    public static final int RASTERIZING = 2;
+
+    /** The width of the surfaces. */
+    private int width;
+    /** The height of the surfaces. */
+    private int height;
+    /** The null sink surface, for NULL_SINK mode. */
+    private NullDrawSurface nullSurface;
+    /** The counting surface, or null in NULL_SINK mode. */
+    private HeadlessDrawSurface surface;
+    /** The keyboard of the display. */
+    private HeadlessKeyboard keyboard;
+    /** How much frames were shown. */
+    private long frames;
+    /** How much frames the display shows before it is finished, 0 for no limit. */
+    private long maxFrames;
+    /** How much calls of each type were made in all the shown frames. */
+    private long[] totalCounts;
+    /** The checksum of the pixels of all the shown frames, in RASTERIZING mode. */
+    private long frameChecksum;
+
+    /**
+     * Constructor for display with the given size and mode.
+     *
+     * @param width of the surfaces
+     * @param height of the surfaces
+     * @param mode NULL_SINK / COUNTING / RASTERIZING, unknown mode is treated as COUNTING
+     */
+    public HeadlessDisplay(int width, int height, int mode) {
+        this.width = width;
+        this.height = height;
+        this.nullSurface = new NullDrawSurface(width, height);
+        this.surface = null;
+        if (mode != NULL_SINK) {
+            this.surface = new HeadlessDrawSurface(width, height, mode == RASTERIZING);
+        }
+        this.keyboard = new HeadlessKeyboard();
+        this.frames = 0;
+        this.maxFrames = 0;
+        this.totalCounts = new long[HeadlessDrawSurface.TYPE_COUNT];
+        this.frameChecksum = 0;
+    }
+
+    /**
+     * Get the keyboard of the display, to press its keys.
+     *
+     * @return HeadlessKeyboard of the display
+     */
+    public HeadlessKeyboard getHeadlessKeyboard() {
+        return this.keyboard;
+    }
+
+    /**
+     * Get the surface of the last shown frame - its counts and image stay till the next frame starts.
+     *
+     * @return the surface, or null in NULL_SINK mode
+     */
+    public HeadlessDrawSurface getLastFrame() {
+        return this.surface;
+    }
+
+    /**
+     * Get how much frames were shown.
+     *
+     * @return number of frames
+     */
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Get the checksum of the pixels of all the shown frames, by their order - runs that show the same frames
+     * have the same checksum.
+     *
+     * @return the checksum, 0 if the display isn't in RASTERIZING mode
+     */
+    public long getFrameChecksum() {
+        return this.frameChecksum;
+    }
+
+    /**
+     * Get how much frames the display shows before it is finished.
+     *
+     * @return the max frames, 0 for no limit
+     */
+    public long getMaxFrames() {
+        return this.maxFrames;
+    }
+
+    /**
+     * Set how much frames the display shows before it is finished.
+     *
+     * @param maxFrames the max frames, 0 (or negative) for no limit
+     */
+    public void setMaxFrames(long maxFrames) {
+        this.maxFrames = Math.max(0, maxFrames);
+    }
+
+    /**
+     * Get how much calls of a type were made in all the shown frames.
+     *
+     * @param type of the calls, like HeadlessDrawSurface.DRAW_LINE
+     * @return number of the calls (0 in NULL_SINK mode)
+     */
+    public long getTotalCount(int type) {
+        return this.totalCounts[type];
+    }
+
+    /**
+     * Get how much drawing primitives (all the calls but setColor) were made in all the shown frames.
+     *
+     * @return number of the primitives (0 in NULL_SINK mode)
+     */
+    public long getTotalPrimitiveCount() {
+        long sum = 0;
+        for (int type = 0; type < HeadlessDrawSurface.TYPE_COUNT; type++) {
+            if (type != HeadlessDrawSurface.SET_COLOR) {
+                sum += this.totalCounts[type];
+            }
+        }
+        return sum;
+    }
+
+    /* Display interface methods */
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        if (this.surface == null) {
+            return this.nullSurface;
+        }
+        this.surface.reset();
+        return this.surface;
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        this.frames++;
+        if (this.surface != null && d == this.surface) {
+            for (int type = 0; type < HeadlessDrawSurface.TYPE_COUNT; type++) {
+                this.totalCounts[type] += this.surface.getCount(type);
+            }
+            BufferedImage image = this.surface.getImage();
+            if (image != null) {
+                int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                this.frameChecksum = this.frameChecksum * 31 + Arrays.hashCode(pixels);
+            }
+        }
+        this.keyboard.nextFrame();
+    }
+
+    @Override
+    public KeyboardSensor getKeyboardSensor() {
+        return this.keyboard;
+    }
+
+    @Override
+    public boolean isRealTime() {
+        return false;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return this.maxFrames > 0 && this.frames >= this.maxFrames;
+    }
+
+    @Override
+    public void close() {
+        // there is no window to close
+    }
+}
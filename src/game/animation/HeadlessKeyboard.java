@@ -0,0 +1,76 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.animation;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * The class of KeyboardSensor without keyboard, for HeadlessDisplay. The keys are pressed by the program -
+ * a key can be pressed till it is released, or tapped - pressed every second frame, so animations that
+ * wait for a new key press (KeyPressStoppableAnimation) get one.
+ */
+public class HeadlessKeyboard implements KeyboardSensor {
+
+    /** The keys that are pressed till they are released. */
+    private Set<String> pressedKeys;
+    /** The keys that are pressed every second frame. */
+    private Set<String> tappedKeys;
+    /** Whether the tapped keys are pressed at the current frame. */
+    private boolean isTapDown;
+
+    /**
+     * Constructor for keyboard that no key is pressed on it.
+     */
+    public HeadlessKeyboard() {
+        this.pressedKeys = new HashSet<String>();
+        this.tappedKeys = new HashSet<String>();
+        this.isTapDown = false;
+    }
+
+    /**
+     * Press a key till it is released.
+     *
+     * @param key the key, like KeyboardSensor.SPACE_KEY
+     */
+    public void press(String key) {
+        this.pressedKeys.add(key);
+    }
+
+    /**
+     * Release a pressed / tapped key.
+     *
+     * @param key the key, like KeyboardSensor.SPACE_KEY
+     */
+    public void release(String key) {
+        this.pressedKeys.remove(key);
+        this.tappedKeys.remove(key);
+    }
+
+    /**
+     * Tap a key every second frame (pressed at one frame, released at the next), till it is released.
+     *
+     * @param key the key, like KeyboardSensor.SPACE_KEY
+     */
+    public void tap(String key) {
+        this.tappedKeys.add(key);
+    }
+
+    /**
+     * Move to the next frame - the tapped keys are switched between pressed and released.
+     */
+    public void nextFrame() {
+        this.isTapDown = !this.isTapDown;
+    }
+
+    /* KeyboardSensor interface methods */
+
+    @Override
+    public boolean isPressed(String key) {
+        return this.pressedKeys.contains(key) || (this.isTapDown && this.tappedKeys.contains(key));
+    }
+}
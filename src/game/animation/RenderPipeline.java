@@ -0,0 +1,218 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.animation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import biuoop.DrawSurface;
+import game.profiling.FrameProfiler;
+import game.sprites.RenderCommandBuffer;
+
+/**
+ * The class that draws the frames of the animations on a display by another thread (render thread),
+ * so the simulation of the next frame runs while the last frame is drawn and shown.
+ * The simulation thread records each frame to a snapshot - a render command buffer from the pool of the pipeline,
+ * which keeps the positions of the sprites and the visible blocks as drawing commands - and publishes it sealed.
+ * The render thread replays the newest published snapshot on the display and returns it to the pool.
+ * The snapshots copy the mutable images they record (like the back buffer of the dirty regions renderer, which is
+ * drawn again while the snapshot is drawn), each snapshot has its own copies.
+ * A snapshot isn't changed while it is drawn (no tearing), and only the newest snapshot waits for the render
+ * thread - older snapshot that wasn't drawn yet is dropped - so the shown frame is at most one frame late.
+ * For display that isn't real time (headless), every snapshot is shown before the next frame is simulated,
+ * so the frames and the keyboard are the same as without the pipeline.
+ */
+public class RenderPipeline implements Runnable {
+
+    /** The display the snapshots are drawn on. */
+    private Display display;
+    /** The snapshots that are not used, for the next frames. */
+    private List<RenderCommandBuffer> freeSnapshots;
+    /** The newest published snapshot that wasn't taken by the render thread yet, or null. */
+    private RenderCommandBuffer latest;
+    /** The snapshot that is drawn by the render thread now, or null. */
+    private RenderCommandBuffer drawn;
+    /** The render thread, null if the pipeline isn't started. */
+    private Thread thread;
+    /** Whether the render thread should continue to wait for snapshots. */
+    private boolean isRunning;
+    /** How much snapshots were published. */
+    private long publishedFrames;
+    /** How much snapshots were shown on the display. */
+    private long shownFrames;
+    /** How much snapshots were dropped, because newer snapshot was published before they were drawn. */
+    private long droppedFrames;
+    /** How much snapshots were created for the pool. */
+    private int createdSnapshots;
+
+    /**
+     * Constructor of pipeline that draws on a display. The render thread starts by start().
+     *
+     * @param display to draw the snapshots on it
+     */
+    public RenderPipeline(Display display) {
+        this.display = display;
+        this.freeSnapshots = new ArrayList<RenderCommandBuffer>();
+        this.latest = null;
+        this.drawn = null;
+        this.thread = null;
+        this.isRunning = false;
+    }
+
+    /**
+     * Get how much snapshots were published by the simulation thread.
+     *
+     * @return number of the published frames
+     */
+    public synchronized long getPublishedFrames() {
+        return this.publishedFrames;
+    }
+
+    /**
+     * Get how much snapshots were shown on the display.
+     *
+     * @return number of the shown frames
+     */
+    public synchronized long getShownFrames() {
+        return this.shownFrames;
+    }
+
+    /**
+     * Get how much snapshots were dropped, because newer snapshot was published before they were drawn.
+     *
+     * @return number of the dropped frames
+     */
+    public synchronized long getDroppedFrames() {
+        return this.droppedFrames;
+    }
+
+    /**
+     * Get how much snapshots were created for the pool (the others were reused).
+     *
+     * @return number of the created snapshots
+     */
+    public synchronized int getCreatedSnapshots() {
+        return this.createdSnapshots;
+    }
+
+    /**
+     * Start the render thread, if it wasn't started.
+     */
+    public synchronized void start() {
+        if (this.thread != null) {
+            return;
+        }
+        this.isRunning = true;
+        this.thread = new Thread(this, "render");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stop the render thread after it draws the published snapshot, and wait until it ends.
+     */
+    public void stop() {
+        Thread renderThread;
+        synchronized (this) {
+            if (this.thread == null) {
+                return;
+            }
+            this.isRunning = false;
+            this.notifyAll();
+            renderThread = this.thread;
+            this.thread = null;
+        }
+        try {
+            renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get empty snapshot from the pool (or new one if the pool is empty) to record the next frame on it.
+     *
+     * @return empty snapshot in the size of the display
+     */
+    public synchronized RenderCommandBuffer acquire() {
+        RenderCommandBuffer snapshot;
+        if (this.freeSnapshots.isEmpty()) {
+            snapshot = new RenderCommandBuffer(this.display.getWidth(), this.display.getHeight());
+            snapshot.setCopyingImages(true);
+            this.createdSnapshots++;
+        } else {
+            snapshot = this.freeSnapshots.remove(this.freeSnapshots.size() - 1);
+        }
+        snapshot.reset(this.display.getWidth(), this.display.getHeight());
+        return snapshot;
+    }
+
+    /**
+     * Seal a recorded snapshot and give it to the render thread, instead of the published snapshot that wasn't
+     * drawn yet (if there is). For display that isn't real time, wait until the snapshot is shown.
+     *
+     * @param snapshot that was got by acquire() and recorded
+     */
+    public synchronized void publish(RenderCommandBuffer snapshot) {
+        snapshot.seal();
+        if (this.latest != null) {
+            this.freeSnapshots.add(this.latest);
+            this.droppedFrames++;
+        }
+        this.latest = snapshot;
+        this.publishedFrames++;
+        this.notifyAll();
+        if (this.display.isRealTime()) {
+            return;
+        }
+        try {
+            while (this.thread != null && (this.latest != null || this.drawn != null)) {
+                this.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* Runnable interface methods */
+
+    /**
+     * The loop of the render thread: take the newest snapshot, draw it on new surface of the display
+     * and show it, until the pipeline is stopped and there is no snapshot to draw.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            RenderCommandBuffer snapshot;
+            synchronized (this) {
+                try {
+                    while (this.latest == null && this.isRunning) {
+                        this.wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (this.latest == null) {
+                    return;
+                }
+                snapshot = this.latest;
+                this.latest = null;
+                this.drawn = snapshot;
+            }
+            // the snapshot is sealed - nothing changes it while it is drawn
+            DrawSurface d = this.display.getDrawSurface();
+            long startTime = FrameProfiler.start();
+            snapshot.replay(d);
+            this.display.show(d);
+            FrameProfiler.record(FrameProfiler.SHOW, startTime);
+            synchronized (this) {
+                this.drawn = null;
+                this.freeSnapshots.add(snapshot);
+                this.shownFrames++;
+                this.notifyAll();
+            }
+        }
+    }
+}
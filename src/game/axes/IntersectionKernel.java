@@ -0,0 +1,349 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.axes;
+
+/**
+ * The class offers intersection functions that work on raw coordinates (doubles) instead of axes objects,
+ * so the hot path of the collision queries doesn't create objects at all.
+ * The functions make exactly the calculations of the matching Line / Rectangle / Point methods,
+ * so their results are the same [including the tolerance of MathUtil.isApproximatelyEqual].
+ * The class operations - segmentRectangle, segmentIntersection, isOnSegment, isInRange, circleTimeOfImpact, distance
+ */
+public class IntersectionKernel {
+
+    /** Edge id of no edge (no hit). */
+    public static final int NO_EDGE = -1;
+    /** Edge id of the right edge of rectangle. */
+    public static final int RIGHT_EDGE = 0;
+    /** Edge id of the left edge of rectangle. */
+    public static final int LEFT_EDGE = 1;
+    /** Edge id of the upper edge of rectangle. */
+    public static final int UPPER_EDGE = 2;
+    /** Edge id of the lower edge of rectangle. */
+    public static final int LOWER_EDGE = 3;
+
+    /**
+     * Find the intersection point of a segment with the border of rectangle, that is the closest to the segment start.
+     * Same as Point.getClosetPoint(rect.intersectionPoints(line), line.start()).
+     *
+     * @param sx x value of the segment start
+     * @param sy y value of the segment start
+     * @param ex x value of the segment end
+     * @param ey y value of the segment end
+     * @param left x value of the rectangle left edge
+     * @param top y value of the rectangle upper edge
+     * @param right x value of the rectangle right edge
+     * @param bottom y value of the rectangle lower edge
+     * @param hit to put the result in (cleared if there is no intersection)
+     * @return true if there is intersection point
+     */
+    public static boolean segmentRectangle(double sx, double sy, double ex, double ey,
+                                           double left, double top, double right, double bottom, RayHit hit) {
+        boolean found = false;
+        double bestX = Double.NaN;
+        double bestY = Double.NaN;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int bestEdge = NO_EDGE;
+        // the edges in the order of Rectangle.intersectionPoints(), with the start & end of the edges lines
+        for (int edge = RIGHT_EDGE; edge <= LOWER_EDGE; edge++) {
+            boolean found1;
+            if (edge == RIGHT_EDGE) {
+                found1 = segmentIntersection(sx, sy, ex, ey, right, top, right, bottom, hit);
+            } else if (edge == LEFT_EDGE) {
+                found1 = segmentIntersection(sx, sy, ex, ey, left, top, left, bottom, hit);
+            } else if (edge == UPPER_EDGE) {
+                found1 = segmentIntersection(sx, sy, ex, ey, left, top, right, top, hit);
+            } else {
+                found1 = segmentIntersection(sx, sy, ex, ey, left, bottom, right, bottom, hit);
+            }
+            if (!found1) {
+                continue;
+            }
+            // like Point.getClosetPoint() - a later point replaces only if it is strictly closer
+            double distance = distance(sx, sy, hit.getX(), hit.getY());
+            if (!found || distance < bestDistance) {
+                found = true;
+                bestX = hit.getX();
+                bestY = hit.getY();
+                bestDistance = distance;
+                bestEdge = edge;
+            }
+        }
+        if (!found) {
+            hit.clear();
+            return false;
+        }
+        double length = distance(sx, sy, ex, ey);
+        hit.set(bestX, bestY, length == 0 ? 0 : bestDistance / length, bestDistance, bestEdge);
+        return true;
+    }
+
+    /**
+     * Find the intersection point of two segments, if they intersect in ONE point.
+     * Same as Line.intersectionWith(Line) of the first segment with the second.
+     * Only the point of the result is set (the parameter, distance and edge aren't).
+     *
+     * @param sx x value of the first segment start
+     * @param sy y value of the first segment start
+     * @param ex x value of the first segment end
+     * @param ey y value of the first segment end
+     * @param ax x value of the second segment start
+     * @param ay y value of the second segment start
+     * @param bx x value of the second segment end
+     * @param by y value of the second segment end
+     * @param hit to put the intersection point in
+     * @return true if the segments intersect in one point
+     */
+    public static boolean segmentIntersection(double sx, double sy, double ex, double ey,
+                                              double ax, double ay, double bx, double by, RayHit hit) {
+        //if at least one of the segments is point (start=end) check if it on the other segment
+        if (isSamePoint(ex, ey, sx, sy)) {
+            return setPoint(isOnSegment(sx, sy, ax, ay, bx, by), sx, sy, hit);
+        }
+        if (isSamePoint(bx, by, ax, ay)) {
+            return setPoint(isOnSegment(ax, ay, sx, sy, ex, ey), ax, ay, hit);
+        }
+        boolean isVertical = isVertical(sx, sy, ex, ey);
+        boolean isOtherVertical = isVertical(ax, ay, bx, by);
+        //if the 2 segments have the same gradient, check if they meet ONLY in 1 point- start/end
+        if ((isVertical && isOtherVertical)
+            || MathUtil.isApproximatelyEqual(gradient(sx, sy, ex, ey), gradient(ax, ay, bx, by))) {
+            boolean case1 = isSamePoint(sx, sy, ax, ay) && !isOnSegment(bx, by, sx, sy, ex, ey)
+                                                        && !isOnSegment(ex, ey, ax, ay, bx, by);
+            boolean case2 = isSamePoint(sx, sy, bx, by) && !isOnSegment(ax, ay, sx, sy, ex, ey)
+                                                        && !isOnSegment(ex, ey, ax, ay, bx, by);
+            boolean case3 = isSamePoint(ex, ey, ax, ay) && !isOnSegment(bx, by, sx, sy, ex, ey)
+                                                        && !isOnSegment(sx, sy, ax, ay, bx, by);
+            boolean case4 = isSamePoint(ex, ey, bx, by) && !isOnSegment(ax, ay, sx, sy, ex, ey)
+                                                        && !isOnSegment(sx, sy, ax, ay, bx, by);
+            if (case1 || case2) {
+                return setPoint(true, sx, sy, hit);
+            }
+            return setPoint(case3 || case4, ex, ey, hit);
+        }
+        // if only the second segment is vertical, replace the segments (like Line.intersectionWith does)
+        if (isOtherVertical) {
+            return segmentIntersection(ax, ay, bx, by, sx, sy, ex, ey, hit);
+        }
+        //if only the first segment is vertical check if its x is on the other segment and in the same range
+        if (isVertical) {
+            double n = constantTerm(ax, ay, bx, by);
+            double m = gradient(ax, ay, bx, by);
+            double intersectionY = m * sx + n;
+            boolean isInRange = isInRange(sx, ax, bx) && isInRange(intersectionY, sy, ey);
+            return setPoint(isInRange, sx, intersectionY, hit);
+        }
+        // otherwise, the point that is on both segments fulfill the equation y = m * x + n of both
+        double n1 = constantTerm(sx, sy, ex, ey);
+        double m1 = gradient(sx, sy, ex, ey);
+        double n2 = constantTerm(ax, ay, bx, by);
+        double m2 = gradient(ax, ay, bx, by);
+        double intersectionX = (n1 - n2) / (m2 - m1);
+        double intersectionY = m1 * intersectionX + n1;
+        boolean isInRange = isInRange(intersectionX, ax, bx) && isInRange(intersectionX, sx, ex);
+        return setPoint(isInRange, intersectionX, intersectionY, hit);
+    }
+
+    /**
+     * Check if point is on segment. Same as Line.isIntersecting(Point).
+     *
+     * @param px x value of the point
+     * @param py y value of the point
+     * @param ax x value of the segment start
+     * @param ay y value of the segment start
+     * @param bx x value of the segment end
+     * @param by y value of the segment end
+     * @return true if the point is on the segment
+     */
+    public static boolean isOnSegment(double px, double py, double ax, double ay, double bx, double by) {
+        // if the segment is just a point, check if the 2 points are equal
+        if (isSamePoint(bx, by, ax, ay)) {
+            return isSamePoint(bx, by, px, py);
+        }
+        // if the segment is vertical check if the point is on it <=> same x value and in the range of the y valus
+        if (isVertical(ax, ay, bx, by)) {
+            return MathUtil.isApproximatelyEqual(px, ax) && isInRange(py, ay, by);
+        }
+        // otherwise, check if the point fulfill the equation y = m * x + n && in the range of the segment
+        double n = constantTerm(ax, ay, bx, by);
+        double m = gradient(ax, ay, bx, by);
+        return MathUtil.isApproximatelyEqual(py, m * px + n) && isInRange(px, ax, bx);
+    }
+
+    /**
+     * Check if value is within the range of 2 limits [in any order]. Same as Line.isXInRange / Line.isYInRange.
+     *
+     * @param value to be checked
+     * @param limit1 first limit (the start value of the segment)
+     * @param limit2 second limit (the end value of the segment)
+     * @return true if min(limit1, limit2) <= value <= max(limit1, limit2) [approximately]
+     */
+    public static boolean isInRange(double value, double limit1, double limit2) {
+        return MathUtil.isApproximatelyInRange(value, limit1, limit2)
+                || MathUtil.isApproximatelyInRange(value, limit2, limit1);
+    }
+
+    /**
+     * Get the time of impact of a circle that moves along a segment [its center moves from start to end]
+     * with rectangle. (swept circle test - the segment against the rectangle expanded by the radius,
+     * that its corners are rounded by the radius).
+     * Circle that already touches / overlaps the rectangle collides at time 0 only if it moves towards the rectangle.
+     *
+     * @param x0 x value of the circle center at the start
+     * @param y0 y value of the circle center at the start
+     * @param x1 x value of the circle center at the end
+     * @param y1 y value of the circle center at the end
+     * @param radius of the circle, not negative
+     * @param left x value of the rectangle left edge
+     * @param top y value of the rectangle upper edge
+     * @param right x value of the rectangle right edge
+     * @param bottom y value of the rectangle lower edge
+     * @return the time of impact (0 = start, 1 = end), or -1 if the circle won't collide with the rectangle
+     */
+    public static double circleTimeOfImpact(double x0, double y0, double x1, double y1, double radius,
+                                            double left, double top, double right, double bottom) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+
+        // check if the circle already touches the rectangle
+        double offsetX = x0 - Math.max(left, Math.min(right, x0));
+        double offsetY = y0 - Math.max(top, Math.min(bottom, y0));
+        if (offsetX * offsetX + offsetY * offsetY <= radius * radius) {
+            return offsetX * dx + offsetY * dy < 0 ? 0 : -1;
+        }
+        if (dx == 0 && dy == 0) {
+            return -1;
+        }
+
+        // the parameter range where the center is inside the expanded rectangle (slab test)
+        double tEnter = 0;
+        double tExit = 1;
+        if (dx == 0) {
+            if (x0 < left - radius || x0 > right + radius) {
+                return -1;
+            }
+        } else {
+            double t1 = (left - radius - x0) / dx;
+            double t2 = (right + radius - x0) / dx;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (y0 < top - radius || y0 > bottom + radius) {
+                return -1;
+            }
+        } else {
+            double t1 = (top - radius - y0) / dy;
+            double t2 = (bottom + radius - y0) / dy;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        if (tEnter > tExit) {
+            return -1;
+        }
+
+        // if the center enters next to an edge, the expanded rectangle is the real border there
+        double enterX = x0 + tEnter * dx;
+        double enterY = y0 + tEnter * dy;
+        boolean besideX = enterX < left || enterX > right;
+        boolean besideY = enterY < top || enterY > bottom;
+        if (!besideX || !besideY) {
+            return tEnter;
+        }
+        // otherwise it enters next to a corner, where the border is the circle around the corner
+        double fromCornerX = x0 - (enterX < left ? left : right);
+        double fromCornerY = y0 - (enterY < top ? top : bottom);
+        double a = dx * dx + dy * dy;
+        double b = fromCornerX * dx + fromCornerY * dy;
+        double c = fromCornerX * fromCornerX + fromCornerY * fromCornerY - radius * radius;
+        double discriminant = b * b - a * c;
+        if (discriminant < 0) {
+            return -1;
+        }
+        double t = (-b - Math.sqrt(discriminant)) / a;
+        return (t < 0 || t > 1) ? -1 : t;
+    }
+
+    /**
+     * Get the distance between 2 points. Same as Point.distance() of the first point with the second.
+     *
+     * @param x1 x value of the first point
+     * @param y1 y value of the first point
+     * @param x2 x value of the second point
+     * @param y2 y value of the second point
+     * @return the distance between the points
+     */
+    public static double distance(double x1, double y1, double x2, double y2) {
+        return Math.sqrt(Math.pow(y1 - y2, 2) + Math.pow(x1 - x2, 2));
+    }
+
+    /**
+     * Check if 2 points are the same [approximately]. Same as Point.equals().
+     *
+     * @param x1 x value of the first point
+     * @param y1 y value of the first point
+     * @param x2 x value of the second point
+     * @param y2 y value of the second point
+     * @return true if the points are equal
+     */
+    public static boolean isSamePoint(double x1, double y1, double x2, double y2) {
+        return MathUtil.isApproximatelyEqual(x1, x2) && MathUtil.isApproximatelyEqual(y1, y2);
+    }
+
+    /**
+     * Get the gradient of segment. Same as Line.getGradient().
+     *
+     * @param ax x value of the segment start
+     * @param ay y value of the segment start
+     * @param bx x value of the segment end
+     * @param by y value of the segment end
+     * @return the gradient (m in y = m * x + n)
+     */
+    private static double gradient(double ax, double ay, double bx, double by) {
+        return (ay - by) / (ax - bx);
+    }
+
+    /**
+     * Check if segment is vertical. Same as Line.isVertical().
+     *
+     * @param ax x value of the segment start
+     * @param ay y value of the segment start
+     * @param bx x value of the segment end
+     * @param by y value of the segment end
+     * @return true if the segment is vertical to the x axis
+     */
+    private static boolean isVertical(double ax, double ay, double bx, double by) {
+        return Math.abs(gradient(ax, ay, bx, by)) == Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Get the constant term of segment. Same as Line.nConstantTerm().
+     *
+     * @param ax x value of the segment start
+     * @param ay y value of the segment start
+     * @param bx x value of the segment end
+     * @param by y value of the segment end
+     * @return the constant term (n in y = m * x + n)
+     */
+    private static double constantTerm(double ax, double ay, double bx, double by) {
+        return ay - gradient(ax, ay, bx, by) * ax;
+    }
+
+    /**
+     * Put intersection point in the result if there is one.
+     *
+     * @param isIntersecting whether there is intersection point
+     * @param x value of the intersection point
+     * @param y value of the intersection point
+     * @param hit to put the point in
+     * @return isIntersecting
+     */
+    private static boolean setPoint(boolean isIntersecting, double x, double y, RayHit hit) {
+        if (isIntersecting) {
+            hit.set(x, y, hit.getT(), hit.getDistance(), hit.getEdge());
+        }
+        return isIntersecting;
+    }
+}
@@ -109,4 +109,20 @@ public class MathUtil {
         }
         return true;
     }
+
+    /**
+     * The method get the value at part alpha of the way from previous value to current value.
+     * alpha that is 1 or more gives exactly the current value.
+     *
+     * @param previous the value at alpha 0
+     * @param current the value at alpha 1
+     * @param alpha the part of the way [0-1]
+     * @return the value between previous and current
+     */
+    public static double interpolate(double previous, double current, double alpha) {
+        if (alpha >= 1) {
+            return current;
+        }
+        return previous + alpha * (current - previous);
+    }
 }
\ No newline at end of file
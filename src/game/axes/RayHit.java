@@ -0,0 +1,100 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.axes;
+
+/**
+ * The class that keeps the result of IntersectionKernel query. mutable (reusable) object,
+ * so the queries won't create new objects.
+ * class operations - getX, getY, getT, getDistance, getEdge, set, clear
+ */
+public class RayHit {
+
+    /** The x value of the hit point. */
+    private double x;
+    /** The y value of the hit point. */
+    private double y;
+    /** The parameter of the hit point along the trajectory (0 = start, 1 = end). */
+    private double t;
+    /** The distance of the hit point from the trajectory start. */
+    private double distance;
+    /** The edge of the rectangle that was hit (IntersectionKernel edge ids), or NO_EDGE. */
+    private int edge;
+
+    /**
+     * Constructor for empty result [no hit].
+     */
+    public RayHit() {
+        clear();
+    }
+
+    /**
+     * Get the x value of the hit point.
+     *
+     * @return x value of the hit point
+     */
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     * Get the y value of the hit point.
+     *
+     * @return y value of the hit point
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    /**
+     * Get the parameter of the hit point along the trajectory.
+     *
+     * @return the parameter (0 = start, 1 = end)
+     */
+    public double getT() {
+        return this.t;
+    }
+
+    /**
+     * Get the distance of the hit point from the trajectory start.
+     *
+     * @return distance from the trajectory start
+     */
+    public double getDistance() {
+        return this.distance;
+    }
+
+    /**
+     * Get the edge of the rectangle that was hit.
+     *
+     * @return IntersectionKernel edge id, or IntersectionKernel.NO_EDGE if there is no hit
+     */
+    public int getEdge() {
+        return this.edge;
+    }
+
+    /**
+     * Set the result to a hit.
+     *
+     * @param hitX x value of the hit point
+     * @param hitY y value of the hit point
+     * @param hitT the parameter of the hit point along the trajectory
+     * @param hitDistance the distance of the hit point from the trajectory start
+     * @param hitEdge the edge id of the rectangle that was hit
+     */
+    public void set(double hitX, double hitY, double hitT, double hitDistance, int hitEdge) {
+        this.x = hitX;
+        this.y = hitY;
+        this.t = hitT;
+        this.distance = hitDistance;
+        this.edge = hitEdge;
+    }
+
+    /**
+     * Set the result to 'no hit'.
+     */
+    public void clear() {
+        set(Double.NaN, Double.NaN, -1, Double.POSITIVE_INFINITY, IntersectionKernel.NO_EDGE);
+    }
+}
@@ -12,7 +12,8 @@ import java.util.ArrayList;
  * class operations - Constructor, getWidth, getHeight,
  *                    getUpperLeft, getUpperRight, getLowerLeft, getLowerRight,
  *                    getLeftLine, getRightLine, getUpperLine, getLowerLine, getMiddlePoint
- *                    intersectionPoints, velocityToCollision, getClosestRectangle
+ *                    intersectionPoints, velocityToCollision, getClosestRectangle,
+ *                    circleTimeOfImpact, closestPoint
  */
 public class Rectangle {
 
@@ -265,4 +266,33 @@ public class Rectangle {
         return closetRectangle;
     }
 
+    /**
+     * Get the time of impact of a circle that moves along the trajectory [its center moves from start to end]
+     * with this rectangle. (swept circle test - the trajectory against this rectangle expanded by the radius,
+     * that its corners are rounded by the radius).
+     * Circle that already touches / overlaps the rectangle collides at time 0 only if it moves towards the rectangle.
+     *
+     * @param trajectory the movement of the circle center. The start-end order important.
+     * @param radius of the circle, not negative
+     * @return the time of impact (0 = start, 1 = end), or -1 if the circle won't collide with the rectangle
+     */
+    public double circleTimeOfImpact(Line trajectory, double radius) {
+        return IntersectionKernel.circleTimeOfImpact(trajectory.start().getX(), trajectory.start().getY(),
+                                                     trajectory.end().getX(), trajectory.end().getY(), radius,
+                                                     this.upperLeft.getX(), this.upperLeft.getY(),
+                                                     this.lowerRight.getX(), this.lowerRight.getY());
+    }
+
+    /**
+     * Get the point of this rectangle [border or inside] that is the closest to a given point.
+     *
+     * @param point to get the closest point to
+     * @return the closest point of this rectangle (the given point itself if it is inside)
+     */
+    public Point closestPoint(Point point) {
+        double x = Math.max(this.upperLeft.getX(), Math.min(this.lowerRight.getX(), point.getX()));
+        double y = Math.max(this.upperLeft.getY(), Math.min(this.lowerRight.getY(), point.getY()));
+        return new Point(x, y);
+    }
+
 }
\ No newline at end of file
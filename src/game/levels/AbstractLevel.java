@@ -7,6 +7,7 @@ import game.axes.Point;
 import game.axes.Rectangle;
 import game.axes.Velocity;
 import game.sprites.Block;
+import game.sprites.BlockLattice;
 import game.sprites.Sprite;
 
 /** The abstract class of LevelInformation to make level quick and easy. */
@@ -126,6 +127,8 @@ public abstract class AbstractLevel implements LevelInformation {
     /**
      * Useful method which get String array and Rectangle of area(startPoint, totalWidth x totalHeight),
      * and returns List of blocks according to the String array in the given rectangle.
+     * The blocks are also set as cells of one BlockLattice (the rows & columns of the strings),
+     * so the game environment can find them by walking over the lattice.
      * [Block width/height may have inaccurte values]
      *
      * @param strArr represetion of the blocks, colors, and spaces
@@ -144,13 +147,26 @@ public abstract class AbstractLevel implements LevelInformation {
         double heightPerBlock = (int) (totalHeight / strArr.length);
         // get the reminder and give it to the first row
         double firstBlockHeight = heightPerBlock + totalHeight - heightPerBlock * strArr.length;
+        // the borders of the lattice rows, and of the columns in each row
+        double[] rowBorders = new double[strArr.length + 1];
+        double[][] columnBorders = new double[strArr.length][];
         Point currPoint = startPoint;
+        rowBorders[0] = currPoint.getY();
         // add the blocks for each row we will divide the areaRectangle (according to strArr.length)
         for (int i = 0; i < strArr.length; i++) {
             double heightForCurrBlock = i == 0 ? firstBlockHeight : heightPerBlock;
+            columnBorders[i] = getColumnBorders(strArr[i], currPoint.getX(), totalWidth);
             // add the blocks in the curr row
             list.addAll(getBlocksFromString(strArr[i], currPoint, totalWidth, heightForCurrBlock));
             currPoint = new Point(currPoint.getX(), currPoint.getY() + heightForCurrBlock);
+            rowBorders[i + 1] = currPoint.getY();
+        }
+        // set each block as the cell of the lattice its middle point is within
+        BlockLattice lattice = new BlockLattice(rowBorders, columnBorders);
+        for (Block block : list) {
+            Point middle = block.getCollisionRectangle().getMiddlePoint();
+            int row = lattice.rowOf(middle.getY());
+            block.setLatticeCell(lattice, row, lattice.columnOf(row, middle.getX()));
         }
         return list;
     }
@@ -190,6 +206,33 @@ public abstract class AbstractLevel implements LevelInformation {
         return list;
     }
 
+    /**
+     * Get the x values of the borders between the columns of a row String,
+     * calculated exactly as getBlocksFromString() place the blocks.
+     *
+     * @param str represetion of the blocks, colors, and spaces
+     * @param startX x value where the row starts
+     * @param totalWidth of the row
+     * @return the borders of the columns from left to right (str.length() + 1 values, or 1 for null / empty str)
+     */
+    private static double[] getColumnBorders(String str, double startX, double totalWidth) {
+        int columns = str == null ? 0 : str.length();
+        double[] borders = new double[columns + 1];
+        borders[0] = startX;
+        if (columns == 0) {
+            return borders;
+        }
+        // round down
+        double widthPerBlock = (int) (totalWidth / columns);
+        // get the reminder and give it to the first(left) block (/space)
+        double firstBlockWidth = widthPerBlock + totalWidth - widthPerBlock * columns;
+        for (int i = 0; i < columns; i++) {
+            double widthForCurrBlock = i == 0 ? firstBlockWidth : widthPerBlock;
+            borders[i + 1] = borders[i] + widthForCurrBlock;
+        }
+        return borders;
+    }
+
     /** Get block in a given upper left point & width & height,
      *  in the given color represetion in the charColor.
      *  B=BLUE C=CYAN G=GREEN g=gray O=ORANGE P=PINK R=RED W=WHITE Y=YELLOW
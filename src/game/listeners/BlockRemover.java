@@ -6,6 +6,7 @@ package game.listeners;
 
 import game.animation.GameLevel;
 import game.axes.Counter;
+import game.profiling.BlockRemovedEvent;
 import game.sprites.Ball;
 import game.sprites.Block;
 
@@ -44,10 +45,16 @@ public class BlockRemover implements HitListener {
      */
      @Override
     public void hitEvent(Block beingHit, Ball hitter) {
+        BlockRemovedEvent event = new BlockRemovedEvent();
+        event.begin();
         //Remove this BlockRemover instance from the block's listeners list.
         beingHit.removeHitListener(this);
         beingHit.removeFromGameLevel(this.game);
         // decrease the remaining block counter by 1
         this.remainingBlocks.decrease(1);
+        if (event.shouldCommit()) {
+            event.setRemainingBlocks(this.remainingBlocks.getValue());
+            event.commit();
+        }
     }
 }
\ No newline at end of file
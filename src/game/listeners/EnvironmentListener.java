@@ -0,0 +1,33 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.listeners;
+
+import game.sprites.Collidable;
+
+/** The interface for listener who want to be notified when the collidables of GameEnvironment are changed. */
+public interface EnvironmentListener {
+
+    /**
+     * This method is called whenever collidable is added to the environment [after it was added].
+     *
+     * @param added Collidable that was added.
+     */
+    void collidableAdded(Collidable added);
+
+    /**
+     * This method is called whenever collidable is removed from the environment [after it was removed].
+     *
+     * @param removed Collidable that was removed.
+     */
+    void collidableRemoved(Collidable removed);
+
+    /**
+     * This method is called whenever collidable of the environment changed its collision rectangle
+     * [called after the change, so getCollisionRectangle() returns the new rectangle].
+     *
+     * @param moved Collidable that has moved.
+     */
+    void collidableMoved(Collidable moved);
+}
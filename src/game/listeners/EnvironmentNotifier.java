@@ -0,0 +1,23 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.listeners;
+
+/** The interface for collidables collection that notify EnvironmentListener about changes of its collidables. */
+public interface EnvironmentNotifier {
+
+    /**
+     * Add a listener to the environment events.
+     *
+     * @param el EnvironmentListener to be added to this notifier's listeners list.
+     */
+    void addEnvironmentListener(EnvironmentListener el);
+
+    /**
+     * Remove a listener from the list of listeners to environment events.
+     *
+     * @param el EnvironmentListener to be removed from this notifier's listeners list.
+     */
+    void removeEnvironmentListener(EnvironmentListener el);
+}
@@ -0,0 +1,19 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.listeners;
+
+import game.sprites.Collidable;
+
+/** The interface for listener who want to be notified when MovementNotifier collidable has moved. */
+public interface MovementListener {
+
+    /**
+     * This method is called whenever the moved Collidable changed its collision rectangle
+     * [called after the change, so getCollisionRectangle() returns the new rectangle].
+     *
+     * @param moved Collidable that has moved.
+     */
+    void movementEvent(Collidable moved);
+}
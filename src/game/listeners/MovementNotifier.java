@@ -0,0 +1,23 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.listeners;
+
+/** The interface for collidable that notify MovementListener about that its collision rectangle was changed. */
+public interface MovementNotifier {
+
+    /**
+     * Add a listener to the movement events. His movementEvent() method will be called when this 'has moved'.
+     *
+     * @param ml MovementListener to be added to this notifier's listeners list.
+     */
+    void addMovementListener(MovementListener ml);
+
+    /**
+     * Remove a listener from the list of listeners to movement events.
+     *
+     * @param ml MovementListener to be removed from this notifier's listeners list.
+     */
+    void removeMovementListener(MovementListener ml);
+}
@@ -0,0 +1,19 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.listeners;
+
+import game.sprites.Sprite;
+
+/** The interface for listener who want to be notified when SpriteChangeNotifier sprite changed its drawing. */
+public interface SpriteChangeListener {
+
+    /**
+     * This method is called whenever the changed Sprite will be drawn differently than before
+     * [called after the change].
+     *
+     * @param changed Sprite that has changed.
+     */
+    void spriteChanged(Sprite changed);
+}
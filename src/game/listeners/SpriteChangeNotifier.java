@@ -0,0 +1,26 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.listeners;
+
+/**
+ * The interface for sprite that notify SpriteChangeListener about that its drawing was changed.
+ * Sprite that isn't SpriteChangeNotifier is treated as static - it is drawn the same way every frame.
+ */
+public interface SpriteChangeNotifier {
+
+    /**
+     * Add a listener to the change events. His spriteChanged() method will be called when this 'has changed'.
+     *
+     * @param scl SpriteChangeListener to be added to this notifier's listeners list.
+     */
+    void addSpriteChangeListener(SpriteChangeListener scl);
+
+    /**
+     * Remove a listener from the list of listeners to change events.
+     *
+     * @param scl SpriteChangeListener to be removed from this notifier's listeners list.
+     */
+    void removeSpriteChangeListener(SpriteChangeListener scl);
+}
@@ -0,0 +1,54 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder event of a hit of a block by a ball (Block.hit) - including its hit listeners.
+ * The event has no stack trace and only primitive fields, so it is cheap enough to be enabled all the time.
+ */
+@Name("arkanoid.BlockHit")
+@Label("Block Hit")
+@Category({"Arkanoid", "Physics"})
+@Description("A block is hit by a ball, and notifies its hit listeners")
+@StackTrace(false)
+public class BlockHitEvent extends Event {
+
+    /** The x value of the upper left point of the block. */
+    @Label("X")
+    private double x;
+    /** The y value of the upper left point of the block. */
+    @Label("Y")
+    private double y;
+    /** How much hit listeners were notified. */
+    @Label("Listeners")
+    private int listeners;
+
+    /**
+     * Set the upper left point of the block.
+     *
+     * @param x the x value of the point
+     * @param y the y value of the point
+     */
+    public void setPosition(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Set how much hit listeners were notified.
+     *
+     * @param listeners number of the listeners
+     */
+    public void setListeners(int listeners) {
+        this.listeners = listeners;
+    }
+}
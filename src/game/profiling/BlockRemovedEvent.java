@@ -0,0 +1,38 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder event of removing a hit block from the game level (BlockRemover.hitEvent),
+ * with the number of the blocks that remain.
+ * The event has no stack trace and only primitive fields, so it is cheap enough to be enabled all the time.
+ */
+@Name("arkanoid.BlockRemoved")
+@Label("Block Removed")
+@Category({"Arkanoid", "Physics"})
+@Description("A hit block is removed from the game level")
+@StackTrace(false)
+public class BlockRemovedEvent extends Event {
+
+    /** How much blocks remain in the level after the removing. */
+    @Label("Remaining Blocks")
+    private int remainingBlocks;
+
+    /**
+     * Set how much blocks remain in the level after the removing.
+     *
+     * @param remainingBlocks number of the remaining blocks
+     */
+    public void setRemainingBlocks(int remainingBlocks) {
+        this.remainingBlocks = remainingBlocks;
+    }
+}
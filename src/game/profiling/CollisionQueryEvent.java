@@ -0,0 +1,80 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Java Flight Recorder event of one collision query of the game environment, with the number of the candidates
+ * the spatial index offered for it.
+ * There are many queries in each tick, so by default only the queries that take 20 microseconds or more are
+ * recorded (the threshold can be changed in the recording settings). The event has no stack trace, and its fields
+ * are set only when it is recorded. The queries create the event only when isRecorded(), so without recording
+ * they don't allocate it.
+ */
+@Name("arkanoid.CollisionQuery")
+@Label("Collision Query")
+@Category({"Arkanoid", "Physics"})
+@Description("Closest collision query of the game environment")
+@StackTrace(false)
+@Threshold("20 us")
+public class CollisionQueryEvent extends Event {
+
+    /** The type of the event, to check whether it is enabled in a running recording. */
+    private static final EventType TYPE = EventType.getEventType(CollisionQueryEvent.class);
+
+    /** How much candidates were checked by the query. */
+    @Label("Candidates")
+    private int candidates;
+    /** Whether the query is of moving circle (swept) or of point. */
+    @Label("Swept")
+    private boolean swept;
+    /** Whether a collision was found. */
+    @Label("Found")
+    private boolean found;
+
+    /**
+     * Check if the event is enabled in a running recording - otherwise there is no need to create it.
+     *
+     * @return true if the event may be recorded
+     */
+    public static boolean isRecorded() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Set how much candidates were checked by the query.
+     *
+     * @param candidates number of the candidates
+     */
+    public void setCandidates(int candidates) {
+        this.candidates = candidates;
+    }
+
+    /**
+     * Set whether the query is of moving circle.
+     *
+     * @param swept true for circle (radius) query, false for point query
+     */
+    public void setSwept(boolean swept) {
+        this.swept = swept;
+    }
+
+    /**
+     * Set whether a collision was found.
+     *
+     * @param found true if the query has result
+     */
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+}
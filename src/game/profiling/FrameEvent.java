@@ -0,0 +1,63 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder event of one pass of the animation runner - from the start of the frame (begin) to
+ * its end (commit), before the runner sleeps until the next frame. It records how much simulation ticks ran in
+ * the frame and whether the frame was drawn, so gameplay hitches can be seen next to GC pauses and JIT activity.
+ * The event has no stack trace and only primitive fields, so it is cheap enough to be enabled all the time.
+ */
+@Name("arkanoid.Frame")
+@Label("Frame")
+@Category({"Arkanoid", "Animation"})
+@Description("One pass of the animation runner, without its sleep")
+@StackTrace(false)
+public class FrameEvent extends Event {
+
+    /** How much simulation ticks ran in the frame. */
+    @Label("Ticks")
+    private int ticks;
+    /** Whether the frame was drawn and shown (or skipped to catch up the ticks). */
+    @Label("Drawn")
+    private boolean drawn;
+    /** Whether the frame was late - its ticks or its drawing were due before the previous frame ended. */
+    @Label("Late")
+    private boolean late;
+
+    /**
+     * Set how much simulation ticks ran in the frame.
+     *
+     * @param ticks number of the ticks
+     */
+    public void setTicks(int ticks) {
+        this.ticks = ticks;
+    }
+
+    /**
+     * Set whether the frame was drawn and shown.
+     *
+     * @param drawn true if the frame was drawn, false if it was skipped
+     */
+    public void setDrawn(boolean drawn) {
+        this.drawn = drawn;
+    }
+
+    /**
+     * Set whether the frame was late.
+     *
+     * @param late true if the frame was late
+     */
+    public void setLate(boolean late) {
+        this.late = late;
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.profiling;
+
+import java.io.PrintStream;
+
+/**
+ * The class that measures the phases of the frames - drawing, moving the sprites, collision queries, hit listeners,
+ * showing and sleeping - each phase to its own LogHistogram of durations in nanoseconds.
+ * The profiler is global (the phases are measured deep in the game) and disabled by default, then start()
+ * returns 0 and record() does nothing, so the measured code only checks a flag.
+ * The histograms can be read while the game runs, and printed by dump().
+ * The phases may be nested - the collision queries and the hit listeners are parts of notifyAllTimePassed.
+ */
+public class FrameProfiler {
+
+    /** Phase of drawing the sprites of a game level frame (drawAllOn). */
+    public static final int DRAW = 0;
+    /** Phase of moving the sprites of a game level frame (notifyAllTimePassed, and the impact scheduler). */
+    public static final int TIME_PASSED = 1;
+    /** Phase of one collision query of the game environment. */
+    public static final int COLLISION_QUERY = 2;
+    /** Phase of notifying the hit listeners of a block about one hit. */
+    public static final int LISTENERS = 3;
+    /** Phase of showing a frame on the display (gui.show). */
+    public static final int SHOW = 4;
+    /** Phase of sleeping between the frames of the animation runner. */
+    public static final int SLEEP = 5;
+    /** One pass of the animation runner - ticks, drawing and showing, without the sleep. */
+    public static final int FRAME = 6;
+    /** How much phases there are. */
+    public static final int PHASE_COUNT = 7;
+
+    /** The names of the phases. */
+    private static final String[] NAMES = {"drawAllOn", "notifyAllTimePassed", "collision query",
+                                           "listener dispatch", "show", "sleep", "frame"};
+    /** Nanoseconds in one microsecond (the unit of dump()). */
+    private static final double NANOS_PER_MICROSECOND = 1000.0;
+
+    /** Whether the phases are measured. */
+    private static volatile boolean enabled = false;
+    /** The histogram of the durations of each phase. */
+    private static LogHistogram[] histograms = createHistograms();
+
+    /**
+     * Create empty histogram for each phase.
+     *
+     * @return new histograms
+     */
+    private static LogHistogram[] createHistograms() {
+        LogHistogram[] phases = new LogHistogram[PHASE_COUNT];
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            phases[i] = new LogHistogram();
+        }
+        return phases;
+    }
+
+    /**
+     * Check if the phases are measured.
+     *
+     * @return true if the profiler is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether the phases are measured.
+     *
+     * @param state true to enable the profiler
+     */
+    public static void setEnabled(boolean state) {
+        enabled = state;
+    }
+
+    /**
+     * Get the start time of a phase, to be given to record() at its end.
+     *
+     * @return System.nanoTime(), or 0 if the profiler is disabled
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the duration of a phase, from its start time until now.
+     *
+     * @param phase one of the phases constants
+     * @param startTime the value start() returned at the start of the phase (0 = not measured)
+     */
+    public static void record(int phase, long startTime) {
+        if (startTime != 0 && enabled) {
+            histograms[phase].record(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Get the histogram of the durations of a phase, in nanoseconds.
+     *
+     * @param phase one of the phases constants
+     * @return the histogram of the phase
+     */
+    public static LogHistogram getHistogram(int phase) {
+        return histograms[phase];
+    }
+
+    /**
+     * Get the name of a phase.
+     *
+     * @param phase one of the phases constants
+     * @return the name of the phase
+     */
+    public static String getPhaseName(int phase) {
+        return NAMES[phase];
+    }
+
+    /**
+     * Forget all the measured durations.
+     */
+    public static void reset() {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            histograms[i].reset();
+        }
+    }
+
+    /**
+     * Print a table of the phases - count, mean, p50, p99, p99.9 and max of each one, in microseconds.
+     *
+     * @param out to print the table to
+     */
+    public static void dump(PrintStream out) {
+        out.println(String.format("%-20s %10s %10s %10s %10s %10s %10s", "phase (us)", "count", "mean", "p50",
+                                  "p99", "p99.9", "max"));
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            LogHistogram h = histograms[i];
+            out.println(String.format("%-20s %10d %10.1f %10.1f %10.1f %10.1f %10.1f", NAMES[i], h.getCount(),
+                                      h.getMean() / NANOS_PER_MICROSECOND,
+                                      h.getPercentile(50) / NANOS_PER_MICROSECOND,
+                                      h.getPercentile(99) / NANOS_PER_MICROSECOND,
+                                      h.getPercentile(99.9) / NANOS_PER_MICROSECOND,
+                                      h.getMax() / NANOS_PER_MICROSECOND));
+        }
+    }
+}
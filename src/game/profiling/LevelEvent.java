@@ -0,0 +1,67 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder event of one level of the game flow (GameFlow.runLevels) - from the start of the level
+ * (begin) to the transition out of it (commit), whether the level was cleared or the lives ended.
+ * The event has no stack trace, and it is committed once per level.
+ */
+@Name("arkanoid.Level")
+@Label("Level")
+@Category({"Arkanoid", "Game Flow"})
+@Description("One level of the game, from its start until it is cleared or the lives end")
+@StackTrace(false)
+public class LevelEvent extends Event {
+
+    /** The name of the level. */
+    @Label("Level Name")
+    private String levelName;
+    /** Whether all the blocks of the level were removed. */
+    @Label("Cleared")
+    private boolean cleared;
+    /** The score at the end of the level. */
+    @Label("Score")
+    private int score;
+    /** The lives at the end of the level. */
+    @Label("Lives")
+    private int lives;
+
+    /**
+     * Set the name of the level.
+     *
+     * @param levelName the name of the level
+     */
+    public void setLevelName(String levelName) {
+        this.levelName = levelName;
+    }
+
+    /**
+     * Set whether all the blocks of the level were removed.
+     *
+     * @param cleared true if the level was cleared
+     */
+    public void setCleared(boolean cleared) {
+        this.cleared = cleared;
+    }
+
+    /**
+     * Set the score and the lives at the end of the level.
+     *
+     * @param score the score of the user
+     * @param lives the lives of the user
+     */
+    public void setResult(int score, int lives) {
+        this.score = score;
+        this.lives = lives;
+    }
+}
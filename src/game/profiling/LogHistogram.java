@@ -0,0 +1,163 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class of histogram of non-negative values (like durations in nanoseconds) in logarithmic buckets.
+ * Each power of 2 is split to SUB_BUCKETS linear buckets, so a value is kept with relative error of at most
+ * 1 / SUB_BUCKETS, in fixed number of buckets for all the long values.
+ * Recording doesn't allocate, and may be done by several threads together (the counters are atomic),
+ * and the histogram can be read while it is recorded (the read values may miss the last records).
+ */
+public class LogHistogram {
+
+    /** How much bits of each value (after its highest bit) select its sub bucket. */
+    private static final int SUB_BITS = 4;
+    /** How much linear buckets each power of 2 is split to. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** How much buckets there are (for all the non-negative long values). */
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    /** The number of the values in each bucket. */
+    private AtomicLongArray buckets;
+    /** The number of the recorded values. */
+    private AtomicLong count;
+    /** The sum of the recorded values. */
+    private AtomicLong total;
+    /** The maximum recorded value. */
+    private AtomicLong max;
+
+    /**
+     * Constructor of empty histogram.
+     */
+    public LogHistogram() {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new AtomicLong();
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Record a value. negative value is recorded as 0.
+     *
+     * @param value to record
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        this.buckets.incrementAndGet(bucketOf(v));
+        this.count.incrementAndGet();
+        this.total.addAndGet(v);
+        long currentMax = this.max.get();
+        while (v > currentMax && !this.max.compareAndSet(currentMax, v)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * Get how much values were recorded.
+     *
+     * @return number of the values
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Get the sum of the recorded values.
+     *
+     * @return the total of the values
+     */
+    public long getTotal() {
+        return this.total.get();
+    }
+
+    /**
+     * Get the maximum recorded value.
+     *
+     * @return the max value, 0 if no value was recorded
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Get the average of the recorded values.
+     *
+     * @return the mean value, 0 if no value was recorded
+     */
+    public double getMean() {
+        long n = this.getCount();
+        return n == 0 ? 0 : (double) this.getTotal() / n;
+    }
+
+    /**
+     * Get the value that the given percent of the recorded values are lower or equal to it
+     * (the highest value of its bucket, but not more than the max value).
+     *
+     * @param percent of the values [0-100], like 50 for the median, 99.9 for the 1 of 1000 slowest
+     * @return the percentile value, 0 if no value was recorded
+     */
+    public long getPercentile(double percent) {
+        long n = this.getCount();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percent) / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(highestOf(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    /**
+     * Forget all the recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.set(0);
+        this.total.set(0);
+        this.max.set(0);
+    }
+
+    /**
+     * Get the bucket of a value.
+     *
+     * @param value non-negative value
+     * @return index of the bucket
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Get the highest value of a bucket.
+     *
+     * @param bucket index of the bucket
+     * @return the highest value that is recorded to the bucket
+     */
+    private static long highestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
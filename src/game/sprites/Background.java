@@ -1,17 +1,26 @@
 package game.sprites;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
 import biuoop.DrawSurface;
 import game.animation.GameLevel;
 import game.axes.Rectangle;
+import game.listeners.SpriteChangeListener;
+import game.listeners.SpriteChangeNotifier;
 
-/** The class for draw background (color) on DrawSurface. optional to draw also another Sprite. */
-public class Background implements Sprite {
+/**
+ * The class for draw background (color) on DrawSurface. optional to draw also another Sprite.
+ * The background is changed only when its top sprite reports that it was changed (SpriteChangeNotifier).
+ */
+public class Background implements Sprite, SpriteChangeNotifier, SpriteChangeListener {
 
     /** The color of the background. */
     private Color color;
     /** Another sprite to draw on the colored background [optional]. */
     private Sprite topSprite;
+    /** The listeners to the changes of the background. */
+    private List<SpriteChangeListener> changeListeners;
 
     /**
      * Constructor which also get sprite to draw on the color background.
@@ -24,6 +33,11 @@ public class Background implements Sprite {
     public Background(Color color, Sprite topSprite) {
         this.color = color;
         this.topSprite = topSprite;
+        this.changeListeners = new ArrayList<SpriteChangeListener>();
+        // the background is changed when its top sprite is changed
+        if (topSprite instanceof SpriteChangeNotifier) {
+            ((SpriteChangeNotifier) topSprite).addSpriteChangeListener(this);
+        }
     }
 
     /**
@@ -38,7 +52,7 @@ public class Background implements Sprite {
 
     @Override
     public void addToGameLevel(GameLevel g) {
-        g.addSprite(this);
+        g.addSprite(this, SpriteCollection.BACKGROUND_LAYER);
     }
 
     @Override
@@ -68,4 +82,29 @@ public class Background implements Sprite {
         }
     }
 
+    /* SpriteChangeNotifier interface methods */
+
+    @Override
+    public void addSpriteChangeListener(SpriteChangeListener scl) {
+        if (scl != null && !this.changeListeners.contains(scl)) {
+            this.changeListeners.add(scl);
+        }
+    }
+
+    @Override
+    public void removeSpriteChangeListener(SpriteChangeListener scl) {
+        this.changeListeners.remove(scl);
+    }
+
+    /* SpriteChangeListener interface methods */
+
+    @Override
+    public void spriteChanged(Sprite changed) {
+        // Make a copy of the changeListeners before iterating over them.
+        List<SpriteChangeListener> listeners = new ArrayList<SpriteChangeListener>(this.changeListeners);
+        for (SpriteChangeListener scl : listeners) {
+            scl.spriteChanged(this);
+        }
+    }
+
 }
\ No newline at end of file
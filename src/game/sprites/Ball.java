@@ -14,11 +14,15 @@ import game.axes.Velocity;
 
 /**
  * The class represents a ball in coordinate system(developed\suitable for cp gui). implements Sprite interface.
+ * Ball that is added to GameLevel is handle to its slot in the BallSystem of the game level,
+ * which keeps its center & velocity, and moves & draws it with the other balls.
  */
-public class Ball implements Sprite {
+public class Ball implements InterpolatedSprite {
 
     /** The ball center. */
     private Point center;
+    /** The ball center before the last step (for drawing between steps). */
+    private Point previousCenter;
     /** The ball radius==size. */
     private int radius;
     /** The ball color. */
@@ -29,6 +33,10 @@ public class Ball implements Sprite {
     private boolean is3D;
     /** The associated game with this ball. */
     private GameLevel game = null;
+    /** The system that keeps the ball state while the ball is in it, or null if the ball keeps its own state. */
+    private BallSystem system = null;
+    /** The slot of the ball in its system. */
+    private int slot = -1;
 
     /**
      * Constructor which create ball instance.
@@ -44,6 +52,7 @@ public class Ball implements Sprite {
             throw new RuntimeException("A ball must have center & positive size & color & velocity");
         }
         this.center = center;
+        this.previousCenter = center;
         this.radius = radius;
         this.velocity = velocity;
         this.color = color;
@@ -82,6 +91,9 @@ public class Ball implements Sprite {
      * @return x value of the center of the ball.
      */
     public double getX() {
+        if (this.system != null) {
+            return this.system.getX(this.slot);
+        }
         return center.getX();
     }
 
@@ -91,6 +103,9 @@ public class Ball implements Sprite {
      * @return y value of the center of the ball.
      */
     public double getY() {
+        if (this.system != null) {
+            return this.system.getY(this.slot);
+        }
         return center.getY();
     }
 
@@ -100,6 +115,9 @@ public class Ball implements Sprite {
      * @return Point center of the ball
      */
     public Point getCenter() {
+        if (this.system != null) {
+            return this.system.getCenter(this.slot);
+        }
         return center;
     }
 
@@ -128,11 +146,79 @@ public class Ball implements Sprite {
      * @return velocity of the ball.
      */
     public Velocity getVelocity() {
+        if (this.system != null) {
+            return this.system.getVelocity(this.slot);
+        }
         return velocity;
     }
 
+    /**
+     * Get if the ball is drawn as '3D'.
+     *
+     * @return true if the ball is drawn as '3D'
+     */
+    public boolean is3D() {
+        return this.is3D;
+    }
+
+    /**
+     * Get the system that keeps the ball state.
+     *
+     * @return BallSystem of the ball, or null if the ball keeps its own state
+     */
+    public BallSystem getBallSystem() {
+        return this.system;
+    }
+
+    /**
+     * Get the slot of the ball in its system.
+     *
+     * @return slot of the ball, -1 if the ball isn't in system
+     */
+    public int getSlot() {
+        return this.slot;
+    }
+
     /* Setters */
 
+    /**
+     * Get the center point of the ball before its last step (timePassed).
+     *
+     * @return the previous center of the ball
+     */
+    public Point getPreviousCenter() {
+        if (this.system != null) {
+            return this.system.getPreviousCenter(this.slot);
+        }
+        return this.previousCenter;
+    }
+
+    /**
+     * Set the center point of the ball.
+     *
+     * @param c new center of the ball.
+     */
+    public void setCenter(Point c) {
+        if (this.system != null) {
+            this.system.setCenter(this.slot, c);
+            return;
+        }
+        this.center = c;
+    }
+
+    /**
+     * Set the center point of the ball before its last step [called by BallSystem when the ball leaves it].
+     *
+     * @param c the previous center of the ball.
+     */
+    public void setPreviousCenter(Point c) {
+        if (this.system != null) {
+            this.system.setPreviousCenter(this.slot, c);
+            return;
+        }
+        this.previousCenter = c;
+    }
+
     /**
      * Set the velocity of the ball.
      * The velocity is immutable object, so changing the ball velocity is only by setVelocity().
@@ -140,10 +226,15 @@ public class Ball implements Sprite {
      * @param v new velocity of the ball.
      */
     public void setVelocity(Velocity v) {
-        this.velocity = v;
+        Velocity newVelocity = v;
         if (v == null) {
-            this.velocity = Velocity.ZERO;
+            newVelocity = Velocity.ZERO;
+        }
+        if (this.system != null) {
+            this.system.setVelocity(this.slot, newVelocity);
+            return;
         }
+        this.velocity = newVelocity;
     }
 
     /**
@@ -153,7 +244,7 @@ public class Ball implements Sprite {
      * @param dy new dy-component velocity of the ball.
      */
     public void setVelocity(double dx, double dy) {
-        this.velocity = new Velocity(dx, dy);
+        this.setVelocity(new Velocity(dx, dy));
     }
 
     /**
@@ -163,6 +254,20 @@ public class Ball implements Sprite {
      */
     public void set3D(boolean state) {
         this.is3D = state;
+        if (this.system != null) {
+            this.system.set3D(this.slot, state);
+        }
+    }
+
+    /**
+     * Set the system that keeps the ball state [called by BallSystem].
+     *
+     * @param ballSystem the system of the ball, or null if the ball keeps its own state again
+     * @param ballSlot the slot of the ball in the system, -1 for no system
+     */
+    public void attach(BallSystem ballSystem, int ballSlot) {
+        this.system = ballSystem;
+        this.slot = ballSlot;
     }
 
 
@@ -171,12 +276,20 @@ public class Ball implements Sprite {
     @Override
     public void addToGameLevel(GameLevel g) {
         this.game = g;
-        g.addSprite(this);
+        // the balls of game level are kept, moved and drawn by its ball system
+        g.getBallSystem().add(this);
+        // in event-driven game level the ball is moved by the impact scheduler
+        if (g.getImpactScheduler() != null) {
+            g.getImpactScheduler().addBall(this);
+        }
     }
 
     @Override
     public void removeFromGameLevel(GameLevel g) {
-        g.removeSprite(this);
+        g.getBallSystem().remove(this);
+        if (g.getImpactScheduler() != null) {
+            g.getImpactScheduler().removeBall(this);
+        }
     }
 
     @Override
@@ -191,8 +304,20 @@ public class Ball implements Sprite {
         ColorsUtil.drawBall(surface, this.getX(), this.getY(), this.getSize(), this.color, this.is3D);
     }
 
+    /* InterpolatedSprite interface methods */
+
+    @Override
+    public void drawOn(DrawSurface surface, double alpha) {
+        Point previous = this.getPreviousCenter();
+        double x = MathUtil.interpolate(previous.getX(), this.getX(), alpha);
+        double y = MathUtil.interpolate(previous.getY(), this.getY(), alpha);
+        ColorsUtil.drawBall(surface, x, y, this.getSize(), this.color, this.is3D);
+    }
+
     @Override
     public void timePassed() {
+        // remember where the ball was, for drawing between the steps
+        this.setPreviousCenter(this.getCenter());
         // go to the next point according to the velcoity and to the associated game
         this.moveOneStep();
     }
@@ -200,30 +325,108 @@ public class Ball implements Sprite {
     /**
      * Move the ball to its new center according to the velocity,
      * and according to the GameLevel (if) associated with the ball.
+     * After a collision the ball goes on with the rest of its step, up to 'substeps' collisions (GameSettings).
+     * In event-driven GameLevel the ball isn't moved here, its ImpactScheduler moves it.
      */
     public void moveOneStep() {
         // if there is no game associated just move the ball
         if (this.game == null) {
-            Point nextCenter = this.velocity.applyToPoint(this.center);
-            this.center = nextCenter;
+            this.setCenter(this.getVelocity().applyToPoint(this.getCenter()));
             return;
         }
 
+        if (this.game.getImpactScheduler() != null) {
+            return;
+        }
+
+        // after a collision the ball goes the rest of its step, up to 'substeps' collisions in one step
+        int substeps = Math.max(1, this.game.getSettings().getSubsteps());
+        double remained = 1;
+        for (int i = 0; i < substeps && remained > 0; i++) {
+            if (this.game.getSettings().isSweptCollision()) {
+                remained = this.moveSweptPart(remained);
+            } else {
+                remained = this.movePart(remained);
+            }
+            // the hit may remove the ball from the game level (like the death region), then it doesn't go on
+            if (this.getBallSystem() == null) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Move the ball along part of its step [velocity], till its first collision in that part.
+     *
+     * @param part of the step to go, 0 < part <= 1
+     * @return the part of the step that is left after the collision, 0 if there was no collision
+     */
+    private double movePart(double part) {
+        Velocity currVelocity = this.getVelocity();
+        Point start = this.getCenter();
+        Point nextCenter = new Point(start.getX() + part * currVelocity.getDx(),
+                                     start.getY() + part * currVelocity.getDy());
         // if there is game associated with this ball, get the closest collision  in the ball trajectory
-        Line trajectory = new Line(this.center, this.velocity.applyToPoint(this.center));
+        Line trajectory = new Line(start, nextCenter);
         CollisionInfo closestCollision = this.game.getEnvironment().getClosestCollision(trajectory);
         // if there is no collision just move the ball
         if (closestCollision == null) {
-            Point nextCenter = this.velocity.applyToPoint(this.center);
-            this.center = nextCenter;
-            return;
+            this.setCenter(nextCenter);
+            return 0;
         }
         // if there is a collision go to that point, and keep small distance
         Point collisionPoint = closestCollision.collisionPoint();
-        Velocity velcoityToCollision = new Velocity(this.center, collisionPoint);
-        this.center = velcoityToCollision.lower().applyToPoint(this.center);
+        Velocity velcoityToCollision = new Velocity(start, collisionPoint);
+        Point stop = velcoityToCollision.lower().applyToPoint(start);
+        this.setCenter(stop);
         // and update the velocity after the collision
-        this.velocity = closestCollision.collisionObject().hit(this, collisionPoint, this.velocity);
+        this.setVelocity(closestCollision.collisionObject().hit(this, collisionPoint, currVelocity));
+        return remainedPart(part, start.distance(stop), trajectory.length());
+    }
+
+    /**
+     * Move the ball along part of its step [velocity], as circle that moves [swept circle],
+     * so the ball stops when its border (not its center) touches a collidable of the associated GameLevel.
+     *
+     * @param part of the step to go, 0 < part <= 1
+     * @return the part of the step that is left after the collision, 0 if there was no collision
+     */
+    private double moveSweptPart(double part) {
+        Velocity currVelocity = this.getVelocity();
+        Point start = this.getCenter();
+        Point nextCenter = new Point(start.getX() + part * currVelocity.getDx(),
+                                     start.getY() + part * currVelocity.getDy());
+        Line trajectory = new Line(start, nextCenter);
+        CollisionInfo impact = this.game.getEnvironment().getClosestCollision(trajectory, null, this.radius);
+        // if there is no collision just move the ball
+        if (impact == null) {
+            this.setCenter(nextCenter);
+            return 0;
+        }
+        // if there is a collision go to the center at the time of impact, and keep small distance
+        double length = trajectory.length();
+        double distance = Math.max(0, impact.collisionTime() * length - MathUtil.BIG_EPSILON);
+        double moved = length == 0 ? 0 : distance / length;
+        this.setCenter(new Point(start.getX() + moved * (nextCenter.getX() - start.getX()),
+                                 start.getY() + moved * (nextCenter.getY() - start.getY())));
+        // and update the velocity after the collision (the contact point is on the collidable border)
+        this.setVelocity(impact.collisionObject().hit(this, impact.collisionPoint(), currVelocity));
+        return remainedPart(part, distance, length);
+    }
+
+    /**
+     * Get the part of the step that is left after the ball went some distance of its trajectory.
+     *
+     * @param part of the step the trajectory is
+     * @param distance the ball went along the trajectory
+     * @param length of the trajectory
+     * @return the part of the step that is left, 0 if nothing is left
+     */
+    private static double remainedPart(double part, double distance, double length) {
+        if (length == 0 || distance >= length) {
+            return 0;
+        }
+        return part * (1 - distance / length);
     }
 
     /**
@@ -239,31 +442,33 @@ public class Ball implements Sprite {
      */
     public void moveOneStep(int minWidth,  int minHeight, int maxWidth, int maxHeight) {
         // get the next center if there was no limits
-        Point nextCenter = this.velocity.applyToPoint(this.center);
+        Velocity currVelocity = this.getVelocity();
+        Point nextCenter = currVelocity.applyToPoint(this.getCenter());
         // check if it will be outside the left/right limit AND if has no plan[check velocity] to go inside the frame
-        boolean isGoOutsideRight = nextCenter.getX() +  radius > maxWidth && velocity.getDx() >= 0;
-        boolean isGoOutsideLeft = nextCenter.getX() - radius < minWidth && velocity.getDx() <= 0;
+        boolean isGoOutsideRight = nextCenter.getX() +  radius > maxWidth && currVelocity.getDx() >= 0;
+        boolean isGoOutsideLeft = nextCenter.getX() - radius < minWidth && currVelocity.getDx() <= 0;
         //if there is a problem, force the ball to stay in the frame, and change its dx-component for the NEXT time
         if (isGoOutsideRight) {
-            velocity = new Velocity(-1 * velocity.getDx(), velocity.getDy());
+            currVelocity = new Velocity(-1 * currVelocity.getDx(), currVelocity.getDy());
             nextCenter = new Point(maxWidth - (radius), nextCenter.getY());
         }
         if (isGoOutsideLeft) {
-            velocity = new Velocity(-1 * velocity.getDx(), velocity.getDy());
+            currVelocity = new Velocity(-1 * currVelocity.getDx(), currVelocity.getDy());
             nextCenter = new Point(minWidth + (radius), nextCenter.getY());
         }
         // check if it will be outside the up/down limit AND if has no plan[check velocity] to go inside the frame
-        boolean isGoOutsideUp = nextCenter.getY() - radius < minHeight && velocity.getDy() <= 0;
-        boolean isGoOutsideDown = nextCenter.getY() + radius > maxHeight && velocity.getDy() >= 0;
+        boolean isGoOutsideUp = nextCenter.getY() - radius < minHeight && currVelocity.getDy() <= 0;
+        boolean isGoOutsideDown = nextCenter.getY() + radius > maxHeight && currVelocity.getDy() >= 0;
         //if there is a problem, force the ball to stay in the frame, and change its dy-component for the NEXT time
         if (isGoOutsideUp) {
-            velocity = new Velocity(velocity.getDx(), -1 * velocity.getDy());
+            currVelocity = new Velocity(currVelocity.getDx(), -1 * currVelocity.getDy());
             nextCenter = new Point(nextCenter.getX(), minHeight + (radius));
         }
         if (isGoOutsideDown) {
-            velocity = new Velocity(velocity.getDx(), -1 * velocity.getDy());
+            currVelocity = new Velocity(currVelocity.getDx(), -1 * currVelocity.getDy());
             nextCenter = new Point(nextCenter.getX(), maxHeight - (radius));
         }
-        this.center = nextCenter;
+        this.setCenter(nextCenter);
+        this.setVelocity(currVelocity);
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The class that runs the collision queries of range of balls of a BallSystem, on a ForkJoinPool.
+ * The range is split in halves till it is small enough, and each small range (batch) is queried by one
+ * thread, with the CollisionCandidates the system keeps for the batch. The queries only read the environment
+ * [it must not be changed meanwhile], and each query result is written to the slot of its ball, so the order of
+ * the threads doesn't matter.
+ */
+public class BallQueryTask extends RecursiveAction {
+
+    /** The maximum number of balls that are queried by one task without splitting it. */
+    public static final int BATCH_SIZE = 32;
+    /** The minimum number of balls of a batch, unless all the balls are less - batches start at least this apart. */
+    public static final int MIN_BATCH_SIZE = BATCH_SIZE / 2;
+
+    /** Serialization version (RecursiveAction is Serializable). */
+    private static final long serialVersionUID = 1L;
+
+    /** The system of the balls. */
+    private BallSystem system;
+    /** The first slot of the range. */
+    private int from;
+    /** The slot after the last slot of the range. */
+    private int to;
+
+    /**
+     * Constructor for the queries of the balls at slots [from, to) of the system.
+     *
+     * @param system of the balls
+     * @param from the first slot of the range
+     * @param to the slot after the last slot of the range
+     */
+    public BallQueryTask(BallSystem system, int from, int to) {
+        this.system = system;
+        this.from = from;
+        this.to = to;
+    }
+
+    /* RecursiveAction methods */
+
+    @Override
+    protected void compute() {
+        if (this.to - this.from <= BATCH_SIZE) {
+            this.system.queryRange(this.from, this.to, this.system.getBatchCandidates(this.from));
+            return;
+        }
+        int middle = (this.from + this.to) >>> 1;
+        invokeAll(new BallQueryTask(this.system, this.from, middle), new BallQueryTask(this.system, middle, this.to));
+    }
+}
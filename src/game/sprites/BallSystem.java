@@ -0,0 +1,605 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import biuoop.DrawSurface;
+import game.GameSettings;
+import game.animation.GameLevel;
+import game.axes.IntersectionKernel;
+import game.axes.MathUtil;
+import game.axes.Point;
+import game.axes.Rectangle;
+import game.axes.Velocity;
+import game.listeners.EnvironmentListener;
+
+/**
+ * The class that keeps the balls of a game level in parallel arrays (structure of arrays), implements Sprite.
+ * The balls of the system are moved and drawn by one loop over the arrays [the system is one sprite],
+ * and each Ball object is just a handle to its slot in the system.
+ * The balls are moved by their adding order, exactly as each ball moves itself by Ball.moveOneStep().
+ * The system should be added to the game level after the paddle, like the balls themselves were.
+ * With the parallel setting, the collision queries of all the balls run first on the common ForkJoinPool
+ * against the environment as it is at the start of the step, and then the balls are moved and hit by their order.
+ * Ball that its query may be changed by the hits of the balls before it is queried again before it moves,
+ * so the result is exactly the same as moving the balls one by one.
+ */
+public class BallSystem implements InterpolatedSprite, EnvironmentListener {
+
+    /** The minimum number of balls that their collision queries are worth running in parallel. */
+    public static final int PARALLEL_THRESHOLD = 64;
+
+    /** Start capacity of the arrays. */
+    private static final int START_CAPACITY = 16;
+
+    /** The ball handle of each slot. */
+    private Ball[] handles;
+    /** The x value of the center of each ball. */
+    private double[] xs;
+    /** The y value of the center of each ball. */
+    private double[] ys;
+    /** The x value of the center of each ball before the last step (for drawing between steps). */
+    private double[] previousXs;
+    /** The y value of the center of each ball before the last step (for drawing between steps). */
+    private double[] previousYs;
+    /** The dx component of the velocity of each ball. */
+    private double[] dxs;
+    /** The dy component of the velocity of each ball. */
+    private double[] dys;
+    /** The velocity object of each ball (the same values as dxs, dys), for the ball handles. */
+    private Velocity[] velocities;
+    /** The radius of each ball. */
+    private int[] radii;
+    /** The color of each ball. */
+    private Color[] colors;
+    /** Whether each ball is drawn as '3D'. */
+    private boolean[] shapes3D;
+    /** The collision of the step of each ball, found by the parallel queries (null if there is no collision). */
+    private CollisionInfo[] pending;
+    /** Whether the center / velocity of each ball was changed after its parallel query. */
+    private boolean[] stale;
+    /** Reusable candidates collection for each batch of the parallel queries, by the first slot of the batch. */
+    private CollisionCandidates[] batchCandidates;
+    /** How much balls are in the system. */
+    private int count;
+
+    /** The slot that the move loop is at, -1 if the balls aren't moved right now. */
+    private int cursor;
+    /** The slot that the move loop stops before (balls added while moving aren't moved in the same loop). */
+    private int moveEnd;
+    /** The associated game level with this system. */
+    private GameLevel game;
+    /** Whether the balls are moved right now after their parallel queries. */
+    private boolean committing;
+    /** The rectangles of the collidables that were added / removed while committing. */
+    private List<Rectangle> changedRectangles;
+    /** Whether collidable has moved while committing [then all the next balls are queried again]. */
+    private boolean isEnvironmentMoved;
+
+    /**
+     * Constructor for empty system.
+     */
+    public BallSystem() {
+        this.handles = new Ball[START_CAPACITY];
+        this.xs = new double[START_CAPACITY];
+        this.ys = new double[START_CAPACITY];
+        this.previousXs = new double[START_CAPACITY];
+        this.previousYs = new double[START_CAPACITY];
+        this.dxs = new double[START_CAPACITY];
+        this.dys = new double[START_CAPACITY];
+        this.velocities = new Velocity[START_CAPACITY];
+        this.radii = new int[START_CAPACITY];
+        this.colors = new Color[START_CAPACITY];
+        this.shapes3D = new boolean[START_CAPACITY];
+        this.pending = new CollisionInfo[START_CAPACITY];
+        this.stale = new boolean[START_CAPACITY];
+        this.batchCandidates = new CollisionCandidates[0];
+        this.count = 0;
+        this.cursor = -1;
+        this.moveEnd = 0;
+        this.committing = false;
+        this.changedRectangles = new ArrayList<Rectangle>();
+        this.isEnvironmentMoved = false;
+    }
+
+    /**
+     * Get how much balls are in the system.
+     *
+     * @return number of balls
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Add ball to the system - the ball state moves to the system, and the ball becomes handle to it.
+     * 'null' ball / ball that is already in system won't be added.
+     *
+     * @param ball to add
+     */
+    public void add(Ball ball) {
+        if (ball == null || ball.getBallSystem() != null) {
+            return;
+        }
+        if (this.count == this.handles.length) {
+            grow();
+        }
+        int slot = this.count++;
+        this.handles[slot] = ball;
+        this.xs[slot] = ball.getX();
+        this.ys[slot] = ball.getY();
+        this.previousXs[slot] = ball.getPreviousCenter().getX();
+        this.previousYs[slot] = ball.getPreviousCenter().getY();
+        this.radii[slot] = ball.getSize();
+        this.colors[slot] = ball.getColor();
+        this.shapes3D[slot] = ball.is3D();
+        setVelocity(slot, ball.getVelocity());
+        ball.attach(this, slot);
+    }
+
+    /**
+     * Remove ball from the system - the ball keeps its state by itself again. not existing ball is ignored.
+     * The other balls keep their order.
+     *
+     * @param ball to remove
+     */
+    public void remove(Ball ball) {
+        if (ball == null || ball.getBallSystem() != this) {
+            return;
+        }
+        int slot = ball.getSlot();
+        Point center = getCenter(slot);
+        Point previousCenter = getPreviousCenter(slot);
+        Velocity velocity = this.velocities[slot];
+        ball.attach(null, -1);
+        ball.setCenter(center);
+        ball.setPreviousCenter(previousCenter);
+        ball.setVelocity(velocity);
+        // shift the next balls one slot back
+        int moved = this.count - slot - 1;
+        System.arraycopy(this.handles, slot + 1, this.handles, slot, moved);
+        System.arraycopy(this.xs, slot + 1, this.xs, slot, moved);
+        System.arraycopy(this.ys, slot + 1, this.ys, slot, moved);
+        System.arraycopy(this.previousXs, slot + 1, this.previousXs, slot, moved);
+        System.arraycopy(this.previousYs, slot + 1, this.previousYs, slot, moved);
+        System.arraycopy(this.dxs, slot + 1, this.dxs, slot, moved);
+        System.arraycopy(this.dys, slot + 1, this.dys, slot, moved);
+        System.arraycopy(this.velocities, slot + 1, this.velocities, slot, moved);
+        System.arraycopy(this.radii, slot + 1, this.radii, slot, moved);
+        System.arraycopy(this.colors, slot + 1, this.colors, slot, moved);
+        System.arraycopy(this.shapes3D, slot + 1, this.shapes3D, slot, moved);
+        System.arraycopy(this.pending, slot + 1, this.pending, slot, moved);
+        System.arraycopy(this.stale, slot + 1, this.stale, slot, moved);
+        this.count--;
+        this.handles[this.count] = null;
+        this.velocities[this.count] = null;
+        this.colors[this.count] = null;
+        this.pending[this.count] = null;
+        for (int i = slot; i < this.count; i++) {
+            this.handles[i].attach(this, i);
+        }
+        // keep the move loop on the next ball
+        if (slot <= this.cursor) {
+            this.cursor--;
+        }
+        if (slot < this.moveEnd) {
+            this.moveEnd--;
+        }
+    }
+
+    /**
+     * Get the x value of the center of the ball at the given slot.
+     *
+     * @param slot of the ball
+     * @return x value of the ball center
+     */
+    public double getX(int slot) {
+        return this.xs[slot];
+    }
+
+    /**
+     * Get the y value of the center of the ball at the given slot.
+     *
+     * @param slot of the ball
+     * @return y value of the ball center
+     */
+    public double getY(int slot) {
+        return this.ys[slot];
+    }
+
+    /**
+     * Get the center of the ball at the given slot.
+     *
+     * @param slot of the ball
+     * @return new point of the ball center
+     */
+    public Point getCenter(int slot) {
+        return new Point(this.xs[slot], this.ys[slot]);
+    }
+
+    /**
+     * Set the center of the ball at the given slot.
+     *
+     * @param slot of the ball
+     * @param center new center of the ball
+     */
+    public void setCenter(int slot, Point center) {
+        this.xs[slot] = center.getX();
+        this.ys[slot] = center.getY();
+        this.stale[slot] = this.committing;
+    }
+
+    /**
+     * Get the center of the ball at the given slot before the last step.
+     *
+     * @param slot of the ball
+     * @return new point of the previous ball center
+     */
+    public Point getPreviousCenter(int slot) {
+        return new Point(this.previousXs[slot], this.previousYs[slot]);
+    }
+
+    /**
+     * Set the center of the ball at the given slot before the last step.
+     *
+     * @param slot of the ball
+     * @param center the previous center of the ball
+     */
+    public void setPreviousCenter(int slot, Point center) {
+        this.previousXs[slot] = center.getX();
+        this.previousYs[slot] = center.getY();
+    }
+
+    /**
+     * Get the velocity of the ball at the given slot.
+     *
+     * @param slot of the ball
+     * @return velocity of the ball
+     */
+    public Velocity getVelocity(int slot) {
+        return this.velocities[slot];
+    }
+
+    /**
+     * Set the velocity of the ball at the given slot.
+     *
+     * @param slot of the ball
+     * @param velocity new velocity of the ball. not null.
+     */
+    public void setVelocity(int slot, Velocity velocity) {
+        this.velocities[slot] = velocity;
+        this.dxs[slot] = velocity.getDx();
+        this.dys[slot] = velocity.getDy();
+        this.stale[slot] = this.committing;
+    }
+
+    /**
+     * Set if the ball at the given slot will be drawn as '3D'.
+     *
+     * @param slot of the ball
+     * @param state to set the '3D' proprety to that state
+     */
+    public void set3D(int slot, boolean state) {
+        this.shapes3D[slot] = state;
+    }
+
+    /**
+     * Add the sprite rectangles of the balls [their tiny place] to a list, like each ball was a sprite.
+     *
+     * @param rectangles list to add the rectangles to
+     */
+    public void addSpriteRectangles(List<Rectangle> rectangles) {
+        double size = 2 * MathUtil.MEDIUM_EPSILON;
+        for (int i = 0; i < this.count; i++) {
+            Point upperLeft = new Point(this.xs[i] - MathUtil.MEDIUM_EPSILON, this.ys[i] - MathUtil.MEDIUM_EPSILON);
+            rectangles.add(new Rectangle(upperLeft, size, size));
+        }
+    }
+
+    /**
+     * Move all the balls one step, by their order.
+     * Ball that doesn't collide just adds its velocity to its center, without creating objects,
+     * and the collision is done like Ball.moveOneStep() does it.
+     * With the parallel setting (and enough balls), the collision queries run in parallel before the balls move.
+     * Steps with more than one collision are done by Ball.moveOneStep() itself, one ball after the other.
+     */
+    public void moveAll() {
+        if (this.game == null) {
+            for (int i = 0; i < this.count; i++) {
+                this.xs[i] += this.dxs[i];
+                this.ys[i] += this.dys[i];
+            }
+            return;
+        }
+        // in event-driven game level the scheduler moves the balls
+        if (this.game.getImpactScheduler() != null) {
+            return;
+        }
+        GameSettings settings = this.game.getSettings();
+        boolean isSingleCollision = settings.getSubsteps() == 1;
+        boolean isSwept = settings.isSweptCollision();
+        GameEnvironment environment = this.game.getEnvironment();
+        this.committing = isSingleCollision && settings.isParallel() && this.count >= PARALLEL_THRESHOLD;
+        if (this.committing) {
+            // the environment isn't changed till all the queries are done, so they only read it
+            environment.refreshSnapshot();
+            prepareBatchCandidates();
+            ForkJoinPool.commonPool().invoke(new BallQueryTask(this, 0, this.count));
+        }
+        this.moveEnd = this.count;
+        for (this.cursor = 0; this.cursor < this.moveEnd; this.cursor++) {
+            int i = this.cursor;
+            if (!isSingleCollision) {
+                this.handles[i].moveOneStep();
+                continue;
+            }
+            double x = this.xs[i];
+            double y = this.ys[i];
+            double nextX = x + this.dxs[i];
+            double nextY = y + this.dys[i];
+            double radius = isSwept ? this.radii[i] : 0;
+            CollisionInfo collision;
+            if (this.committing && !isQueryChanged(i, x, y, nextX, nextY, radius)) {
+                collision = this.pending[i];
+            } else {
+                collision = environment.getClosestCollision(x, y, nextX, nextY, null, radius);
+            }
+            this.pending[i] = null;
+            applyStep(i, x, y, nextX, nextY, collision, isSwept);
+        }
+        this.cursor = -1;
+        this.moveEnd = 0;
+        this.committing = false;
+        this.isEnvironmentMoved = false;
+        this.changedRectangles.clear();
+    }
+
+    /**
+     * Make sure there is candidates collection for each batch of the parallel queries (before they start),
+     * so the queries reuse them and don't create objects each step.
+     */
+    private void prepareBatchCandidates() {
+        int batches = this.count / BallQueryTask.MIN_BATCH_SIZE + 1;
+        if (this.batchCandidates.length >= batches) {
+            return;
+        }
+        int created = this.batchCandidates.length;
+        this.batchCandidates = Arrays.copyOf(this.batchCandidates, Math.max(batches, created * 2));
+        for (int i = created; i < this.batchCandidates.length; i++) {
+            this.batchCandidates[i] = new CollisionCandidates();
+        }
+    }
+
+    /**
+     * Get the reusable candidates collection of the batch of the parallel queries that starts at the given slot.
+     * The batches start at least BallQueryTask.MIN_BATCH_SIZE slots apart, so each batch has its own collection.
+     *
+     * @param from the first slot of the batch
+     * @return the candidates collection of the batch
+     */
+    public CollisionCandidates getBatchCandidates(int from) {
+        return this.batchCandidates[from / BallQueryTask.MIN_BATCH_SIZE];
+    }
+
+    /**
+     * Find the collisions of the steps of the balls at slots [from, to), and keep them for the next move.
+     * The environment must not be changed meanwhile, but some ranges can be queried together on different threads.
+     *
+     * @param from the first slot of the range
+     * @param to the slot after the last slot of the range
+     * @param candidates reusable candidates collection of the calling thread
+     */
+    public void queryRange(int from, int to, CollisionCandidates candidates) {
+        GameEnvironment environment = this.game.getEnvironment();
+        boolean isSwept = this.game.getSettings().isSweptCollision();
+        for (int i = from; i < to; i++) {
+            double x = this.xs[i];
+            double y = this.ys[i];
+            double radius = isSwept ? this.radii[i] : 0;
+            this.pending[i] = environment.getClosestCollision(x, y, x + this.dxs[i], y + this.dys[i], null, radius,
+                                                              candidates);
+            this.stale[i] = false;
+        }
+    }
+
+    /**
+     * Check if the parallel query of the ball may be different from query of its step right now,
+     * because the ball was changed, or collidable near its step was changed, after the query.
+     *
+     * @param slot of the ball
+     * @param x the x value of the step start
+     * @param y the y value of the step start
+     * @param nextX the x value of the step end
+     * @param nextY the y value of the step end
+     * @param radius of the query, 0 for point query
+     * @return true if the ball has to be queried again
+     */
+    private boolean isQueryChanged(int slot, double x, double y, double nextX, double nextY, double radius) {
+        if (this.stale[slot] || this.isEnvironmentMoved) {
+            return true;
+        }
+        double margin = CollisionCandidates.MARGIN + radius;
+        double minX = Math.min(x, nextX) - margin;
+        double maxX = Math.max(x, nextX) + margin;
+        double minY = Math.min(y, nextY) - margin;
+        double maxY = Math.max(y, nextY) + margin;
+        for (Rectangle rect : this.changedRectangles) {
+            if (rect.getUpperLeft().getX() <= maxX && rect.getLowerRight().getX() >= minX
+                    && rect.getUpperLeft().getY() <= maxY && rect.getLowerRight().getY() >= minY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the ball at the given slot along its step till its collision, and hit the collided object,
+     * exactly like Ball.moveOneStep() does it with one collision in a step.
+     *
+     * @param slot of the ball
+     * @param x the x value of the step start
+     * @param y the y value of the step start
+     * @param nextX the x value of the step end
+     * @param nextY the y value of the step end
+     * @param collision of the step, null if there is no collision
+     * @param isSwept true if the collision is of swept circle, false for point
+     */
+    private void applyStep(int slot, double x, double y, double nextX, double nextY, CollisionInfo collision,
+                           boolean isSwept) {
+        // if there is no collision just move the ball
+        if (collision == null) {
+            this.xs[slot] = nextX;
+            this.ys[slot] = nextY;
+            return;
+        }
+        Ball ball = this.handles[slot];
+        Velocity currVelocity = this.velocities[slot];
+        if (isSwept) {
+            // go to the center at the time of impact, and keep small distance
+            double length = IntersectionKernel.distance(x, y, nextX, nextY);
+            double distance = Math.max(0, collision.collisionTime() * length - MathUtil.BIG_EPSILON);
+            double moved = length == 0 ? 0 : distance / length;
+            this.xs[slot] = x + moved * (nextX - x);
+            this.ys[slot] = y + moved * (nextY - y);
+        } else {
+            // go to the collision point, and keep small distance
+            Point start = new Point(x, y);
+            setCenter(slot, new Velocity(start, collision.collisionPoint()).lower().applyToPoint(start));
+        }
+        // and update the velocity after the collision (the hit may remove the ball from the system)
+        ball.setVelocity(collision.collisionObject().hit(ball, collision.collisionPoint(), currVelocity));
+    }
+
+    /**
+     * Draw all the balls, by their order.
+     *
+     * @param surface to draw on it.
+     */
+    public void drawAll(DrawSurface surface) {
+        for (int i = 0; i < this.count; i++) {
+            ColorsUtil.drawBall(surface, this.xs[i], this.ys[i], this.radii[i], this.colors[i], this.shapes3D[i]);
+        }
+    }
+
+    /**
+     * Draw all the balls, by their order, between their centers before the last step and their current centers.
+     *
+     * @param surface to draw on it.
+     * @param alpha the part of the way from the previous centers (0) to the current centers (1)
+     */
+    public void drawAll(DrawSurface surface, double alpha) {
+        for (int i = 0; i < this.count; i++) {
+            double x = MathUtil.interpolate(this.previousXs[i], this.xs[i], alpha);
+            double y = MathUtil.interpolate(this.previousYs[i], this.ys[i], alpha);
+            ColorsUtil.drawBall(surface, x, y, this.radii[i], this.colors[i], this.shapes3D[i]);
+        }
+    }
+
+    /**
+     * Double the capacity of the arrays.
+     */
+    private void grow() {
+        int capacity = this.handles.length * 2;
+        this.handles = Arrays.copyOf(this.handles, capacity);
+        this.xs = Arrays.copyOf(this.xs, capacity);
+        this.ys = Arrays.copyOf(this.ys, capacity);
+        this.previousXs = Arrays.copyOf(this.previousXs, capacity);
+        this.previousYs = Arrays.copyOf(this.previousYs, capacity);
+        this.dxs = Arrays.copyOf(this.dxs, capacity);
+        this.dys = Arrays.copyOf(this.dys, capacity);
+        this.velocities = Arrays.copyOf(this.velocities, capacity);
+        this.radii = Arrays.copyOf(this.radii, capacity);
+        this.colors = Arrays.copyOf(this.colors, capacity);
+        this.shapes3D = Arrays.copyOf(this.shapes3D, capacity);
+        this.pending = Arrays.copyOf(this.pending, capacity);
+        this.stale = Arrays.copyOf(this.stale, capacity);
+    }
+
+    /**
+     * Remember a collidable that was changed while committing, for the queries of the next balls.
+     *
+     * @param c the collidable that was added / removed
+     */
+    private void rememberChanged(Collidable c) {
+        if (!this.committing) {
+            return;
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        if (rect == null) {
+            // collidable without rectangle may be anywhere
+            this.isEnvironmentMoved = true;
+        } else {
+            this.changedRectangles.add(rect);
+        }
+    }
+
+    /* Sprite interface methods */
+
+    @Override
+    public void addToGameLevel(GameLevel g) {
+        this.game = g;
+        // (re)add the system, so the balls are moved and drawn after the sprites that were added before
+        g.removeSprite(this);
+        g.addSprite(this);
+        g.getEnvironment().addEnvironmentListener(this);
+    }
+
+    @Override
+    public void removeFromGameLevel(GameLevel g) {
+        g.removeSprite(this);
+        g.getEnvironment().removeEnvironmentListener(this);
+    }
+
+    @Override
+    public Rectangle getSpriteRectangle() {
+        // the rectangles of the balls are given by addSpriteRectangles()
+        return Sprite.UNREACHABLE_RECT;
+    }
+
+    @Override
+    public void drawOn(DrawSurface surface) {
+        this.drawAll(surface);
+    }
+
+    @Override
+    public void timePassed() {
+        // remember where the balls were, for drawing between the steps
+        System.arraycopy(this.xs, 0, this.previousXs, 0, this.count);
+        System.arraycopy(this.ys, 0, this.previousYs, 0, this.count);
+        this.moveAll();
+    }
+
+    /* InterpolatedSprite interface methods */
+
+    @Override
+    public void drawOn(DrawSurface surface, double alpha) {
+        this.drawAll(surface, alpha);
+    }
+
+    /* EnvironmentListener interface methods */
+
+    @Override
+    public void collidableAdded(Collidable added) {
+        rememberChanged(added);
+    }
+
+    @Override
+    public void collidableRemoved(Collidable removed) {
+        rememberChanged(removed);
+    }
+
+    @Override
+    public void collidableMoved(Collidable moved) {
+        if (this.committing) {
+            // the old rectangle isn't known
+            this.isEnvironmentMoved = true;
+        }
+    }
+}
@@ -8,13 +8,17 @@ import java.util.List;
 import java.util.ArrayList;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import biuoop.DrawSurface;
 import game.animation.GameLevel;
+import game.axes.IntersectionKernel;
 import game.axes.Point;
 import game.axes.Rectangle;
 import game.axes.Velocity;
 import game.listeners.HitListener;
 import game.listeners.HitNotifier;
+import game.profiling.BlockHitEvent;
+import game.profiling.FrameProfiler;
 
 /**
  * The class for Block instance which implements Collidable, Sprite, HitNotifier interfaces.
@@ -27,10 +31,21 @@ public class Block implements Sprite, Collidable, HitNotifier {
     private Color color;
     /** The property of if to be drawn as '3D' or as flat block. */
     private boolean is3D;
+    /** The image of the block look from the BlockAtlas, or null if it wasn't taken yet. */
+    private BufferedImage image;
+    /** The 3D property the image was taken for. */
+    private boolean isImage3D;
 
     /** List of listeners to be notified when this Block 'is hit' [=this.hit()] by object. */
     private List<HitListener> hitListeners;
 
+    /** The lattice this block is a cell of, or null if the block isn't part of lattice. */
+    private BlockLattice lattice;
+    /** The row of the block in its lattice. */
+    private int latticeRow;
+    /** The column of the block in its lattice. */
+    private int latticeColumn;
+
     /**
      * Constructor which gets rectangle and color,
      * and turn off the 3D property of the block.
@@ -55,12 +70,53 @@ public class Block implements Sprite, Collidable, HitNotifier {
     }
 
 
+    /**
+     * Method for set the lattice cell this block lays on, so the environment can index it by the lattice.
+     *
+     * @param blockLattice the lattice this block is a cell of, or null if the block isn't part of lattice
+     * @param row the row of the block in the lattice
+     * @param col the column of the block in the lattice
+     */
+    public void setLatticeCell(BlockLattice blockLattice, int row, int col) {
+        this.lattice = blockLattice;
+        this.latticeRow = row;
+        this.latticeColumn = col;
+    }
+
+    /**
+     * Get the lattice this block is a cell of.
+     *
+     * @return the lattice, or null if the block isn't part of lattice
+     */
+    public BlockLattice getLattice() {
+        return this.lattice;
+    }
+
+    /**
+     * Get the row of the block in its lattice.
+     *
+     * @return the row of the block in the lattice
+     */
+    public int getLatticeRow() {
+        return this.latticeRow;
+    }
+
+    /**
+     * Get the column of the block in its lattice.
+     *
+     * @return the column of the block in the lattice
+     */
+    public int getLatticeColumn() {
+        return this.latticeColumn;
+    }
+
+
     /* Sprite interface methods */
 
     @Override
     public void addToGameLevel(GameLevel g) {
         g.addCollidable(this);
-        g.addSprite(this);
+        g.addSprite(this, SpriteCollection.BLOCK_LAYER);
     }
 
     @Override
@@ -76,7 +132,16 @@ public class Block implements Sprite, Collidable, HitNotifier {
 
     @Override
     public void drawOn(DrawSurface surface) {
-        if (this.is3D) {
+        // the rectangle & color of the block don't change, so the image is taken again only when is3D is changed
+        if (this.image == null || this.isImage3D != this.is3D) {
+            this.image = BlockAtlas.getImage(this.color, (int) this.rectangle.getWidth(),
+                                             (int) this.rectangle.getHeight(), this.is3D);
+            this.isImage3D = this.is3D;
+        }
+        if (this.image != null) {
+            surface.drawImage((int) this.rectangle.getUpperLeft().getX(), (int) this.rectangle.getUpperLeft().getY(),
+                              this.image);
+        } else if (this.is3D) {
             // draw 3d rectangle without chopping the edges (this is the 'false' param)
             ColorsUtil.draw3dRectangle(surface, this.rectangle, this.color, false);
         } else {
@@ -100,7 +165,15 @@ public class Block implements Sprite, Collidable, HitNotifier {
     @Override
     public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
         // notify all listeners that a hit was occured
+        BlockHitEvent event = new BlockHitEvent();
+        event.begin();
+        int listeners = this.hitListeners.size();
         this.notifyHit(hitter);
+        if (event.shouldCommit()) {
+            event.setPosition(this.rectangle.getUpperLeft().getX(), this.rectangle.getUpperLeft().getY());
+            event.setListeners(listeners);
+            event.commit();
+        }
 
         if (collisionPoint == null) {
             return currentVelocity;
@@ -108,10 +181,16 @@ public class Block implements Sprite, Collidable, HitNotifier {
 
         double dx = currentVelocity.getDx();
         double dy = currentVelocity.getDy();
-        boolean isCollidedWithUpperLine = this.rectangle.getUpperLine().isIntersecting(collisionPoint);
-        boolean isCollidedWithLowerLine = this.rectangle.getLowerLine().isIntersecting(collisionPoint);
-        boolean isCollidedWithLeftLine = this.rectangle.getLeftLine().isIntersecting(collisionPoint);
-        boolean isCollidedWithRightLine = this.rectangle.getRightLine().isIntersecting(collisionPoint);
+        double x = collisionPoint.getX();
+        double y = collisionPoint.getY();
+        double left = this.rectangle.getUpperLeft().getX();
+        double top = this.rectangle.getUpperLeft().getY();
+        double right = this.rectangle.getLowerRight().getX();
+        double bottom = this.rectangle.getLowerRight().getY();
+        boolean isCollidedWithUpperLine = IntersectionKernel.isOnSegment(x, y, left, top, right, top);
+        boolean isCollidedWithLowerLine = IntersectionKernel.isOnSegment(x, y, left, bottom, right, bottom);
+        boolean isCollidedWithLeftLine = IntersectionKernel.isOnSegment(x, y, left, top, left, bottom);
+        boolean isCollidedWithRightLine = IntersectionKernel.isOnSegment(x, y, right, top, right, bottom);
 
         // change the dx / dy component if it is needed
         if (isCollidedWithUpperLine || isCollidedWithLowerLine) {
@@ -138,12 +217,14 @@ public class Block implements Sprite, Collidable, HitNotifier {
      * @param hitter the Ball that's doing the hitting.
      */
     private void notifyHit(Ball hitter) {
+        long startTime = FrameProfiler.start();
         // Make a copy of the hitListeners before iterating over them.
         List<HitListener> listeners = new ArrayList<HitListener>(this.hitListeners);
         // Notify all listeners about a hit event:
         for (HitListener hl : listeners) {
             hl.hitEvent(this, hitter);
         }
+        FrameProfiler.record(FrameProfiler.LISTENERS, startTime);
     }
 
 
@@ -0,0 +1,75 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import game.axes.Point;
+import game.axes.Rectangle;
+
+/**
+ * The class that keeps pre-rendered images of blocks (atlas), shared by all the blocks of the game.
+ * Each distinct block look - color, width, height and 3D property - is drawn once (by ColorsUtil, exactly like
+ * the block draws itself) on an image, and the blocks with that look just draw the image with one drawImage().
+ * The blocks are drawn only by axis-aligned rectangles, so the image gives exactly the same pixels
+ * as drawing the block directly. The levels have few sizes and colors of blocks, so the atlas is small.
+ */
+public class BlockAtlas {
+
+    /** The images of the block looks, by their keys. */
+    private static Map<String, BufferedImage> images = new HashMap<String, BufferedImage>();
+
+    /**
+     * Get the image of a block look, and draw it if the look wasn't drawn yet.
+     * The image is drawn at the upper left of the block, and its size is one pixel more than the block size
+     * (for the border at the right and bottom).
+     *
+     * @param color of the block
+     * @param width of the block (as it is drawn - the integer part)
+     * @param height of the block (as it is drawn - the integer part)
+     * @param is3D whether the block is drawn as 3D block
+     * @return the image of the block look, or null for transparent color / empty block (nothing is drawn)
+     */
+    public static synchronized BufferedImage getImage(Color color, int width, int height, boolean is3D) {
+        if (color == null || color.getTransparency() != Color.OPAQUE || width <= 0 || height <= 0) {
+            return null;
+        }
+        String key = color.getRGB() + ":" + width + "x" + height + (is3D ? ":3d" : ":flat");
+        BufferedImage image = images.get(key);
+        if (image == null) {
+            ImageDrawSurface surface = new ImageDrawSurface(width + 1, height + 1);
+            Rectangle rect = new Rectangle(new Point(0, 0), width, height);
+            if (is3D) {
+                // like Block.drawOn() - 3d rectangle without chopping the edges
+                ColorsUtil.draw3dRectangle(surface, rect, color, false);
+            } else {
+                ColorsUtil.drawFlatRectangle(surface, rect, color, true);
+            }
+            surface.dispose();
+            image = surface.getImage();
+            images.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Get how much block looks are in the atlas.
+     *
+     * @return number of the images
+     */
+    public static synchronized int size() {
+        return images.size();
+    }
+
+    /**
+     * Forget all the images of the atlas, they will be drawn again when they are used.
+     */
+    public static synchronized void clear() {
+        images.clear();
+    }
+}
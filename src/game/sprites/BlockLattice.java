@@ -0,0 +1,326 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+/**
+ * The class represents lattice of rows, where each row is divided to columns, like the blocks of level strings.
+ * Each cell of the lattice can be occupied by one collidable whose rectangle is exactly the cell.
+ * The closest collision query walks over the cells the trajectory passes through, one after one
+ * (Amanatides-Woo traversal), and stops at the first occupied cell, instead of checking all the blocks.
+ * A lattice is indexed by one GameEnvironment at a time.
+ */
+public class BlockLattice {
+
+    /** The y values of the borders between the rows, from top to bottom (rows + 1 values). */
+    private double[] rowBorders;
+    /** For each row, the x values of the borders between its columns, from left to right (columns + 1 values). */
+    private double[][] columnBorders;
+    /** The occupying entry of each cell, or null if the cell is empty. */
+    private IndexedCollidable[][] occupants;
+    /** How much cells are occupied. */
+    private int occupiedCells;
+    /** The minimum x value of the lattice. */
+    private double minX;
+    /** The maximum x value of the lattice. */
+    private double maxX;
+    /** Upper bound for the number of cells a walk over the lattice can pass. */
+    private int maxSteps;
+
+    /**
+     * Constructor with the borders of the rows and of the columns in each row.
+     *
+     * @param rowBorders the y values of the borders between the rows, increasing (rows + 1 values)
+     * @param columnBorders for each row, the x values of the borders between its columns, increasing
+     */
+    public BlockLattice(double[] rowBorders, double[][] columnBorders) {
+        this.rowBorders = rowBorders;
+        this.columnBorders = columnBorders;
+        this.occupants = new IndexedCollidable[columnBorders.length][];
+        this.minX = Double.POSITIVE_INFINITY;
+        this.maxX = Double.NEGATIVE_INFINITY;
+        for (int row = 0; row < columnBorders.length; row++) {
+            double[] borders = columnBorders[row];
+            this.occupants[row] = new IndexedCollidable[Math.max(0, borders.length - 1)];
+            if (borders.length > 1) {
+                this.minX = Math.min(this.minX, borders[0]);
+                this.maxX = Math.max(this.maxX, borders[borders.length - 1]);
+            }
+        }
+        this.occupiedCells = 0;
+        // each step of a walk moves to another row or column, so the walk can't be longer than the lattice
+        this.maxSteps = columnBorders.length + 2;
+        for (int row = 0; row < columnBorders.length; row++) {
+            this.maxSteps += this.occupants[row].length + 2;
+        }
+    }
+
+    /**
+     * Get the number of rows in the lattice.
+     *
+     * @return number of rows
+     */
+    public int getRows() {
+        return this.columnBorders.length;
+    }
+
+    /**
+     * Get the number of columns in a row of the lattice.
+     *
+     * @param row index of the row
+     * @return number of columns in the row
+     */
+    public int getColumns(int row) {
+        return this.occupants[row].length;
+    }
+
+    /**
+     * Get the row that contains a y value.
+     *
+     * @param y value to look for
+     * @return index of the row, -1 if above the lattice, getRows() if below it
+     */
+    public int rowOf(double y) {
+        return indexOf(this.rowBorders, y);
+    }
+
+    /**
+     * Get the column of a row that contains a x value.
+     *
+     * @param row index of the row
+     * @param x value to look for
+     * @return index of the column, -1 if left to the row, getColumns(row) if right to it
+     */
+    public int columnOf(int row, double x) {
+        return indexOf(this.columnBorders[row], x);
+    }
+
+    /**
+     * Check if a rectangle (given by its edges) is exactly a cell of the lattice.
+     *
+     * @param row index of the row
+     * @param col index of the column
+     * @param left x value of the left edge
+     * @param top y value of the upper edge
+     * @param right x value of the right edge
+     * @param bottom y value of the lower edge
+     * @return true if the rectangle is exactly the cell
+     */
+    public boolean isCell(int row, int col, double left, double top, double right, double bottom) {
+        if (row < 0 || row >= getRows() || col < 0 || col >= getColumns(row)) {
+            return false;
+        }
+        return this.rowBorders[row] == top && this.rowBorders[row + 1] == bottom
+                && this.columnBorders[row][col] == left && this.columnBorders[row][col + 1] == right;
+    }
+
+    /**
+     * Get the entry that occupies a cell.
+     *
+     * @param row index of the row
+     * @param col index of the column
+     * @return the occupying entry, or null if the cell is empty
+     */
+    public IndexedCollidable getOccupant(int row, int col) {
+        return this.occupants[row][col];
+    }
+
+    /**
+     * Set the entry that occupies a cell.
+     *
+     * @param row index of the row
+     * @param col index of the column
+     * @param entry the occupying entry, or null to empty the cell
+     */
+    public void setOccupant(int row, int col, IndexedCollidable entry) {
+        if (this.occupants[row][col] == null && entry != null) {
+            this.occupiedCells++;
+        } else if (this.occupants[row][col] != null && entry == null) {
+            this.occupiedCells--;
+        }
+        this.occupants[row][col] = entry;
+    }
+
+    /**
+     * Check if there is no occupied cell in the lattice.
+     *
+     * @return true if all the cells are empty
+     */
+    public boolean isEmpty() {
+        return this.occupiedCells == 0;
+    }
+
+    /**
+     * Walk over the cells the trajectory passes through, from its start to its end,
+     * and offer the occupants of these cells [and of the cells that are closer than
+     * CollisionCandidates.MARGIN + the candidates radius to the trajectory] to the candidates.
+     * The walk stops when the candidates already have collision that is closer than the next cells.
+     *
+     * @param x0 x value of the trajectory start
+     * @param y0 y value of the trajectory start
+     * @param x1 x value of the trajectory end
+     * @param y1 y value of the trajectory end
+     * @param candidates to offer the occupants to
+     */
+    public void traverse(double x0, double y0, double x1, double y1, CollisionCandidates candidates) {
+        int rows = getRows();
+        if (this.occupiedCells == 0 || rows == 0) {
+            return;
+        }
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        double margin = CollisionCandidates.MARGIN + candidates.getRadius();
+
+        // clip the trajectory parameter (0 = start, 1 = end) to the lattice bounds
+        double tEnter = 0;
+        double tEnd = 1;
+        if (dx == 0) {
+            if (x0 < this.minX - margin || x0 > this.maxX + margin) {
+                return;
+            }
+        } else {
+            double t1 = (this.minX - margin - x0) / dx;
+            double t2 = (this.maxX + margin - x0) / dx;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tEnd = Math.min(tEnd, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (y0 < this.rowBorders[0] - margin || y0 > this.rowBorders[rows] + margin) {
+                return;
+            }
+        } else {
+            double t1 = (this.rowBorders[0] - margin - y0) / dy;
+            double t2 = (this.rowBorders[rows] + margin - y0) / dy;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tEnd = Math.min(tEnd, Math.max(t1, t2));
+        }
+        if (tEnter > tEnd) {
+            return;
+        }
+        int stepCol = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        int stepRow = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        int row = Math.max(0, Math.min(rows - 1, rowOf(y0 + tEnter * dy)));
+        int col = columnOf(row, x0 + tEnter * dx);
+
+        int stepsLeft = this.maxSteps;
+        while (stepsLeft-- > 0) {
+            // the trajectory parameter where it leaves the current cell (by column / by row)
+            double tExitX = Double.POSITIVE_INFINITY;
+            if (stepCol != 0) {
+                double borderX = nextBorder(this.columnBorders[row], col, stepCol);
+                tExitX = (borderX - x0) / dx;
+            }
+            double tExitY = Double.POSITIVE_INFINITY;
+            if (stepRow != 0) {
+                tExitY = ((stepRow > 0 ? this.rowBorders[row + 1] : this.rowBorders[row]) - y0) / dy;
+            }
+            double tExit = Math.min(Math.min(tExitX, tExitY), tEnd);
+
+            offerNear(x0 + tEnter * dx, x0 + tExit * dx, y0 + tEnter * dy, y0 + tExit * dy, row, margin, candidates);
+            if (tExit >= tEnd || candidates.isSettledBefore(tExit * length)) {
+                return;
+            }
+            if (tExitX <= tExitY) {
+                col += stepCol;
+            } else {
+                row += stepRow;
+                if (row < 0 || row >= rows) {
+                    // out of the rows, the circle can still touch the edge row till it is farther than margin
+                    int edgeRow = row < 0 ? 0 : rows - 1;
+                    offerNear(x0 + tExit * dx, x0 + tEnd * dx, y0 + tExit * dy, y0 + tEnd * dy, edgeRow, margin,
+                              candidates);
+                    return;
+                }
+                col = columnOf(row, x0 + tExit * dx);
+            }
+            tEnter = tExit;
+        }
+    }
+
+    /**
+     * Offer to the candidates the occupants of the cells that are closer than margin
+     * to the part of the trajectory that is in the current row (given by its x & y range).
+     *
+     * @param xa x value where the trajectory part starts
+     * @param xb x value where the trajectory part ends
+     * @param ya y value where the trajectory part starts
+     * @param yb y value where the trajectory part ends
+     * @param row the row the trajectory part is within
+     * @param margin the distance from the trajectory part to offer the cells within
+     * @param candidates to offer the occupants to
+     */
+    private void offerNear(double xa, double xb, double ya, double yb, int row, double margin,
+                            CollisionCandidates candidates) {
+        double left = Math.min(xa, xb) - margin;
+        double right = Math.max(xa, xb) + margin;
+        double top = Math.min(ya, yb) - margin;
+        double bottom = Math.max(ya, yb) + margin;
+        int fromRow = row;
+        while (fromRow > 0 && this.rowBorders[fromRow] >= top) {
+            fromRow--;
+        }
+        int toRow = row;
+        while (toRow < getRows() - 1 && this.rowBorders[toRow + 1] <= bottom) {
+            toRow++;
+        }
+        for (int r = fromRow; r <= toRow; r++) {
+            int columns = getColumns(r);
+            int fromCol = Math.max(0, columnOf(r, left));
+            int toCol = Math.min(columns - 1, columnOf(r, right));
+            for (int c = fromCol; c <= toCol; c++) {
+                if (this.occupants[r][c] != null) {
+                    candidates.offer(this.occupants[r][c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the next border in the walking direction, from a cell in a row [the cell can be outside the row].
+     *
+     * @param borders the borders of the row
+     * @param col index of the current column (-1 / columns if outside the row)
+     * @param step the walking direction (1 = right, -1 = left)
+     * @return x value of the next border, or +-infinity if there is no more borders
+     */
+    private static double nextBorder(double[] borders, int col, int step) {
+        int index = step > 0 ? col + 1 : col;
+        if (index < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (index >= borders.length) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return borders[index];
+    }
+
+    /**
+     * Get the index of the range (between two borders) that contains a value, by binary search.
+     *
+     * @param borders increasing values of the borders
+     * @param value to look for
+     * @return index of the range, -1 if before the first border, (borders.length - 1) if after the last
+     */
+    private static int indexOf(double[] borders, double value) {
+        if (borders.length == 0 || value < borders[0]) {
+            return -1;
+        }
+        int low = 0;
+        int high = borders.length - 1;
+        // invariant: borders[low] <= value < borders[high] (or value is after the last border)
+        if (value >= borders[high]) {
+            return high;
+        }
+        while (high - low > 1) {
+            int middle = (low + high) / 2;
+            if (borders[middle] <= value) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
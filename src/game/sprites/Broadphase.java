@@ -0,0 +1,50 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import game.axes.Rectangle;
+
+/**
+ * The interface for spatial index of collidables, that GameEnvironment uses to find the collidables
+ * that a trajectory may collide with, without checking all of them.
+ */
+public interface Broadphase {
+
+    /**
+     * Add entry to the index, and remember the rectangle in the entry.
+     * The entry must not be in the index already.
+     *
+     * @param entry to add to the index
+     * @param rect the rectangle to index the entry with. not null.
+     */
+    void insert(IndexedCollidable entry, Rectangle rect);
+
+    /**
+     * Remove entry from the index.
+     *
+     * @param entry to remove from the index
+     */
+    void remove(IndexedCollidable entry);
+
+    /**
+     * Update the index after the collidable of the entry moved to a new rectangle.
+     *
+     * @param entry that is already in the index
+     * @param rect the new rectangle of the entry. not null.
+     */
+    void update(IndexedCollidable entry, Rectangle rect);
+
+    /**
+     * Offer to the candidates every indexed collidable the trajectory may collide with
+     * [may offer more, and may stop when the candidates already have closer collision].
+     *
+     * @param x0 x value of the trajectory start
+     * @param y0 y value of the trajectory start
+     * @param x1 x value of the trajectory end
+     * @param y1 y value of the trajectory end
+     * @param candidates to offer the collidables to
+     */
+    void traverse(double x0, double y0, double x1, double y1, CollisionCandidates candidates);
+}
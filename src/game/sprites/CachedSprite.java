@@ -0,0 +1,139 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.awt.Color;
+
+import biuoop.DrawSurface;
+import game.animation.GameLevel;
+import game.axes.Rectangle;
+import game.listeners.SpriteChangeListener;
+import game.listeners.SpriteChangeNotifier;
+
+/**
+ * The class that draws another sprite from an off-screen image (pre-rendered cache), implements Sprite.
+ * The inner sprite is drawn once on the image, and then each frame just draws the image.
+ * When the inner sprite is SpriteChangeNotifier and reports that it was changed, the image is drawn again
+ * at the next frame. Inner sprite that isn't SpriteChangeNotifier must look the same every frame.
+ * The same image is cleared and drawn again (no image is created per change), and each drawing is a new version
+ * of the image - recording surfaces (RenderCommandBuffer) tell the versions apart, not only the images.
+ * The inner sprite isn't added to the game level by itself, the cache draws it and notifies it that time passed.
+ */
+public class CachedSprite implements Sprite, SpriteChangeListener {
+
+    /** The layer the cache is added to in the game level. */
+    private int layer;
+    /** The sprite that is drawn on the image. */
+    private Sprite inner;
+    /** The surface of the image of the inner sprite, or null before the first drawing. */
+    private ImageDrawSurface imageSurface;
+    /** Whether the inner sprite was changed since it was drawn on the image. */
+    private boolean isDirty;
+    /** How much times the inner sprite was drawn on the image - the version of the image. */
+    private long renderCount;
+
+    /**
+     * Constructor for cache of sprite, which is added to the given layer of the game level.
+     *
+     * @param inner the sprite to draw from the cache
+     * @param layer render layer of the cache, like SpriteCollection.BACKGROUND_LAYER
+     */
+    public CachedSprite(Sprite inner, int layer) {
+        this.inner = inner;
+        this.layer = layer;
+        this.imageSurface = null;
+        this.isDirty = true;
+        this.renderCount = 0;
+        if (inner instanceof SpriteChangeNotifier) {
+            ((SpriteChangeNotifier) inner).addSpriteChangeListener(this);
+        }
+    }
+
+    /**
+     * Get the sprite that is drawn from the cache.
+     *
+     * @return the inner sprite
+     */
+    public Sprite getInner() {
+        return this.inner;
+    }
+
+    /**
+     * Get how much times the inner sprite was drawn on the image (1 for sprite that never changes).
+     *
+     * @return number of the renders
+     */
+    public long getRenderCount() {
+        return this.renderCount;
+    }
+
+    /**
+     * Make the image be drawn again at the next drawing.
+     */
+    public void invalidate() {
+        this.isDirty = true;
+    }
+
+    /**
+     * Check if the image has to be drawn again before it is drawn on the surface.
+     *
+     * @param surface to draw the image on it
+     * @return true if there is no up-to-date image in the size of the surface
+     */
+    private boolean isStale(DrawSurface surface) {
+        return this.isDirty || this.imageSurface == null || this.imageSurface.getWidth() != surface.getWidth()
+                || this.imageSurface.getHeight() != surface.getHeight();
+    }
+
+    /* Sprite interface methods */
+
+    @Override
+    public void addToGameLevel(GameLevel g) {
+        g.addSprite(this, this.layer);
+    }
+
+    @Override
+    public void removeFromGameLevel(GameLevel g) {
+        g.removeSprite(this);
+    }
+
+    @Override
+    public Rectangle getSpriteRectangle() {
+        return this.inner.getSpriteRectangle();
+    }
+
+    @Override
+    public void drawOn(DrawSurface surface) {
+        if (isStale(surface)) {
+            if (this.imageSurface == null || this.imageSurface.getWidth() != surface.getWidth()
+                    || this.imageSurface.getHeight() != surface.getHeight()) {
+                if (this.imageSurface != null) {
+                    this.imageSurface.dispose();
+                }
+                this.imageSurface = new ImageDrawSurface(surface.getWidth(), surface.getHeight());
+            } else {
+                // draw the new version on the same image
+                this.imageSurface.clearRectangle(0, 0, surface.getWidth(), surface.getHeight());
+                this.imageSurface.setColor(Color.BLACK);
+            }
+            this.inner.drawOn(this.imageSurface);
+            this.isDirty = false;
+            this.renderCount++;
+        }
+        RenderCommandBuffer.drawMutableImage(surface, 0, 0, this.imageSurface.getImage(), (int) this.renderCount);
+    }
+
+    @Override
+    public void timePassed() {
+        this.inner.timePassed();
+    }
+
+    /* SpriteChangeListener interface methods */
+
+    @Override
+    public void spriteChanged(Sprite changed) {
+        this.isDirty = true;
+    }
+}
@@ -10,7 +10,7 @@ public class Cake implements Sprite {
 
     @Override
     public void addToGameLevel(GameLevel g) {
-        g.addSprite(this);
+        g.addSprite(this, SpriteCollection.BACKGROUND_LAYER);
     }
 
     @Override
@@ -35,7 +35,7 @@ public class Cloud implements Sprite {
 
     @Override
     public void addToGameLevel(GameLevel g) {
-        g.addSprite(this);
+        g.addSprite(this, SpriteCollection.BACKGROUND_LAYER);
     }
 
     @Override
@@ -0,0 +1,350 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.util.Arrays;
+
+import game.axes.IntersectionKernel;
+import game.axes.Line;
+import game.axes.Point;
+import game.axes.RayHit;
+import game.axes.Rectangle;
+
+/**
+ * The class that collects the collidables a closest-collision query has to check. reusable (mutable) object.
+ * The spatial indexes offer candidates while walking along the trajectory, and the class tests each candidate once.
+ * At the end, the candidates are compared in their insertion order, exactly as the linear scan compares them,
+ * so the chosen collision is the same one the linear scan would choose.
+ * A query with positive radius is swept circle query - each candidate gets its time of impact with circle
+ * that moves along the trajectory, and the earliest one is chosen.
+ * The tests work on raw coordinates (IntersectionKernel) kept in reusable buffers,
+ * so a query creates new objects only for the CollisionInfo it returns.
+ */
+public class CollisionCandidates {
+
+    /** Distance (in pixels) that is surely bigger than the tolerance of the axes intersection calculations. */
+    public static final double MARGIN = 1;
+
+    /** Start capacity of the buffers. */
+    private static final int START_CAPACITY = 16;
+
+    /** The offered candidates (no repetition). */
+    private IndexedCollidable[] items;
+    /** For each candidate, x value of its closest intersection point with the trajectory, or NaN. */
+    private double[] pointsX;
+    /** For each candidate, y value of its closest intersection point with the trajectory, or NaN. */
+    private double[] pointsY;
+    /** For each candidate, the distance of its intersection point from the trajectory start, or infinity. */
+    private double[] distances;
+    /** For each candidate, its time of impact in swept circle query, or -1. */
+    private double[] times;
+    /** How much candidates were offered since the last reset. */
+    private int size;
+
+    /** The x value of the trajectory start of the current query. */
+    private double startX;
+    /** The y value of the trajectory start of the current query. */
+    private double startY;
+    /** The x value of the trajectory end of the current query. */
+    private double endX;
+    /** The y value of the trajectory end of the current query. */
+    private double endY;
+    /** The collidable that should be ignored in the current query. */
+    private Collidable exceptFor;
+    /** The radius of the circle that moves along the trajectory, 0 for point (not swept) query. */
+    private double radius;
+    /** The length of the trajectory of the current query. */
+    private double trajectoryLength;
+    /** The distance from the trajectory start to the closest intersection point found till now. */
+    private double bestDistance;
+    /** Reusable result of the kernel tests. */
+    private RayHit hit;
+    /** Reusable stack for the spatial indexes that walk over their nodes. */
+    private int[] stack;
+
+    /**
+     * Constructor for empty candidates collection.
+     */
+    public CollisionCandidates() {
+        this.items = new IndexedCollidable[START_CAPACITY];
+        this.pointsX = new double[START_CAPACITY];
+        this.pointsY = new double[START_CAPACITY];
+        this.distances = new double[START_CAPACITY];
+        this.times = new double[START_CAPACITY];
+        this.size = 0;
+        this.hit = new RayHit();
+        this.stack = new int[START_CAPACITY];
+    }
+
+    /**
+     * Start a new query, and forget the candidates of the previous one.
+     *
+     * @param queryTrajectory line to check if cross any Collidable. The start-end order important.
+     * @param queryExceptFor Collidable not to include in the Collision check. can be null.
+     */
+    public void reset(Line queryTrajectory, Collidable queryExceptFor) {
+        reset(queryTrajectory, queryExceptFor, 0);
+    }
+
+    /**
+     * Start a new query of circle that moves along the trajectory, and forget the candidates of the previous one.
+     *
+     * @param queryTrajectory the movement of the circle center. The start-end order important.
+     * @param queryExceptFor Collidable not to include in the Collision check. can be null.
+     * @param queryRadius the radius of the circle, 0 for point (not swept) query.
+     */
+    public void reset(Line queryTrajectory, Collidable queryExceptFor, double queryRadius) {
+        reset(queryTrajectory.start().getX(), queryTrajectory.start().getY(), queryTrajectory.end().getX(),
+              queryTrajectory.end().getY(), queryExceptFor, queryRadius);
+    }
+
+    /**
+     * Start a new query of circle that moves from start to end, and forget the candidates of the previous one.
+     *
+     * @param queryStartX the x value of the trajectory start
+     * @param queryStartY the y value of the trajectory start
+     * @param queryEndX the x value of the trajectory end
+     * @param queryEndY the y value of the trajectory end
+     * @param queryExceptFor Collidable not to include in the Collision check. can be null.
+     * @param queryRadius the radius of the circle, 0 for point (not swept) query.
+     */
+    public void reset(double queryStartX, double queryStartY, double queryEndX, double queryEndY,
+                      Collidable queryExceptFor, double queryRadius) {
+        // don't keep references to old candidates
+        for (int i = 0; i < this.size; i++) {
+            this.items[i] = null;
+        }
+        this.size = 0;
+        this.startX = queryStartX;
+        this.startY = queryStartY;
+        this.endX = queryEndX;
+        this.endY = queryEndY;
+        this.exceptFor = queryExceptFor;
+        this.radius = queryRadius;
+        this.trajectoryLength = IntersectionKernel.distance(this.startX, this.startY, this.endX, this.endY);
+        this.bestDistance = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Get the radius of the circle of the current query.
+     * The spatial indexes must offer every collidable that is closer than it to the trajectory.
+     *
+     * @return radius of the circle, 0 for point (not swept) query
+     */
+    public double getRadius() {
+        return this.radius;
+    }
+
+    /**
+     * Get how much candidates were offered to the current query (and checked by it).
+     *
+     * @return number of the candidates since the last reset
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Get the reusable stack for the spatial index of the current query.
+     * Each query has its own candidates object, so queries of different threads don't share the stack.
+     *
+     * @return the stack (its content isn't kept between queries)
+     */
+    public int[] getStack() {
+        return this.stack;
+    }
+
+    /**
+     * Double the capacity of the reusable stack, and keep its content.
+     *
+     * @return the new stack
+     */
+    public int[] growStack() {
+        this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+        return this.stack;
+    }
+
+    /**
+     * Offer a candidate for the current query. repeated offers of the same candidate are ignored.
+     *
+     * @param entry the candidate to check
+     */
+    public void offer(IndexedCollidable entry) {
+        // a query usually has few candidates, so linear search is cheaper than a set
+        for (int i = 0; i < this.size; i++) {
+            if (this.items[i] == entry) {
+                return;
+            }
+        }
+        offerDistinct(entry);
+    }
+
+    /**
+     * Offer a candidate for the current query, without checking if it was already offered
+     * [for the linear scan, which offers each collidable once].
+     *
+     * @param entry the candidate to check, that wasn't offered since the last reset
+     */
+    public void offerDistinct(IndexedCollidable entry) {
+        if (entry.getCollidable() == this.exceptFor) {
+            return;
+        }
+        if (this.size == this.items.length) {
+            grow();
+        }
+        double pointX = Double.NaN;
+        double pointY = Double.NaN;
+        double distance = Double.POSITIVE_INFINITY;
+        double time = -1;
+        Rectangle rect = entry.getCollidable().getCollisionRectangle();
+        if (rect != null) {
+            double left = rect.getUpperLeft().getX();
+            double top = rect.getUpperLeft().getY();
+            double right = rect.getLowerRight().getX();
+            double bottom = rect.getLowerRight().getY();
+            if (this.radius > 0) {
+                time = IntersectionKernel.circleTimeOfImpact(this.startX, this.startY, this.endX, this.endY,
+                                                             this.radius, left, top, right, bottom);
+            } else if (IntersectionKernel.segmentRectangle(this.startX, this.startY, this.endX, this.endY,
+                                                           left, top, right, bottom, this.hit)) {
+                pointX = this.hit.getX();
+                pointY = this.hit.getY();
+                distance = this.hit.getDistance();
+            }
+        }
+        this.bestDistance = Math.min(this.bestDistance, distance);
+        if (time >= 0) {
+            this.bestDistance = Math.min(this.bestDistance, time * this.trajectoryLength);
+        }
+        this.items[this.size] = entry;
+        this.pointsX[this.size] = pointX;
+        this.pointsY[this.size] = pointY;
+        this.distances[this.size] = distance;
+        this.times[this.size] = time;
+        this.size++;
+    }
+
+    /**
+     * Check if the closest intersection found till now is surely closer than a given distance,
+     * meaning collidables that can be hit only farther than that distance can't change the query result.
+     *
+     * @param distance from the trajectory start
+     * @return true if candidates that are farther than the distance can be ignored
+     */
+    public boolean isSettledBefore(double distance) {
+        return this.bestDistance < distance - MARGIN;
+    }
+
+    /**
+     * Get the closest collision among the offered candidates,
+     * chosen exactly like the linear scan over the collidables in their insertion order.
+     *
+     * @return CollisionInfo of the first Collision, or null if there is no.
+     */
+    public CollisionInfo closestCollision() {
+        sortByOrder();
+        if (this.radius > 0) {
+            return earliestImpact();
+        }
+        int closest = -1;
+        for (int i = 0; i < this.size; i++) {
+            if (this.distances[i] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            if (closest < 0) {
+                closest = i;
+                continue;
+            }
+            // like Point.getClosetPoint(start, closestPoint, currentPoint).equals(currentPoint) of the linear scan
+            boolean isClosestCloser = this.distances[closest] < this.distances[i];
+            if (!isClosestCloser || IntersectionKernel.isSamePoint(this.pointsX[closest], this.pointsY[closest],
+                                                                   this.pointsX[i], this.pointsY[i])) {
+                closest = i;
+            }
+        }
+        if (closest < 0) {
+            return null;
+        }
+        return new CollisionInfo(this.items[closest].getCollidable(),
+                                 new Point(this.pointsX[closest], this.pointsY[closest]));
+    }
+
+    /**
+     * Get the earliest collision of the swept circle among the offered candidates (sorted by insertion order).
+     * If some collidables are hit at the same time, the last inserted one is chosen, like the linear scan does.
+     *
+     * @return CollisionInfo with the contact point, time of impact and normal, or null if there is no collision.
+     */
+    private CollisionInfo earliestImpact() {
+        int earliest = -1;
+        for (int i = 0; i < this.size; i++) {
+            if (this.times[i] >= 0 && (earliest < 0 || this.times[i] <= this.times[earliest])) {
+                earliest = i;
+            }
+        }
+        if (earliest < 0) {
+            return null;
+        }
+        double time = this.times[earliest];
+        Collidable object = this.items[earliest].getCollidable();
+        double dx = this.endX - this.startX;
+        double dy = this.endY - this.startY;
+        // the circle center at the time of impact, and the closest point of the collidable to it
+        Point center = new Point(this.startX + time * dx, this.startY + time * dy);
+        Point contact = object.getCollisionRectangle().closestPoint(center);
+        double normalX = center.getX() - contact.getX();
+        double normalY = center.getY() - contact.getY();
+        double normalSize = Math.sqrt(normalX * normalX + normalY * normalY);
+        if (normalSize == 0) {
+            // the center is on the border - the normal is against the movement
+            normalX = -dx;
+            normalY = -dy;
+            normalSize = Math.sqrt(dx * dx + dy * dy);
+        }
+        if (normalSize == 0) {
+            return new CollisionInfo(object, contact, time, 0, 0);
+        }
+        return new CollisionInfo(object, contact, time, normalX / normalSize, normalY / normalSize);
+    }
+
+    /**
+     * Sort the candidates by their insertion order (insertion sort, there are few candidates).
+     */
+    private void sortByOrder() {
+        for (int i = 1; i < this.size; i++) {
+            IndexedCollidable item = this.items[i];
+            double pointX = this.pointsX[i];
+            double pointY = this.pointsY[i];
+            double distance = this.distances[i];
+            double time = this.times[i];
+            int j = i - 1;
+            while (j >= 0 && this.items[j].getOrder() > item.getOrder()) {
+                this.items[j + 1] = this.items[j];
+                this.pointsX[j + 1] = this.pointsX[j];
+                this.pointsY[j + 1] = this.pointsY[j];
+                this.distances[j + 1] = this.distances[j];
+                this.times[j + 1] = this.times[j];
+                j--;
+            }
+            this.items[j + 1] = item;
+            this.pointsX[j + 1] = pointX;
+            this.pointsY[j + 1] = pointY;
+            this.distances[j + 1] = distance;
+            this.times[j + 1] = time;
+        }
+    }
+
+    /**
+     * Double the capacity of the buffers.
+     */
+    private void grow() {
+        int capacity = this.items.length * 2;
+        this.items = Arrays.copyOf(this.items, capacity);
+        this.pointsX = Arrays.copyOf(this.pointsX, capacity);
+        this.pointsY = Arrays.copyOf(this.pointsY, capacity);
+        this.distances = Arrays.copyOf(this.distances, capacity);
+        this.times = Arrays.copyOf(this.times, capacity);
+    }
+}
@@ -13,6 +13,12 @@ public class CollisionInfo {
     private Point collisionPoint;
     /** The collisionObject from type Collidable. */
     private Collidable collisionObject;
+    /** The time of the collision along the trajectory (0 = start, 1 = end), NaN if unknown. */
+    private double collisionTime;
+    /** The x component of the unit normal of the collision (from the collidable outwards), 0 if unknown. */
+    private double normalX;
+    /** The y component of the unit normal of the collision (from the collidable outwards), 0 if unknown. */
+    private double normalY;
 
     /**
      * Constructor to data of the collision.
@@ -22,8 +28,25 @@ public class CollisionInfo {
      * @param collisionPoint -the collision point
      */
     public CollisionInfo(Collidable collisionObject, Point collisionPoint) {
+        this(collisionObject, collisionPoint, Double.NaN, 0, 0);
+    }
+
+    /**
+     * Constructor to data of collision that its time of impact and contact normal are known (swept collision).
+     *
+     * @param collisionObject -the Collidable instance which involved in the collision
+     * @param collisionPoint -the contact point on the collidable
+     * @param collisionTime -the time of impact along the trajectory (0 = start, 1 = end)
+     * @param normalX -the x component of the unit contact normal (from the collidable outwards)
+     * @param normalY -the y component of the unit contact normal (from the collidable outwards)
+     */
+    public CollisionInfo(Collidable collisionObject, Point collisionPoint, double collisionTime,
+                                                                        double normalX, double normalY) {
         this.collisionPoint = collisionPoint;
         this.collisionObject = collisionObject;
+        this.collisionTime = collisionTime;
+        this.normalX = normalX;
+        this.normalY = normalY;
     }
 
     /**
@@ -43,4 +66,31 @@ public class CollisionInfo {
     public Collidable collisionObject() {
         return this.collisionObject;
     }
+
+    /**
+     * Get the time of the collision along the trajectory.
+     *
+     * @return time of the collision (0 = start, 1 = end), NaN if unknown.
+     */
+    public double collisionTime() {
+        return this.collisionTime;
+    }
+
+    /**
+     * Get the x component of the unit normal of the collision (from the collidable outwards).
+     *
+     * @return x component of the normal, 0 if unknown.
+     */
+    public double collisionNormalX() {
+        return this.normalX;
+    }
+
+    /**
+     * Get the y component of the unit normal of the collision (from the collidable outwards).
+     *
+     * @return y component of the normal, 0 if unknown.
+     */
+    public double collisionNormalY() {
+        return this.normalY;
+    }
 }
\ No newline at end of file
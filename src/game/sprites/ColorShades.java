@@ -0,0 +1,123 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.awt.Color;
+
+/**
+ * The class keeps the shades that the '3D' drawings of ColorsUtil use for one base color. immutable object.
+ * The shades are calculated once (by Color.darker() / brighter() like the drawings did),
+ * and the objects are interned by ColorsUtil.getShades(), so drawing doesn't create colors.
+ */
+public class ColorShades {
+
+    /** The face of the 3D rectangle for base color that is similar to black. */
+    private static final Color DARK_FACE = Color.GRAY.darker().darker().darker();
+
+    /** The base color. */
+    private Color base;
+    /** The color the 3D rectangle is drawn by (the base, or dark gray if the base is similar to black). */
+    private Color face;
+    /** The low-level shadow of the 3D rectangle (face.darker()). */
+    private Color lowShadow;
+    /** The high-level shadow of the 3D rectangle (face.darker().darker()). */
+    private Color highShadow;
+    /** The highlight (higher level) of the 3D rectangle (face.brighter()). */
+    private Color highlight;
+    /** The shadow of the 3D ball (base.darker().darker()). */
+    private Color ballShadow;
+    /** The color of the borders. */
+    private Color border;
+    /** The color of the paddle edges that is seen on the base color (red, or gray if the base is similar to red). */
+    private Color edge;
+
+    /**
+     * Constructor which calculates all the shades of a base color.
+     *
+     * @param base the base color, not null
+     */
+    public ColorShades(Color base) {
+        this.base = base;
+        this.face = ColorsUtil.isSimilarColor(Color.BLACK, base) ? DARK_FACE : base;
+        this.lowShadow = this.face.darker();
+        this.highShadow = this.lowShadow.darker();
+        this.highlight = this.face.brighter();
+        this.ballShadow = base.darker().darker();
+        this.border = Color.BLACK;
+        this.edge = ColorsUtil.isSimilarColor(Color.RED, base) ? Color.GRAY : Color.RED;
+    }
+
+    /**
+     * Get the base color.
+     *
+     * @return the base color
+     */
+    public Color getBase() {
+        return this.base;
+    }
+
+    /**
+     * Get the color the 3D rectangle is drawn by - the base, or dark gray if the base is similar to black.
+     *
+     * @return the face color
+     */
+    public Color getFace() {
+        return this.face;
+    }
+
+    /**
+     * Get the low-level shadow of the 3D rectangle.
+     *
+     * @return the low shadow color
+     */
+    public Color getLowShadow() {
+        return this.lowShadow;
+    }
+
+    /**
+     * Get the high-level shadow of the 3D rectangle.
+     *
+     * @return the high shadow color
+     */
+    public Color getHighShadow() {
+        return this.highShadow;
+    }
+
+    /**
+     * Get the highlight (higher level) of the 3D rectangle.
+     *
+     * @return the highlight color
+     */
+    public Color getHighlight() {
+        return this.highlight;
+    }
+
+    /**
+     * Get the shadow of the 3D ball.
+     *
+     * @return the ball shadow color
+     */
+    public Color getBallShadow() {
+        return this.ballShadow;
+    }
+
+    /**
+     * Get the color of the borders.
+     *
+     * @return the border color
+     */
+    public Color getBorder() {
+        return this.border;
+    }
+
+    /**
+     * Get the color of the paddle edges that is seen on the base color.
+     *
+     * @return red, or gray if the base is similar to red
+     */
+    public Color getEdge() {
+        return this.edge;
+    }
+}
@@ -18,6 +18,85 @@ public class ColorsUtil {
     public static final int SHADOW_THICKNESS = 3;
     public static final int SIGNIFICANT_SEEN_RADIUS = 2;
 
+    /** Start capacity of the shades palette. */
+    private static final int PALETTE_CAPACITY = 16;
+    /** The RGB values of the palette colors, by open addressing (the slot of empty entry has null shades). */
+    private static int[] paletteKeys = new int[PALETTE_CAPACITY];
+    /** The shades of the palette colors, in the slots of their RGB values. */
+    private static ColorShades[] paletteShades = new ColorShades[PALETTE_CAPACITY];
+    /** How much colors are in the palette. */
+    private static int paletteSize = 0;
+
+    /**
+     * Get the shades of a color from the palette, and calculate them if the color is new to the palette.
+     * Colors with the same RGB (and alpha) values get the same ColorShades object, so after the first time
+     * no color is created.
+     *
+     * @param color the base color, not null
+     * @return the shades of the color
+     */
+    public static synchronized ColorShades getShades(Color color) {
+        int rgb = color.getRGB();
+        int mask = paletteKeys.length - 1;
+        int slot = mix(rgb) & mask;
+        while (paletteShades[slot] != null) {
+            if (paletteKeys[slot] == rgb) {
+                return paletteShades[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        ColorShades shades = new ColorShades(color);
+        paletteKeys[slot] = rgb;
+        paletteShades[slot] = shades;
+        paletteSize++;
+        // keep the palette at most half full, so the searches are short
+        if (paletteSize * 2 > paletteKeys.length) {
+            growPalette();
+        }
+        return shades;
+    }
+
+    /**
+     * Get how much colors are in the shades palette.
+     *
+     * @return number of the colors
+     */
+    public static synchronized int getPaletteSize() {
+        return paletteSize;
+    }
+
+    /**
+     * Double the capacity of the shades palette.
+     */
+    private static void growPalette() {
+        int[] oldKeys = paletteKeys;
+        ColorShades[] oldShades = paletteShades;
+        paletteKeys = new int[oldKeys.length * 2];
+        paletteShades = new ColorShades[oldKeys.length * 2];
+        int mask = paletteKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldShades[i] != null) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (paletteShades[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                paletteKeys[slot] = oldKeys[i];
+                paletteShades[slot] = oldShades[i];
+            }
+        }
+    }
+
+    /**
+     * Mix the bits of RGB value, so near colors get far slots of the palette.
+     *
+     * @param rgb the RGB value
+     * @return the mixed value
+     */
+    private static int mix(int rgb) {
+        int h = rgb * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
     /**
      * The method check if two colors are similar and return true\false.
      *
@@ -136,22 +215,23 @@ public class ColorsUtil {
             drawFlatRectangle(surface, rect, color, true);
             return;
         }
-        // if the given color is similar to black work with darker gray color that will look the same for '3d'
-        color = isSimilarColor(Color.BLACK, color) ? Color.GRAY.darker().darker().darker() : color;
+        // the shades of the color from the palette. if the given color is similar to black they are shades of
+        // darker gray color that will look the same for '3d'
+        ColorShades shades = getShades(color);
 
         // draw first layer of flat rectangle of low level shadow
-        drawFlatRectangle(surface, rect, color.darker(), false);
+        drawFlatRectangle(surface, rect, shades.getLowShadow(), false);
         // decide if left-right edges should have gradation of color (shadow
         int xShadowShifting = isLeftRightChopped ? 0 : ColorsUtil.SHADOW_THICKNESS;
         // draw the high-level shadow at the right-up corner and remain the low-level at the left-down corner
-        surface.setColor(color.darker().darker());
+        surface.setColor(shades.getHighShadow());
         surface.fillRectangle(startX + xShadowShifting, startY , width - xShadowShifting, height - SHADOW_THICKNESS);
         // draw the higher level of the rectangle as brighter
-        surface.setColor(color.brighter());
+        surface.setColor(shades.getHighlight());
         surface.fillRectangle(startX + xShadowShifting , startY + SHADOW_THICKNESS,
                                 width - 2 * xShadowShifting, height - 2 * SHADOW_THICKNESS);
         // add black border
-        surface.setColor(Color.BLACK);
+        surface.setColor(shades.getBorder());
         surface.drawRectangle(startX, startY, width, height);
     }
 
@@ -178,7 +258,7 @@ public class ColorsUtil {
             surface.setColor(color);
             surface.fillCircle((int) x, (int) y, (int) radius);
             // draw 'shadow' smaller ball whose center is just right-up
-            surface.setColor(color.darker().darker());
+            surface.setColor(getShades(color).getBallShadow());
             surface.fillCircle((int) (x + radius / 6), (int) (y  - radius / 6), (int) (0.75 * radius));
             // draw again the original color to cover the places we don't want as shadow
             surface.setColor(color);
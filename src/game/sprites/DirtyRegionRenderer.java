@@ -0,0 +1,360 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import biuoop.DrawSurface;
+
+/**
+ * The class that draws a SpriteCollection by dirty rectangles (incremental redraw), instead of drawing all of it.
+ * The frames are composed on an off-screen image (back buffer) that is kept between the frames.
+ * Each frame every sprite is recorded (RenderCommandBuffer) and compared with its recording of the previous frame,
+ * and only the regions of sprites that were moved / changed / added / removed are dirty - the sprites of static
+ * layers aren't even recorded again while their layer version isn't changed.
+ * For each dirty rectangle, the commands that touch it are drawn again by the drawing order on a scratch image
+ * (RenderCommandBuffer.replayClipped()), and the rectangle is copied from it to the back buffer - so the back buffer
+ * has exactly the pixels that drawing all the sprites on a new image would give.
+ * Then the back buffer is drawn on the surface with one drawImage(), as mutable image with the version of its
+ * pixels - so a surface that is replayed by another thread (render pipeline snapshot) records a copy of it.
+ * The renderer counts how much pixels and primitives the incremental redraw saved, relative to full redraw.
+ */
+public class DirtyRegionRenderer {
+
+    /** The maximum number of separated dirty rectangles, more are merged into their bounding box. */
+    public static final int MAX_RECTANGLES = 16;
+
+    /** The back buffer the frames are composed on, or null before the first frame. */
+    private ImageDrawSurface backBuffer;
+    /** The image the dirty rectangles are drawn on before they are copied to the back buffer. */
+    private ImageDrawSurface scratch;
+    /** The recording of each sprite of the last frame. */
+    private Map<Sprite, RenderCommandBuffer> records;
+    /** The recordings of the frame that is drawn now (swapped with records at the end of the frame). */
+    private Map<Sprite, RenderCommandBuffer> nextRecords;
+    /** The recordings of the frame that is drawn now, by the drawing order. */
+    private List<RenderCommandBuffer> frame;
+    /** Recordings that aren't used, to be used again. */
+    private List<RenderCommandBuffer> spares;
+    /** The version of each layer at the last frame. */
+    private long[] layerVersions;
+    /** The dirty rectangles of the frame - left, top, right, bottom (exclusive) for each one, not intersected. */
+    private int[] rectangles;
+    /** How much dirty rectangles the frame has. */
+    private int rectangleCount;
+    /** Reusable box of the rectangle that is marked as dirty - left, top, right, bottom (exclusive). */
+    private int[] box;
+    /** The version of the pixels of the back buffer, changed each frame that redraws some of them. */
+    private int backBufferVersion;
+
+    /** How much pixels were drawn again at the last frame. */
+    private long lastDirtyPixels;
+    /** How much pixels the last frame didn't draw again, relative to full redraw. */
+    private long lastPixelsSaved;
+    /** How much primitives the last frame didn't draw again, relative to full redraw. */
+    private long lastPrimitivesSaved;
+    /** How much pixels all the frames didn't draw again. */
+    private long totalPixelsSaved;
+    /** How much primitives all the frames didn't draw again. */
+    private long totalPrimitivesSaved;
+    /** How much frames were drawn. */
+    private long frames;
+
+    /**
+     * Constructor for renderer without back buffer - the first frame is fully drawn.
+     */
+    public DirtyRegionRenderer() {
+        this.backBuffer = null;
+        this.scratch = null;
+        this.records = new IdentityHashMap<Sprite, RenderCommandBuffer>();
+        this.nextRecords = new IdentityHashMap<Sprite, RenderCommandBuffer>();
+        this.frame = new ArrayList<RenderCommandBuffer>();
+        this.spares = new ArrayList<RenderCommandBuffer>();
+        this.layerVersions = new long[SpriteCollection.LAYER_COUNT];
+        this.rectangles = new int[(MAX_RECTANGLES + 1) * 4];
+        this.rectangleCount = 0;
+        this.box = new int[4];
+        this.backBufferVersion = 0;
+    }
+
+    /**
+     * Get how much pixels were drawn again at the last frame.
+     *
+     * @return number of the dirty pixels
+     */
+    public long getLastDirtyPixels() {
+        return this.lastDirtyPixels;
+    }
+
+    /**
+     * Get how much pixels the last frame didn't draw again, relative to full redraw of the surface.
+     *
+     * @return number of the saved pixels
+     */
+    public long getLastPixelsSaved() {
+        return this.lastPixelsSaved;
+    }
+
+    /**
+     * Get how much drawing primitives the last frame didn't draw, relative to full redraw of all the sprites.
+     *
+     * @return number of the saved primitives
+     */
+    public long getLastPrimitivesSaved() {
+        return this.lastPrimitivesSaved;
+    }
+
+    /**
+     * Get how much pixels all the frames didn't draw again.
+     *
+     * @return number of the saved pixels
+     */
+    public long getTotalPixelsSaved() {
+        return this.totalPixelsSaved;
+    }
+
+    /**
+     * Get how much drawing primitives all the frames didn't draw.
+     *
+     * @return number of the saved primitives
+     */
+    public long getTotalPrimitivesSaved() {
+        return this.totalPrimitivesSaved;
+    }
+
+    /**
+     * Get how much frames were drawn.
+     *
+     * @return number of frames
+     */
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Get the back buffer the frames are composed on.
+     *
+     * @return the back buffer, or null before the first frame
+     */
+    public ImageDrawSurface getBackBuffer() {
+        return this.backBuffer;
+    }
+
+    /**
+     * Draw the sprites on the surface - update the dirty regions of the back buffer, and draw it on the surface.
+     * Like SpriteCollection.drawAllOn(), the sprites of each layer are drawn by their order, layer after layer.
+     *
+     * @param sprites the sprites to draw
+     * @param surface to draw the frame on it
+     */
+    public void drawAllOn(SpriteCollection sprites, DrawSurface surface) {
+        int width = surface.getWidth();
+        int height = surface.getHeight();
+        boolean isFull = this.backBuffer == null || this.backBuffer.getWidth() != width
+                         || this.backBuffer.getHeight() != height;
+        if (isFull) {
+            if (this.backBuffer != null) {
+                this.backBuffer.dispose();
+                this.scratch.dispose();
+            }
+            this.backBuffer = new ImageDrawSurface(width, height);
+            this.scratch = new ImageDrawSurface(width, height);
+        }
+        this.rectangleCount = 0;
+        this.frame.clear();
+        long primitives = 0;
+        // the sprites that were in the last frame must keep their order, else the overlaps may be changed
+        long lastOrder = -1;
+        for (int layer = 0; layer < SpriteCollection.LAYER_COUNT; layer++) {
+            boolean isUnchanged = !isFull && sprites.isLayerStatic(layer)
+                                  && sprites.getLayerVersion(layer) == this.layerVersions[layer];
+            this.layerVersions[layer] = sprites.getLayerVersion(layer);
+            for (int i = 0; i < sprites.getLayerSize(layer); i++) {
+                Sprite s = sprites.getLayerSprite(layer, i);
+                RenderCommandBuffer previous = this.records.remove(s);
+                RenderCommandBuffer current = previous;
+                if (previous != null) {
+                    isFull |= previous.getOrder() < lastOrder;
+                    lastOrder = previous.getOrder();
+                }
+                if (!isUnchanged || previous == null) {
+                    current = record(sprites, s, width, height);
+                    if (previous == null) {
+                        addDirty(current, width, height);
+                    } else if (!current.contentEquals(previous)) {
+                        addDirty(previous, width, height);
+                        addDirty(current, width, height);
+                    }
+                    release(previous);
+                }
+                current.setOrder(this.frame.size());
+                this.nextRecords.put(s, current);
+                this.frame.add(current);
+                primitives += current.getPrimitiveCount();
+            }
+        }
+        // the sprites that were removed since the last frame
+        for (RenderCommandBuffer removed : this.records.values()) {
+            addDirty(removed, width, height);
+            release(removed);
+        }
+        this.records.clear();
+        Map<Sprite, RenderCommandBuffer> swap = this.records;
+        this.records = this.nextRecords;
+        this.nextRecords = swap;
+
+        if (isFull) {
+            this.rectangleCount = 0;
+            addDirty(0, 0, width, height, width, height);
+        }
+        long drawn = redraw();
+        if (this.rectangleCount > 0) {
+            this.backBufferVersion++;
+        }
+        RenderCommandBuffer.drawMutableImage(surface, 0, 0, this.backBuffer.getImage(), this.backBufferVersion);
+
+        this.lastDirtyPixels = 0;
+        for (int r = 0; r < this.rectangleCount * 4; r += 4) {
+            this.lastDirtyPixels += (long) (this.rectangles[r + 2] - this.rectangles[r])
+                                    * (this.rectangles[r + 3] - this.rectangles[r + 1]);
+        }
+        this.lastPixelsSaved = (long) width * height - this.lastDirtyPixels;
+        // the back buffer itself is drawn with one more primitive
+        this.lastPrimitivesSaved = primitives - drawn - 1;
+        this.totalPixelsSaved += this.lastPixelsSaved;
+        this.totalPrimitivesSaved += this.lastPrimitivesSaved;
+        this.frames++;
+    }
+
+    /**
+     * Draw again the commands that touch each dirty rectangle, and copy the rectangle to the back buffer.
+     *
+     * @return how much primitives were drawn
+     */
+    private long redraw() {
+        long drawn = 0;
+        for (int r = 0; r < this.rectangleCount * 4; r += 4) {
+            int left = this.rectangles[r];
+            int top = this.rectangles[r + 1];
+            int right = this.rectangles[r + 2];
+            int bottom = this.rectangles[r + 3];
+            this.scratch.clearRectangle(left, top, right - left, bottom - top);
+            for (int i = 0; i < this.frame.size(); i++) {
+                RenderCommandBuffer commands = this.frame.get(i);
+                if (commands.getLeft() < right && commands.getRight() > left
+                        && commands.getTop() < bottom && commands.getBottom() > top) {
+                    drawn += commands.replayClipped(this.scratch, left, top, right, bottom);
+                }
+            }
+            this.backBuffer.copyRectangle(this.scratch, left, top, right - left, bottom - top);
+        }
+        return drawn;
+    }
+
+    /**
+     * Record the drawing of a sprite on a spare recording.
+     *
+     * @param sprites the collection of the sprite, which draws it (maybe between its states)
+     * @param s the sprite to record
+     * @param width of the surface
+     * @param height of the surface
+     * @return the recording of the sprite
+     */
+    private RenderCommandBuffer record(SpriteCollection sprites, Sprite s, int width, int height) {
+        RenderCommandBuffer commands;
+        if (this.spares.isEmpty()) {
+            commands = new RenderCommandBuffer(width, height);
+        } else {
+            commands = this.spares.remove(this.spares.size() - 1);
+            commands.reset(width, height);
+        }
+        sprites.drawSprite(s, commands);
+        return commands;
+    }
+
+    /**
+     * Keep a recording that isn't used anymore, to be used again.
+     *
+     * @param commands the recording, may be null
+     */
+    private void release(RenderCommandBuffer commands) {
+        if (commands != null) {
+            commands.reset(0, 0);
+            this.spares.add(commands);
+        }
+    }
+
+    /**
+     * Mark the bounding box of a recording as dirty.
+     *
+     * @param commands the recording
+     * @param width of the surface
+     * @param height of the surface
+     */
+    private void addDirty(RenderCommandBuffer commands, int width, int height) {
+        if (!commands.isEmpty()) {
+            addDirty(commands.getLeft(), commands.getTop(), commands.getRight(), commands.getBottom(), width, height);
+        }
+    }
+
+    /**
+     * Mark a rectangle as dirty. It is merged with the dirty rectangles it intersects / touches,
+     * and when there are too much rectangles they are all merged into their bounding box.
+     *
+     * @param left of the rectangle
+     * @param top of the rectangle
+     * @param right of the rectangle (exclusive)
+     * @param bottom of the rectangle (exclusive)
+     * @param width of the surface
+     * @param height of the surface
+     */
+    private void addDirty(int left, int top, int right, int bottom, int width, int height) {
+        this.box[0] = Math.max(0, left);
+        this.box[1] = Math.max(0, top);
+        this.box[2] = Math.min(width, right);
+        this.box[3] = Math.min(height, bottom);
+        if (this.box[0] >= this.box[2] || this.box[1] >= this.box[3]) {
+            return;
+        }
+        boolean isMerged = true;
+        while (isMerged) {
+            isMerged = false;
+            for (int r = 0; r < this.rectangleCount * 4; r += 4) {
+                if (this.rectangles[r] <= this.box[2] && this.rectangles[r + 2] >= this.box[0]
+                        && this.rectangles[r + 1] <= this.box[3] && this.rectangles[r + 3] >= this.box[1]) {
+                    unite(r);
+                    // the last rectangle takes the place of the merged one
+                    this.rectangleCount--;
+                    System.arraycopy(this.rectangles, this.rectangleCount * 4, this.rectangles, r, 4);
+                    isMerged = true;
+                    break;
+                }
+            }
+        }
+        if (this.rectangleCount == MAX_RECTANGLES) {
+            for (int r = 0; r < this.rectangleCount * 4; r += 4) {
+                unite(r);
+            }
+            this.rectangleCount = 0;
+        }
+        System.arraycopy(this.box, 0, this.rectangles, this.rectangleCount * 4, 4);
+        this.rectangleCount++;
+    }
+
+    /**
+     * Change the box to the bounding box of it and a dirty rectangle.
+     *
+     * @param r index of the dirty rectangle in the rectangles array
+     */
+    private void unite(int r) {
+        this.box[0] = Math.min(this.box[0], this.rectangles[r]);
+        this.box[1] = Math.min(this.box[1], this.rectangles[r + 1]);
+        this.box[2] = Math.max(this.box[2], this.rectangles[r + 2]);
+        this.box[3] = Math.max(this.box[3], this.rectangles[r + 3]);
+    }
+}
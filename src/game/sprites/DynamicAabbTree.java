@@ -0,0 +1,493 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.util.Arrays;
+
+import game.axes.Rectangle;
+
+/**
+ * The class represents dynamic bounding volume hierarchy (AABB tree) of collidables. mutable object.
+ * Each leaf keeps a 'fat' box - the collidable rectangle expanded by fat margin, so a collidable that moves
+ * a little (like the paddle every frame) stays inside its box and the tree isn't changed at all.
+ * When it leaves its box, only its leaf is removed and inserted again, and the tree is kept balanced
+ * by rotations, so the update is O(log n).
+ * A ray query skips every subtree whose box the trajectory doesn't pass through,
+ * or that the trajectory reaches only after the closest collision that was already found.
+ */
+public class DynamicAabbTree implements Broadphase {
+
+    /** Default margin (in pixels) that the leaf boxes are expanded by, beyond the collision tolerance. */
+    public static final double DEFAULT_FAT_MARGIN = 8;
+
+    /** The value of 'no node'. */
+    private static final int NULL_NODE = -1;
+    /** Start capacity of the nodes arrays. */
+    private static final int START_CAPACITY = 64;
+
+    /** How much the leaf boxes are expanded (in addition to CollisionCandidates.MARGIN). */
+    private double fatMargin;
+    /** The minimum x value of the box of each node. */
+    private double[] minX;
+    /** The minimum y value of the box of each node. */
+    private double[] minY;
+    /** The maximum x value of the box of each node. */
+    private double[] maxX;
+    /** The maximum y value of the box of each node. */
+    private double[] maxY;
+    /** The parent of each node [or the next free node, for free nodes]. */
+    private int[] parent;
+    /** The first child of each node, NULL_NODE for leaves. */
+    private int[] child1;
+    /** The second child of each node, NULL_NODE for leaves. */
+    private int[] child2;
+    /** The height of each node (leaf = 0), -1 for free nodes. */
+    private int[] height;
+    /** The entry of each leaf. */
+    private IndexedCollidable[] leafEntries;
+    /** The root node, or NULL_NODE if the tree is empty. */
+    private int root;
+    /** The first node of the free nodes list. */
+    private int freeList;
+
+    /**
+     * Constructor for empty tree with adjustable fat margin.
+     *
+     * @param fatMargin how much the leaf boxes are expanded. bigger = less updates, but more candidates.
+     */
+    public DynamicAabbTree(double fatMargin) {
+        this.fatMargin = fatMargin;
+        this.root = NULL_NODE;
+        this.minX = new double[0];
+        this.minY = new double[0];
+        this.maxX = new double[0];
+        this.maxY = new double[0];
+        this.parent = new int[0];
+        this.child1 = new int[0];
+        this.child2 = new int[0];
+        this.height = new int[0];
+        this.leafEntries = new IndexedCollidable[0];
+        this.freeList = NULL_NODE;
+        grow(START_CAPACITY);
+    }
+
+    /**
+     * Constructor for empty tree with the default fat margin.
+     */
+    public DynamicAabbTree() {
+        this(DEFAULT_FAT_MARGIN);
+    }
+
+    @Override
+    public void insert(IndexedCollidable entry, Rectangle rect) {
+        int leaf = allocateNode();
+        setFatBox(leaf, rect);
+        this.leafEntries[leaf] = entry;
+        entry.setProxy(leaf);
+        entry.setIndexedRectangle(rect);
+        insertLeaf(leaf);
+    }
+
+    @Override
+    public void remove(IndexedCollidable entry) {
+        int leaf = entry.getProxy();
+        if (leaf == NULL_NODE) {
+            return;
+        }
+        removeLeaf(leaf);
+        freeNode(leaf);
+        entry.setProxy(NULL_NODE);
+        entry.setIndexedRectangle(null);
+    }
+
+    @Override
+    public void update(IndexedCollidable entry, Rectangle rect) {
+        int leaf = entry.getProxy();
+        if (leaf == NULL_NODE) {
+            insert(entry, rect);
+            return;
+        }
+        entry.setIndexedRectangle(rect);
+        double margin = CollisionCandidates.MARGIN;
+        // still inside the fat box - nothing to change in the tree
+        if (this.minX[leaf] <= rect.getUpperLeft().getX() - margin
+                && this.minY[leaf] <= rect.getUpperLeft().getY() - margin
+                && rect.getLowerRight().getX() + margin <= this.maxX[leaf]
+                && rect.getLowerRight().getY() + margin <= this.maxY[leaf]) {
+            return;
+        }
+        removeLeaf(leaf);
+        setFatBox(leaf, rect);
+        insertLeaf(leaf);
+    }
+
+    /**
+     * Offer to the candidates the collidables of the leaves whose box [expanded by the candidates radius]
+     * the trajectory passes through.
+     * Subtrees that the trajectory misses, or reaches after the closest collision already found, are skipped.
+     *
+     * @param x0 x value of the trajectory start
+     * @param y0 y value of the trajectory start
+     * @param x1 x value of the trajectory end
+     * @param y1 y value of the trajectory end
+     * @param candidates to offer the collidables to
+     */
+    @Override
+    public void traverse(double x0, double y0, double x1, double y1, CollisionCandidates candidates) {
+        if (this.root == NULL_NODE) {
+            return;
+        }
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        double radius = candidates.getRadius();
+        // the stack belongs to the candidates, so queries on different threads can read the tree together
+        int[] stack = candidates.getStack();
+        int size = 0;
+        stack[size++] = this.root;
+        while (size > 0) {
+            int node = stack[--size];
+            double tEnter = enterParameter(node, radius, x0, y0, dx, dy);
+            if (tEnter < 0 || candidates.isSettledBefore(tEnter * length)) {
+                continue;
+            }
+            if (this.child1[node] == NULL_NODE) {
+                candidates.offer(this.leafEntries[node]);
+                continue;
+            }
+            if (size + 2 > stack.length) {
+                stack = candidates.growStack();
+            }
+            stack[size++] = this.child1[node];
+            stack[size++] = this.child2[node];
+        }
+    }
+
+    /**
+     * Get the trajectory parameter (0 = start, 1 = end) where it enters the box of a node (slab test).
+     *
+     * @param node to check its box
+     * @param expand how much to expand the box before the test
+     * @param x0 x value of the trajectory start
+     * @param y0 y value of the trajectory start
+     * @param dx the change of x along the trajectory
+     * @param dy the change of y along the trajectory
+     * @return the parameter where the trajectory enters the box (0 if it starts inside), or -1 if it misses the box
+     */
+    private double enterParameter(int node, double expand, double x0, double y0, double dx, double dy) {
+        double left = this.minX[node] - expand;
+        double top = this.minY[node] - expand;
+        double right = this.maxX[node] + expand;
+        double bottom = this.maxY[node] + expand;
+        double tMin = 0;
+        double tMax = 1;
+        if (dx == 0) {
+            if (x0 < left || x0 > right) {
+                return -1;
+            }
+        } else {
+            double t1 = (left - x0) / dx;
+            double t2 = (right - x0) / dx;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (y0 < top || y0 > bottom) {
+                return -1;
+            }
+        } else {
+            double t1 = (top - y0) / dy;
+            double t2 = (bottom - y0) / dy;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        return tMin <= tMax ? tMin : -1;
+    }
+
+    /**
+     * Set the box of a leaf to the rectangle expanded by the collision tolerance and the fat margin.
+     *
+     * @param leaf the node to set its box
+     * @param rect the rectangle of the leaf collidable
+     */
+    private void setFatBox(int leaf, Rectangle rect) {
+        double expand = CollisionCandidates.MARGIN + this.fatMargin;
+        this.minX[leaf] = rect.getUpperLeft().getX() - expand;
+        this.minY[leaf] = rect.getUpperLeft().getY() - expand;
+        this.maxX[leaf] = rect.getLowerRight().getX() + expand;
+        this.maxY[leaf] = rect.getLowerRight().getY() + expand;
+    }
+
+    /**
+     * Insert a leaf (that its box is set) to the tree, next to the sibling that makes the tree boxes grow the least.
+     *
+     * @param leaf the node to insert
+     */
+    private void insertLeaf(int leaf) {
+        if (this.root == NULL_NODE) {
+            this.root = leaf;
+            this.parent[leaf] = NULL_NODE;
+            return;
+        }
+
+        // go down the tree to the best sibling, by the perimeter cost of the boxes (surface area heuristic)
+        int index = this.root;
+        while (this.child1[index] != NULL_NODE) {
+            int first = this.child1[index];
+            int second = this.child2[index];
+            double area = perimeter(index);
+            double combinedArea = unionPerimeter(index, leaf);
+            // cost of making new parent for this node and the leaf
+            double cost = 2 * combinedArea;
+            // minimum cost of pushing the leaf further down the tree
+            double inheritanceCost = 2 * (combinedArea - area);
+            double cost1 = descendCost(first, leaf) + inheritanceCost;
+            double cost2 = descendCost(second, leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? first : second;
+        }
+        int sibling = index;
+
+        // create new parent for the sibling and the leaf
+        int oldParent = this.parent[sibling];
+        int newParent = allocateNode();
+        this.parent[newParent] = oldParent;
+        this.leafEntries[newParent] = null;
+        setUnion(newParent, leaf, sibling);
+        this.height[newParent] = this.height[sibling] + 1;
+        this.child1[newParent] = sibling;
+        this.child2[newParent] = leaf;
+        this.parent[sibling] = newParent;
+        this.parent[leaf] = newParent;
+        if (oldParent == NULL_NODE) {
+            this.root = newParent;
+        } else if (this.child1[oldParent] == sibling) {
+            this.child1[oldParent] = newParent;
+        } else {
+            this.child2[oldParent] = newParent;
+        }
+
+        refitFrom(this.parent[leaf]);
+    }
+
+    /**
+     * Remove a leaf from the tree [the leaf node itself isn't freed].
+     *
+     * @param leaf the node to remove
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == this.root) {
+            this.root = NULL_NODE;
+            return;
+        }
+        int leafParent = this.parent[leaf];
+        int grandParent = this.parent[leafParent];
+        int sibling = this.child1[leafParent] == leaf ? this.child2[leafParent] : this.child1[leafParent];
+        // the sibling takes the place of the parent
+        if (grandParent == NULL_NODE) {
+            this.root = sibling;
+            this.parent[sibling] = NULL_NODE;
+            freeNode(leafParent);
+            return;
+        }
+        if (this.child1[grandParent] == leafParent) {
+            this.child1[grandParent] = sibling;
+        } else {
+            this.child2[grandParent] = sibling;
+        }
+        this.parent[sibling] = grandParent;
+        freeNode(leafParent);
+        refitFrom(grandParent);
+    }
+
+    /**
+     * Walk up from a node to the root, balance each node and fix its box and height.
+     *
+     * @param node the first node to fix
+     */
+    private void refitFrom(int node) {
+        int index = node;
+        while (index != NULL_NODE) {
+            index = balance(index);
+            int first = this.child1[index];
+            int second = this.child2[index];
+            this.height[index] = 1 + Math.max(this.height[first], this.height[second]);
+            setUnion(index, first, second);
+            index = this.parent[index];
+        }
+    }
+
+    /**
+     * Rotate the tree at a node if one of its children is higher than the other by more than 1.
+     *
+     * @param a the node to balance
+     * @return the node that took the place of the given node (the given node if no rotation was done)
+     */
+    private int balance(int a) {
+        if (this.child1[a] == NULL_NODE || this.height[a] < 2) {
+            return a;
+        }
+        int b = this.child1[a];
+        int c = this.child2[a];
+        int balance = this.height[c] - this.height[b];
+        if (balance > 1) {
+            rotateUp(a, c, b, false);
+            return c;
+        }
+        if (balance < -1) {
+            rotateUp(a, b, c, true);
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Rotate a high child of a node to the place of the node.
+     * The node gets the other child and the lower child of the high child, and becomes child of the high child.
+     *
+     * @param a the node to rotate
+     * @param up the high child of the node (that goes up)
+     * @param other the other child of the node
+     * @param upIsFirst whether the high child is the first child of the node
+     */
+    private void rotateUp(int a, int up, int other, boolean upIsFirst) {
+        int f = this.child1[up];
+        int g = this.child2[up];
+
+        // the high child takes the place of the node
+        this.child1[up] = a;
+        this.parent[up] = this.parent[a];
+        this.parent[a] = up;
+        int upParent = this.parent[up];
+        if (upParent == NULL_NODE) {
+            this.root = up;
+        } else if (this.child1[upParent] == a) {
+            this.child1[upParent] = up;
+        } else {
+            this.child2[upParent] = up;
+        }
+
+        // the higher grandchild stays under the high child, the lower one moves to the node
+        int stay = this.height[f] > this.height[g] ? f : g;
+        int move = stay == f ? g : f;
+        this.child2[up] = stay;
+        if (upIsFirst) {
+            this.child1[a] = move;
+        } else {
+            this.child2[a] = move;
+        }
+        this.parent[move] = a;
+        setUnion(a, other, move);
+        setUnion(up, a, stay);
+        this.height[a] = 1 + Math.max(this.height[other], this.height[move]);
+        this.height[up] = 1 + Math.max(this.height[a], this.height[stay]);
+    }
+
+    /**
+     * Get the cost of inserting the leaf under a child, during the search of the best sibling.
+     *
+     * @param child the child node to descend to
+     * @param leaf the inserted leaf
+     * @return the cost of descending to the child
+     */
+    private double descendCost(int child, int leaf) {
+        if (this.child1[child] == NULL_NODE) {
+            return unionPerimeter(child, leaf);
+        }
+        return unionPerimeter(child, leaf) - perimeter(child);
+    }
+
+    /**
+     * Get the perimeter of the box of a node.
+     *
+     * @param node to measure its box
+     * @return the perimeter of the box
+     */
+    private double perimeter(int node) {
+        return 2 * ((this.maxX[node] - this.minX[node]) + (this.maxY[node] - this.minY[node]));
+    }
+
+    /**
+     * Get the perimeter of the box that contains the boxes of two nodes.
+     *
+     * @param a first node
+     * @param b second node
+     * @return the perimeter of the union box
+     */
+    private double unionPerimeter(int a, int b) {
+        double width = Math.max(this.maxX[a], this.maxX[b]) - Math.min(this.minX[a], this.minX[b]);
+        double tall = Math.max(this.maxY[a], this.maxY[b]) - Math.min(this.minY[a], this.minY[b]);
+        return 2 * (width + tall);
+    }
+
+    /**
+     * Set the box of a node to the box that contains the boxes of two other nodes.
+     *
+     * @param node to set its box
+     * @param a first node
+     * @param b second node
+     */
+    private void setUnion(int node, int a, int b) {
+        this.minX[node] = Math.min(this.minX[a], this.minX[b]);
+        this.minY[node] = Math.min(this.minY[a], this.minY[b]);
+        this.maxX[node] = Math.max(this.maxX[a], this.maxX[b]);
+        this.maxY[node] = Math.max(this.maxY[a], this.maxY[b]);
+    }
+
+    /**
+     * Take a node from the free nodes list (grow the arrays if there is no free node).
+     *
+     * @return the new node
+     */
+    private int allocateNode() {
+        if (this.freeList == NULL_NODE) {
+            grow(this.height.length * 2);
+        }
+        int node = this.freeList;
+        this.freeList = this.parent[node];
+        this.parent[node] = NULL_NODE;
+        this.child1[node] = NULL_NODE;
+        this.child2[node] = NULL_NODE;
+        this.height[node] = 0;
+        return node;
+    }
+
+    /**
+     * Return a node to the free nodes list.
+     *
+     * @param node to free
+     */
+    private void freeNode(int node) {
+        this.leafEntries[node] = null;
+        this.height[node] = -1;
+        this.parent[node] = this.freeList;
+        this.freeList = node;
+    }
+
+    /**
+     * Grow the nodes arrays, and add the new nodes to the free nodes list.
+     *
+     * @param capacity the new number of nodes
+     */
+    private void grow(int capacity) {
+        int oldCapacity = this.height.length;
+        this.minX = Arrays.copyOf(this.minX, capacity);
+        this.minY = Arrays.copyOf(this.minY, capacity);
+        this.maxX = Arrays.copyOf(this.maxX, capacity);
+        this.maxY = Arrays.copyOf(this.maxY, capacity);
+        this.parent = Arrays.copyOf(this.parent, capacity);
+        this.child1 = Arrays.copyOf(this.child1, capacity);
+        this.child2 = Arrays.copyOf(this.child2, capacity);
+        this.height = Arrays.copyOf(this.height, capacity);
+        this.leafEntries = Arrays.copyOf(this.leafEntries, capacity);
+        for (int node = capacity - 1; node >= oldCapacity; node--) {
+            this.height[node] = -1;
+            this.parent[node] = this.freeList;
+            this.freeList = node;
+        }
+    }
+}
@@ -6,24 +6,81 @@ package game.sprites;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.IdentityHashMap;
 
 import game.axes.Line;
-import game.axes.Point;
 import game.axes.Rectangle;
+import game.listeners.EnvironmentListener;
+import game.listeners.EnvironmentNotifier;
+import game.listeners.MovementListener;
+import game.listeners.MovementNotifier;
+import game.profiling.CollisionQueryEvent;
+import game.profiling.FrameProfiler;
 
 /**
  * The class that unites the Collidable objects in collection and have some methods on this collection.
+ * By default the collidables are also kept in Broadphase (SpatialHashGrid unless other one is given),
+ * or in their BlockLattice for blocks of a lattice, so the closest collision query checks only the collidables
+ * near the trajectory. The result is the same as the linear scan over all the collidables,
+ * as long as a collidable that moves (changes its collision rectangle) is MovementNotifier,
+ * or calls updateCollidable() afterwards.
+ * The queries (also the linear scan) reuse the same candidates buffers, and create objects only for the result.
+ * The linear scan walks over snapshot array of the collidables, which is built again only after the collidables
+ * were added / removed [versioned copy-on-write], so queries don't copy or lock the collection.
+ * EnvironmentListeners are notified when collidables are added, removed or moved.
  */
-public class GameEnvironment {
+public class GameEnvironment implements MovementListener, EnvironmentNotifier {
 
-    /** Set(no 'null' / repetition) of the collection of the Collidable objects. */
-    private List<Collidable> collidables;
+    /** Set(no 'null' / repetition) of the collection of the Collidable objects, by their adding order. */
+    private OrderedIdentitySet<Collidable> collidables;
+    /** The version of the collidables set, increased whenever a collidable is added / removed. */
+    private long version;
+    /** The entries of the collidables in their insertion order, as they were at snapshotVersion. */
+    private IndexedCollidable[] snapshot;
+    /** The version of the collidables set that the snapshot was built at. */
+    private long snapshotVersion;
+
+    /** The spatial index of the collidables, or null if the closest collision query is linear scan. */
+    private Broadphase broadphase;
+    /** The index entry of each collidable in the environment. */
+    private Map<Collidable, IndexedCollidable> entries;
+    /** Entries of collidables without collision rectangle (when added), they are checked in every query. */
+    private List<IndexedCollidable> unindexed;
+    /** The lattices that index blocks of this environment. */
+    private List<BlockLattice> lattices;
+    /** The insertion order that the next added collidable will get. */
+    private long nextOrder;
+    /** Reusable candidates collection for the queries. */
+    private CollisionCandidates candidates;
+    /** The listeners to the changes of the collidables (copy-on-write, replaced when a listener is added/removed). */
+    private EnvironmentListener[] environmentListeners;
 
     /**
-     * Constructor for the environment.
+     * Constructor for the environment, which uses spatial hash grid for the closest collision queries.
      */
     public GameEnvironment() {
-        this.collidables = new ArrayList<Collidable>();
+        this(new SpatialHashGrid());
+    }
+
+    /**
+     * Constructor for the environment, with adjustable closest collision query method.
+     *
+     * @param broadphase empty spatial index for the collidables, or null to use linear scan over all the collidables.
+     */
+    public GameEnvironment(Broadphase broadphase) {
+        this.collidables = new OrderedIdentitySet<Collidable>();
+        this.version = 0;
+        this.snapshot = new IndexedCollidable[0];
+        this.snapshotVersion = 0;
+        this.broadphase = broadphase;
+        this.entries = new IdentityHashMap<Collidable, IndexedCollidable>();
+        this.unindexed = new ArrayList<IndexedCollidable>();
+        this.lattices = new ArrayList<BlockLattice>();
+        this.nextOrder = 0;
+        this.candidates = new CollisionCandidates();
+        this.environmentListeners = new EnvironmentListener[0];
     }
 
     /**
@@ -33,8 +90,17 @@ public class GameEnvironment {
      * @param c collidable to add to the environment
      */
     public void addCollidable(Collidable c) {
-        if (c != null && !this.collidables.contains(c)) {
-            this.collidables.add(c);
+        if (this.collidables.add(c)) {
+            this.version++;
+            IndexedCollidable entry = new IndexedCollidable(c, this.nextOrder++);
+            this.entries.put(c, entry);
+            index(entry);
+            if (c instanceof MovementNotifier) {
+                ((MovementNotifier) c).addMovementListener(this);
+            }
+            for (EnvironmentListener el : this.environmentListeners) {
+                el.collidableAdded(c);
+            }
         }
     }
 
@@ -45,8 +111,192 @@ public class GameEnvironment {
      * @param c collidable to remove from the environment
      */
     public void removeCollidable(Collidable c) {
-        if (c != null && this.collidables.contains(c)) {
-            this.collidables.remove(c);
+        if (this.collidables.remove(c)) {
+            this.version++;
+            unindex(this.entries.remove(c));
+            if (c instanceof MovementNotifier) {
+                ((MovementNotifier) c).removeMovementListener(this);
+            }
+            for (EnvironmentListener el : this.environmentListeners) {
+                el.collidableRemoved(c);
+            }
+        }
+    }
+
+    /**
+     * Update the spatial index after the given collidable changed its collision rectangle,
+     * and notify the EnvironmentListeners about the movement.
+     * Collidable that moves must call it [or be MovementNotifier], otherwise queries may miss it.
+     * 'null' / not existing collidable in the environment is ignored.
+     *
+     * @param c collidable that its collision rectangle was changed
+     */
+    public void updateCollidable(Collidable c) {
+        IndexedCollidable entry = c == null ? null : this.entries.get(c);
+        if (entry == null) {
+            return;
+        }
+        if (this.broadphase != null) {
+            Rectangle rect = c.getCollisionRectangle();
+            if (entry.getIndexedRectangle() == rect) {
+                return;
+            }
+            // collidable that stays in the broadphase is updated there (the tree refits only what is needed)
+            if (rect != null && entry.getIndexedRectangle() != null && entry.getLattice() == null) {
+                this.broadphase.update(entry, rect);
+            } else {
+                unindex(entry);
+                index(entry);
+            }
+        }
+        for (EnvironmentListener el : this.environmentListeners) {
+            el.collidableMoved(c);
+        }
+    }
+
+    /**
+     * Get the version of the collidables set - it is increased whenever a collidable is added / removed,
+     * so equal versions mean the same collidables [but they may have moved].
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Build again the snapshot of the collidables, if collidables were added / removed since it was built.
+     * The queries do it by themselves, but queries that run together on different threads should only read
+     * the environment, so the snapshot should be refreshed before they start.
+     */
+    public void refreshSnapshot() {
+        if (this.snapshotVersion == this.version) {
+            return;
+        }
+        IndexedCollidable[] items = new IndexedCollidable[this.collidables.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = this.entries.get(this.collidables.get(i));
+        }
+        this.snapshot = items;
+        this.snapshotVersion = this.version;
+    }
+
+    /* EnvironmentNotifier interface methods */
+
+    @Override
+    public void addEnvironmentListener(EnvironmentListener el) {
+        if (el == null || indexOfListener(el) >= 0) {
+            return;
+        }
+        // the array is replaced, so notification that is in progress goes on with the old listeners
+        EnvironmentListener[] listeners = Arrays.copyOf(this.environmentListeners,
+                                                        this.environmentListeners.length + 1);
+        listeners[listeners.length - 1] = el;
+        this.environmentListeners = listeners;
+    }
+
+    @Override
+    public void removeEnvironmentListener(EnvironmentListener el) {
+        int index = indexOfListener(el);
+        if (index < 0) {
+            return;
+        }
+        EnvironmentListener[] listeners = new EnvironmentListener[this.environmentListeners.length - 1];
+        System.arraycopy(this.environmentListeners, 0, listeners, 0, index);
+        System.arraycopy(this.environmentListeners, index + 1, listeners, index, listeners.length - index);
+        this.environmentListeners = listeners;
+    }
+
+    /**
+     * Find the index of listener in the listeners array.
+     *
+     * @param el the listener to find
+     * @return its index, or -1 if it isn't a listener of the environment
+     */
+    private int indexOfListener(EnvironmentListener el) {
+        for (int i = 0; i < this.environmentListeners.length; i++) {
+            if (this.environmentListeners[i] == el) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* MovementListener interface methods */
+
+    @Override
+    public void movementEvent(Collidable moved) {
+        updateCollidable(moved);
+    }
+
+    /**
+     * Add entry to the spatial index according to the current rectangle of its collidable.
+     *
+     * @param entry to add to the index
+     */
+    private void index(IndexedCollidable entry) {
+        if (this.broadphase == null) {
+            return;
+        }
+        Rectangle rect = entry.getCollidable().getCollisionRectangle();
+        if (rect == null) {
+            this.unindexed.add(entry);
+        } else if (!indexInLattice(entry, rect)) {
+            this.broadphase.insert(entry, rect);
+        }
+    }
+
+    /**
+     * Add entry to the lattice of its collidable, if the collidable is block which lays exactly on its lattice cell.
+     *
+     * @param entry to add to the lattice
+     * @param rect the current rectangle of the entry collidable
+     * @return true if the entry was added to lattice, false if it should be indexed otherwise
+     */
+    private boolean indexInLattice(IndexedCollidable entry, Rectangle rect) {
+        if (!(entry.getCollidable() instanceof Block)) {
+            return false;
+        }
+        Block block = (Block) entry.getCollidable();
+        BlockLattice lattice = block.getLattice();
+        int row = block.getLatticeRow();
+        int col = block.getLatticeColumn();
+        if (lattice == null || !lattice.isCell(row, col, rect.getUpperLeft().getX(), rect.getUpperLeft().getY(),
+                                                rect.getLowerRight().getX(), rect.getLowerRight().getY())
+                || lattice.getOccupant(row, col) != null) {
+            return false;
+        }
+        if (lattice.isEmpty()) {
+            this.lattices.add(lattice);
+        }
+        lattice.setOccupant(row, col, entry);
+        entry.setIndexedRectangle(rect);
+        entry.setLattice(lattice);
+        return true;
+    }
+
+    /**
+     * Remove entry from the spatial index.
+     *
+     * @param entry to remove from the index
+     */
+    private void unindex(IndexedCollidable entry) {
+        if (this.broadphase == null) {
+            return;
+        }
+        if (entry.getLattice() != null) {
+            Block block = (Block) entry.getCollidable();
+            BlockLattice lattice = entry.getLattice();
+            lattice.setOccupant(block.getLatticeRow(), block.getLatticeColumn(), null);
+            if (lattice.isEmpty()) {
+                this.lattices.remove(lattice);
+            }
+            entry.setLattice(null);
+            entry.setIndexedRectangle(null);
+        } else if (entry.getIndexedRectangle() == null) {
+            this.unindexed.remove(entry);
+        } else {
+            this.broadphase.remove(entry);
         }
     }
 
@@ -76,46 +326,119 @@ public class GameEnvironment {
      * @return CollisionInfo of the first Collision, or null if there is no.
      */
     public CollisionInfo getClosestCollision(Line trajectory, Collidable exceptFor) {
+        return getClosestCollision(trajectory, exceptFor, 0);
+    }
+
+    /**
+     * Returns the information about the closest collision of a circle [like ball] that moves along the trajectory,
+     * except for the sent Collidable (swept circle collision - the circle radius is taken into account,
+     * so the circle can't pass through corners or thin collidables).
+     * The CollisionInfo has the contact point on the collidable, the time of impact along the trajectory,
+     * and the contact normal. If the circle will not collide with any of the collidables, returns null.
+     *
+     * @param trajectory the movement of the circle center. The start-end order important.
+     * @param exceptFor Collidable not to include in the Collision check.
+     * @param radius of the circle. not positive radius is the same as getClosestCollision(trajectory, exceptFor).
+     * @return CollisionInfo of the first Collision, or null if there is no.
+     */
+    public CollisionInfo getClosestCollision(Line trajectory, Collidable exceptFor, double radius) {
         if (trajectory == null || trajectory.start() == null || trajectory.end() == null) {
             return null;
         }
+        return getClosestCollision(trajectory.start().getX(), trajectory.start().getY(), trajectory.end().getX(),
+                                   trajectory.end().getY(), exceptFor, radius);
+    }
 
-        Point start = trajectory.start();
-        CollisionInfo closestCollision = null;
+    /**
+     * Returns the information about the closest collision of a circle [or point] that moves from start to end,
+     * except for the sent Collidable, like getClosestCollision(Line, Collidable, double) without Line object.
+     *
+     * @param startX the x value of the trajectory start
+     * @param startY the y value of the trajectory start
+     * @param endX the x value of the trajectory end
+     * @param endY the y value of the trajectory end
+     * @param exceptFor Collidable not to include in the Collision check.
+     * @param radius of the circle, not positive radius for point.
+     * @return CollisionInfo of the first Collision, or null if there is no.
+     */
+    public CollisionInfo getClosestCollision(double startX, double startY, double endX, double endY,
+                                             Collidable exceptFor, double radius) {
+        return getClosestCollision(startX, startY, endX, endY, exceptFor, radius, this.candidates);
+    }
 
-        // Make a copy list of the collidables before iterating over them.
-        List<Collidable> copiedList = new ArrayList<Collidable>(this.collidables);
+    /**
+     * Returns the information about the closest collision of a circle [or point] that moves from start to end,
+     * except for the sent Collidable, using the given candidates buffers.
+     * Queries with different candidates objects may run on different threads together,
+     * as long as the environment isn't changed meanwhile.
+     *
+     * @param startX the x value of the trajectory start
+     * @param startY the y value of the trajectory start
+     * @param endX the x value of the trajectory end
+     * @param endY the y value of the trajectory end
+     * @param exceptFor Collidable not to include in the Collision check.
+     * @param radius of the circle, not positive radius for point.
+     * @param queryCandidates reusable candidates collection for the query. not null.
+     * @return CollisionInfo of the first Collision, or null if there is no.
+     */
+    public CollisionInfo getClosestCollision(double startX, double startY, double endX, double endY,
+                                             Collidable exceptFor, double radius,
+                                             CollisionCandidates queryCandidates) {
+        CollisionQueryEvent event = null;
+        if (CollisionQueryEvent.isRecorded()) {
+            event = new CollisionQueryEvent();
+            event.begin();
+        }
+        long startTime = FrameProfiler.start();
+        queryCandidates.reset(startX, startY, endX, endY, exceptFor, Math.max(0, radius));
+        if (this.broadphase == null) {
+            offerAll(queryCandidates);
+        } else {
+            offerIndexed(startX, startY, endX, endY, queryCandidates);
+        }
+        CollisionInfo closest = queryCandidates.closestCollision();
+        FrameProfiler.record(FrameProfiler.COLLISION_QUERY, startTime);
+        if (event != null && event.shouldCommit()) {
+            event.setCandidates(queryCandidates.getSize());
+            event.setSwept(radius > 0);
+            event.setFound(closest != null);
+            event.commit();
+        }
+        return closest;
+    }
 
-        // for each collidable that is not the exceptFor, check if it has closer collision on the trajectory
-        for (Collidable object : copiedList) {
-            // check the object is not 'exceptFor'
-            if (object == exceptFor) {
-                continue;
-            }
-            Rectangle rectangleOfCurrObject = object.getCollisionRectangle();
-            // check the object have real rectangle
-            if (rectangleOfCurrObject == null) {
-                continue;
-            }
-            // get the closet point for the intersection of the trajectory and the object rectangle
-            Point currentCollisionPoint = Point.getClosetPoint(rectangleOfCurrObject.intersectionPoints(trajectory),
-                                                                start);
-            // check that there is indeed some intersection point
-            if (currentCollisionPoint == null) {
-                continue;
-            }
-            // if right now there is no closestCollision so for sure the currentCollisionPoint is the closest for now
-            if (closestCollision == null) {
-                closestCollision = new CollisionInfo(object, currentCollisionPoint);
-                continue;
-            }
-            // or if the current collision point is closer, update the closest Collision with the closest point & object
-            Point closestPoint = closestCollision.collisionPoint();
-            if (Point.getClosetPoint(start, closestPoint, currentCollisionPoint).equals(currentCollisionPoint)) {
-                closestCollision = new CollisionInfo(object, currentCollisionPoint);
-            }
+    /**
+     * Offer to the candidates the collidables that the spatial index finds near the trajectory.
+     *
+     * @param startX the x value of the trajectory start
+     * @param startY the y value of the trajectory start
+     * @param endX the x value of the trajectory end
+     * @param endY the y value of the trajectory end
+     * @param queryCandidates the candidates of the current query
+     */
+    private void offerIndexed(double startX, double startY, double endX, double endY,
+                              CollisionCandidates queryCandidates) {
+        // collidables without rectangle aren't in the broadphase, so check them anyway
+        for (int i = 0; i < this.unindexed.size(); i++) {
+            queryCandidates.offer(this.unindexed.get(i));
         }
+        // blocks on lattice are found by walking their lattice, the others by the broadphase
+        for (int i = 0; i < this.lattices.size(); i++) {
+            this.lattices.get(i).traverse(startX, startY, endX, endY, queryCandidates);
+        }
+        this.broadphase.traverse(startX, startY, endX, endY, queryCandidates);
+    }
 
-        return closestCollision;
+    /**
+     * Offer to the candidates each of the collidables in the environment, in their insertion order.
+     *
+     * @param queryCandidates the candidates of the current query
+     */
+    private void offerAll(CollisionCandidates queryCandidates) {
+        refreshSnapshot();
+        IndexedCollidable[] items = this.snapshot;
+        for (int i = 0; i < items.length; i++) {
+            queryCandidates.offerDistinct(items[i]);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+
+import biuoop.DrawSurface;
+
+/**
+ * The class of DrawSurface without window, that counts the drawing calls by their type,
+ * and optionally draws them on an off-screen image (ImageDrawSurface) - for benchmarks and servers.
+ * The surface can be reused for the next frame after reset(), which forgets the counts and clears the image.
+ */
+public class HeadlessDrawSurface implements DrawSurface {
+
+    /** Type of setColor() calls. */
+    public static final int SET_COLOR = 0;
+    /** Type of drawLine() calls. */
+    public static final int DRAW_LINE = 1;
+    /** Type of drawOval() calls. */
+    public static final int DRAW_OVAL = 2;
+    /** Type of fillOval() calls. */
+    public static final int FILL_OVAL = 3;
+    /** Type of drawRectangle() calls. */
+    public static final int DRAW_RECTANGLE = 4;
+    /** Type of fillRectangle() calls. */
+    public static final int FILL_RECTANGLE = 5;
+    /** Type of drawImage() calls. */
+    public static final int DRAW_IMAGE = 6;
+    /** Type of drawCircle() calls. */
+    public static final int DRAW_CIRCLE = 7;
+    /** Type of fillCircle() calls. */
+    public static final int FILL_CIRCLE = 8;
+    /** Type of drawText() calls. */
+    public static final int DRAW_TEXT = 9;
+    /** Type of drawPolygon() calls. */
+    public static final int DRAW_POLYGON = 10;
+    /** Type of fillPolygon() calls. */
+    public static final int FILL_POLYGON = 11;
+    /** How much types there are. */
+    public static final int TYPE_COUNT = 12;
+    /** The names of the types, by their indexes. */
+    private static final String[] TYPE_NAMES = {"setColor", "drawLine", "drawOval", "fillOval", "drawRectangle",
+                                                "fillRectangle", "drawImage", "drawCircle", "fillCircle",
+                                                "drawText", "drawPolygon", "fillPolygon"};
+
+    /** The width of the surface. */
+    private int width;
+    /** The height of the surface. */
+    private int height;
+    /** How much calls of each type were made since the last reset. */
+    private long[] counts;
+    /** The surface of the image the calls are drawn on, or null if they are only counted. */
+    private ImageDrawSurface imageSurface;
+
+    /**
+     * Constructor for surface with the given size.
+     *
+     * @param width of the surface
+     * @param height of the surface
+     * @param isRasterized true to draw the calls on an image, false to only count them
+     */
+    public HeadlessDrawSurface(int width, int height, boolean isRasterized) {
+        this.width = width;
+        this.height = height;
+        this.counts = new long[TYPE_COUNT];
+        this.imageSurface = isRasterized ? new ImageDrawSurface(width, height) : null;
+    }
+
+    /**
+     * Get the name of a type of calls.
+     *
+     * @param type of the calls, like DRAW_LINE
+     * @return the name of the DrawSurface method
+     */
+    public static String getTypeName(int type) {
+        return TYPE_NAMES[type];
+    }
+
+    /**
+     * Get how much calls of a type were made since the last reset.
+     *
+     * @param type of the calls, like DRAW_LINE
+     * @return number of the calls
+     */
+    public long getCount(int type) {
+        return this.counts[type];
+    }
+
+    /**
+     * Get how much drawing primitives (all the calls but setColor) were made since the last reset.
+     *
+     * @return number of the primitives
+     */
+    public long getPrimitiveCount() {
+        long sum = 0;
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            if (type != SET_COLOR) {
+                sum += this.counts[type];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Get the image the calls are drawn on.
+     *
+     * @return the image, or null if the calls are only counted
+     */
+    public BufferedImage getImage() {
+        return this.imageSurface == null ? null : this.imageSurface.getImage();
+    }
+
+    /**
+     * Forget the counts, and clear the image (transparent), so the surface can be used for a new frame.
+     */
+    public void reset() {
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            this.counts[type] = 0;
+        }
+        if (this.imageSurface != null) {
+            this.imageSurface.clearRectangle(0, 0, this.width, this.height);
+            this.imageSurface.setColor(Color.BLACK);
+        }
+    }
+
+    /* DrawSurface interface methods */
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.counts[SET_COLOR]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.setColor(color);
+        }
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.counts[DRAW_LINE]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.drawLine(x1, y1, x2, y2);
+        }
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        this.counts[DRAW_OVAL]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.drawOval(x, y, w, h);
+        }
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        this.counts[FILL_OVAL]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.fillOval(x, y, w, h);
+        }
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        this.counts[DRAW_RECTANGLE]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.drawRectangle(x, y, w, h);
+        }
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        this.counts[FILL_RECTANGLE]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.fillRectangle(x, y, w, h);
+        }
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        this.counts[DRAW_IMAGE]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.drawImage(x, y, image);
+        }
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.counts[DRAW_CIRCLE]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.drawCircle(x, y, r);
+        }
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.counts[FILL_CIRCLE]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.fillCircle(x, y, r);
+        }
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        this.counts[DRAW_TEXT]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.drawText(x, y, text, fontSize);
+        }
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        this.counts[DRAW_POLYGON]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.drawPolygon(polygon);
+        }
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        this.counts[FILL_POLYGON]++;
+        if (this.imageSurface != null) {
+            this.imageSurface.fillPolygon(polygon);
+        }
+    }
+}
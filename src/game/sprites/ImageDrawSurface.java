@@ -0,0 +1,179 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+
+import biuoop.DrawSurface;
+
+/**
+ * The class of DrawSurface that draws directly on an off-screen image, with the same Graphics calls
+ * that the gui DrawSurface uses when it is shown, so drawing on the image and then drawing the image
+ * gives the same pixels as drawing on the gui DrawSurface.
+ * The image starts transparent, so only the pixels that were drawn cover what is under the image.
+ */
+public class ImageDrawSurface implements DrawSurface {
+
+    /** The image that is drawn on. */
+    private BufferedImage image;
+    /** The graphics of the image. */
+    private Graphics2D graphics;
+
+    /**
+     * Constructor for surface of new transparent image.
+     *
+     * @param width of the image
+     * @param height of the image
+     */
+    public ImageDrawSurface(int width, int height) {
+        this.image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+        this.graphics = this.image.createGraphics();
+        this.graphics.setColor(Color.BLACK);
+    }
+
+    /**
+     * Get the image that is drawn on.
+     *
+     * @return the image
+     */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+
+    /**
+     * Limit the drawing to a rectangle - pixels out of it aren't changed till the clip is reset.
+     *
+     * @param x of the rectangle
+     * @param y of the rectangle
+     * @param width of the rectangle
+     * @param height of the rectangle
+     */
+    public void setClip(int x, int y, int width, int height) {
+        this.graphics.setClip(x, y, width, height);
+    }
+
+    /**
+     * Let the drawing change all the pixels of the image again.
+     */
+    public void resetClip() {
+        this.graphics.setClip(null);
+    }
+
+    /**
+     * Make the pixels of a rectangle transparent again, like the image was at the start.
+     *
+     * @param x of the rectangle
+     * @param y of the rectangle
+     * @param width of the rectangle
+     * @param height of the rectangle
+     */
+    public void clearRectangle(int x, int y, int width, int height) {
+        Composite composite = this.graphics.getComposite();
+        this.graphics.setComposite(AlphaComposite.Clear);
+        this.graphics.fillRect(x, y, width, height);
+        this.graphics.setComposite(composite);
+    }
+
+    /**
+     * Copy the pixels of a rectangle from another surface of the same size, to the same place in this surface.
+     *
+     * @param source the surface to copy from
+     * @param x of the rectangle
+     * @param y of the rectangle
+     * @param width of the rectangle
+     * @param height of the rectangle
+     */
+    public void copyRectangle(ImageDrawSurface source, int x, int y, int width, int height) {
+        this.image.getRaster().setRect(source.image.getRaster().createChild(x, y, width, height, x, y, null));
+    }
+
+    /**
+     * Release the graphics of the image. the surface can't be drawn on after it, but the image can be used.
+     */
+    public void dispose() {
+        this.graphics.dispose();
+    }
+
+    /* DrawSurface interface methods */
+
+    @Override
+    public int getWidth() {
+        return this.image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.image.getHeight();
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.graphics.setColor(color);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.graphics.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        this.graphics.drawOval(x, y, width, height);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        this.graphics.fillOval(x, y, width, height);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        this.graphics.drawRect(x, y, width, height);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        this.graphics.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        this.graphics.drawImage(img, x, y, null);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.graphics.drawOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.graphics.fillOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        Font font = this.graphics.getFont();
+        this.graphics.setFont(new Font(font.getFontName(), font.getStyle(), fontSize));
+        this.graphics.drawString(text, x, y);
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        this.graphics.drawPolygon(polygon);
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        this.graphics.fillPolygon(polygon);
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import game.axes.Point;
+import game.axes.Velocity;
+
+/**
+ * The class that represents the next impact of a ball that moves in straight line, for ImpactScheduler.
+ * immutable object - the ball is at origin + velocity * (frame - originFrame) until the impact frame,
+ * and when its path is changed a new event replaces this one.
+ * Event without collision is 'horizon' event - the ball didn't hit anything in the checked part of its path,
+ * so its path is checked again when the event frame comes.
+ */
+public class ImpactEvent implements Comparable<ImpactEvent> {
+
+    /** The ball that moves. */
+    private Ball ball;
+    /** The ball center at the origin frame. */
+    private Point origin;
+    /** The frame the path of the ball starts at. */
+    private long originFrame;
+    /** The velocity of the ball along the path (per frame). */
+    private Velocity velocity;
+    /** The frame at which end the ball hits (or at which the path is checked again). */
+    private long frame;
+    /** The collision at the end of the path, or null for horizon event. */
+    private CollisionInfo collision;
+    /** The distance the ball center goes from the origin till the impact, or infinity for horizon event. */
+    private double distance;
+    /** The x value of the ball center at the end of the path. */
+    private double endX;
+    /** The y value of the ball center at the end of the path. */
+    private double endY;
+    /** The order of the ball in the scheduler, for events at the same frame. */
+    private long order;
+
+    /**
+     * Constructor with all the data of the event.
+     *
+     * @param ball the ball that moves
+     * @param origin the ball center at the origin frame
+     * @param originFrame the frame the path of the ball starts at
+     * @param velocity the velocity of the ball along the path (per frame)
+     * @param frame the frame at which end the ball hits, or at which the path is checked again
+     * @param collision the collision at the end of the path, or null for horizon event
+     * @param distance the distance the ball center goes from the origin till the impact, or infinity
+     * @param endX the x value of the ball center at the end of the path
+     * @param endY the y value of the ball center at the end of the path
+     * @param order the order of the ball in the scheduler, for events at the same frame
+     */
+    public ImpactEvent(Ball ball, Point origin, long originFrame, Velocity velocity, long frame,
+                       CollisionInfo collision, double distance, double endX, double endY, long order) {
+        this.ball = ball;
+        this.origin = origin;
+        this.originFrame = originFrame;
+        this.velocity = velocity;
+        this.frame = frame;
+        this.collision = collision;
+        this.distance = distance;
+        this.endX = endX;
+        this.endY = endY;
+        this.order = order;
+    }
+
+    /**
+     * Get the ball that moves.
+     *
+     * @return the ball of this event
+     */
+    public Ball getBall() {
+        return this.ball;
+    }
+
+    /**
+     * Get the ball center at the origin frame.
+     *
+     * @return the start point of the path
+     */
+    public Point getOrigin() {
+        return this.origin;
+    }
+
+    /**
+     * Get the frame the path of the ball starts at.
+     *
+     * @return the origin frame
+     */
+    public long getOriginFrame() {
+        return this.originFrame;
+    }
+
+    /**
+     * Get the velocity of the ball along the path.
+     *
+     * @return velocity (per frame)
+     */
+    public Velocity getVelocity() {
+        return this.velocity;
+    }
+
+    /**
+     * Get the frame at which end the ball hits, or at which the path is checked again (horizon event).
+     *
+     * @return the event frame
+     */
+    public long getFrame() {
+        return this.frame;
+    }
+
+    /**
+     * Get the collision at the end of the path.
+     *
+     * @return CollisionInfo of the impact, or null for horizon event
+     */
+    public CollisionInfo getCollision() {
+        return this.collision;
+    }
+
+    /**
+     * Get the distance the ball center goes from the origin till the impact.
+     *
+     * @return distance till the impact, or infinity for horizon event
+     */
+    public double getDistance() {
+        return this.distance;
+    }
+
+    /**
+     * Get the x value of the ball center at the end of the path.
+     *
+     * @return x value of the path end
+     */
+    public double getEndX() {
+        return this.endX;
+    }
+
+    /**
+     * Get the y value of the ball center at the end of the path.
+     *
+     * @return y value of the path end
+     */
+    public double getEndY() {
+        return this.endY;
+    }
+
+    /**
+     * Get the order of the ball in the scheduler.
+     *
+     * @return the order of the ball
+     */
+    public long getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Get the ball center at a given frame of the path [origin + velocity * (frame - originFrame)].
+     *
+     * @param atFrame frame between the origin frame and the event frame
+     * @return the ball center at the end of that frame
+     */
+    public Point positionAt(long atFrame) {
+        long frames = atFrame - this.originFrame;
+        if (frames == 0) {
+            return this.origin;
+        }
+        return new Point(this.origin.getX() + frames * this.velocity.getDx(),
+                         this.origin.getY() + frames * this.velocity.getDy());
+    }
+
+    /* Comparable interface methods */
+
+    @Override
+    public int compareTo(ImpactEvent other) {
+        if (this.frame != other.frame) {
+            return this.frame < other.frame ? -1 : 1;
+        }
+        if (this.order != other.order) {
+            return this.order < other.order ? -1 : 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.util.Map;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+
+import game.axes.Line;
+import game.axes.MathUtil;
+import game.axes.Point;
+import game.axes.Rectangle;
+import game.axes.Velocity;
+import game.listeners.EnvironmentListener;
+
+/**
+ * The class that moves balls by events (event-driven physics) instead of collision query each frame.
+ * Ball moves in straight line between its impacts, so the time (frame) of its next impact is found once,
+ * and kept in priority queue. Till then the ball center is just origin + velocity * frames.
+ * The impact of a ball is found again only when the ball hits, when its velocity is changed from outside,
+ * or when collidable on its path is added / removed / moved (EnvironmentListener of the game environment).
+ * The impact itself is done exactly like Ball.moveOneStep() does it at the frame of the impact.
+ */
+public class ImpactScheduler implements EnvironmentListener {
+
+    /** How much frames of the ball path are checked for impact in one query. */
+    public static final int HORIZON_FRAMES = 120;
+
+    /** The environment of the collidables the balls hit. */
+    private GameEnvironment environment;
+    /** Whether the balls collide as moving circles (swept circle), or as moving points. */
+    private boolean sweptCollision;
+    /** How much frames were done. */
+    private long frame;
+    /** The balls that the scheduler moves, in their adding order. */
+    private OrderedIdentitySet<Ball> balls;
+    /** The current event of each ball. */
+    private Map<Ball, ImpactEvent> scheduled;
+    /** The events by their frame. Replaced events are ignored when they come out. */
+    private PriorityQueue<ImpactEvent> queue;
+    /** The order that the next added ball will get. */
+    private long nextOrder;
+    /** How much collision queries the scheduler did. */
+    private long queryCount;
+
+    /**
+     * Constructor for scheduler without balls.
+     * The scheduler should be added as EnvironmentListener to the environment.
+     *
+     * @param environment of the collidables the balls hit
+     * @param sweptCollision true if the balls collide as moving circles (swept circle), false for moving points
+     */
+    public ImpactScheduler(GameEnvironment environment, boolean sweptCollision) {
+        this.environment = environment;
+        this.sweptCollision = sweptCollision;
+        this.frame = 0;
+        this.balls = new OrderedIdentitySet<Ball>();
+        this.scheduled = new IdentityHashMap<Ball, ImpactEvent>();
+        this.queue = new PriorityQueue<ImpactEvent>();
+        this.nextOrder = 0;
+        this.queryCount = 0;
+    }
+
+    /**
+     * Get how much frames were done.
+     *
+     * @return the current frame
+     */
+    public long getFrame() {
+        return this.frame;
+    }
+
+    /**
+     * Get how much collision queries the scheduler did.
+     *
+     * @return number of the queries
+     */
+    public long getQueryCount() {
+        return this.queryCount;
+    }
+
+    /**
+     * Add ball that the scheduler will move from its current center.
+     * 'null' / existing ball won't be added.
+     *
+     * @param ball to add
+     */
+    public void addBall(Ball ball) {
+        if (!this.balls.add(ball)) {
+            return;
+        }
+        schedule(ball, ball.getCenter(), this.frame, this.nextOrder++);
+    }
+
+    /**
+     * Remove ball from the scheduler. not existing ball is ignored.
+     *
+     * @param ball to remove
+     */
+    public void removeBall(Ball ball) {
+        if (this.balls.remove(ball)) {
+            // the event in the queue will be ignored
+            this.scheduled.remove(ball);
+        }
+    }
+
+    /**
+     * Do one frame - make the impacts that occur till the end of the frame by their order,
+     * and move all the balls to their centers at the end of the frame.
+     */
+    public void advance() {
+        // ball that its velocity was changed from outside continues from its current center
+        for (int i = 0; i < this.balls.size(); i++) {
+            Ball ball = this.balls.get(i);
+            ImpactEvent event = this.scheduled.get(ball);
+            if (event.getVelocity() != ball.getVelocity()) {
+                schedule(ball, ball.getCenter(), this.frame, event.getOrder());
+            }
+        }
+        long target = this.frame + 1;
+        while (!this.queue.isEmpty() && this.queue.peek().getFrame() <= target) {
+            ImpactEvent event = this.queue.poll();
+            Ball ball = event.getBall();
+            if (this.scheduled.get(ball) != event) {
+                continue;
+            }
+            this.scheduled.remove(ball);
+            if (event.getCollision() == null) {
+                // horizon event - check the next part of the path
+                schedule(ball, event.positionAt(event.getFrame()), event.getFrame(), event.getOrder());
+                continue;
+            }
+            Point center = impactCenter(event);
+            CollisionInfo collision = event.getCollision();
+            ball.setCenter(center);
+            ball.setVelocity(collision.collisionObject().hit(ball, collision.collisionPoint(), ball.getVelocity()));
+            // the hit may remove the ball (like the death region)
+            if (this.balls.contains(ball)) {
+                schedule(ball, center, event.getFrame(), event.getOrder());
+            }
+        }
+        this.frame = target;
+        for (int i = 0; i < this.balls.size(); i++) {
+            Ball ball = this.balls.get(i);
+            ball.setCenter(this.scheduled.get(ball).positionAt(this.frame));
+        }
+    }
+
+    /**
+     * Get the center of the ball after its impact - like Ball.moveOneStep(), the ball goes from its center
+     * at the frame before the impact, towards the impact, and keeps small distance.
+     *
+     * @param event the impact
+     * @return the ball center after the impact
+     */
+    private Point impactCenter(ImpactEvent event) {
+        Point before = event.positionAt(event.getFrame() - 1);
+        if (!this.sweptCollision) {
+            return new Velocity(before, event.getCollision().collisionPoint()).lower().applyToPoint(before);
+        }
+        Velocity velocity = event.getVelocity();
+        double speed = velocity.getSize();
+        double remained = event.getDistance() - (event.getFrame() - 1 - event.getOriginFrame()) * speed;
+        double part = Math.max(0, remained - MathUtil.BIG_EPSILON) / speed;
+        return new Point(before.getX() + part * velocity.getDx(), before.getY() + part * velocity.getDy());
+    }
+
+    /**
+     * Find the next impact of the ball that starts its path at the given center & frame, and schedule it.
+     *
+     * @param ball to schedule
+     * @param origin the ball center at the origin frame
+     * @param originFrame the frame the path starts at
+     * @param order the order of the ball in the scheduler
+     */
+    private void schedule(Ball ball, Point origin, long originFrame, long order) {
+        Velocity velocity = ball.getVelocity();
+        double speed = velocity.getSize();
+        if (speed == 0) {
+            // ball that doesn't move has no impact
+            this.scheduled.put(ball, new ImpactEvent(ball, origin, originFrame, velocity, Long.MAX_VALUE, null,
+                                                     Double.POSITIVE_INFINITY, origin.getX(), origin.getY(), order));
+            return;
+        }
+        Point end = new Point(origin.getX() + HORIZON_FRAMES * velocity.getDx(),
+                              origin.getY() + HORIZON_FRAMES * velocity.getDy());
+        Line trajectory = new Line(origin, end);
+        this.queryCount++;
+        CollisionInfo collision;
+        if (this.sweptCollision) {
+            collision = this.environment.getClosestCollision(trajectory, null, ball.getSize());
+        } else {
+            collision = this.environment.getClosestCollision(trajectory);
+        }
+        ImpactEvent event;
+        if (collision == null) {
+            event = new ImpactEvent(ball, origin, originFrame, velocity, originFrame + HORIZON_FRAMES, null,
+                                    Double.POSITIVE_INFINITY, end.getX(), end.getY(), order);
+        } else {
+            double distance;
+            if (this.sweptCollision) {
+                distance = collision.collisionTime() * trajectory.length();
+            } else {
+                distance = origin.distance(collision.collisionPoint());
+            }
+            // the impact is in the frame which its step reaches the impact distance
+            long frames = Math.max(1, (long) Math.ceil(distance / speed));
+            double part = distance / speed;
+            event = new ImpactEvent(ball, origin, originFrame, velocity, originFrame + frames, collision, distance,
+                                    origin.getX() + part * velocity.getDx(),
+                                    origin.getY() + part * velocity.getDy(), order);
+        }
+        this.scheduled.put(ball, event);
+        this.queue.add(event);
+    }
+
+    /**
+     * Find again the impact of the ball from its current center, because its path was changed.
+     *
+     * @param event the current event of the ball
+     */
+    private void reschedule(ImpactEvent event) {
+        long from = Math.max(this.frame, event.getOriginFrame());
+        schedule(event.getBall(), event.positionAt(from), from, event.getOrder());
+    }
+
+    /**
+     * Check if rectangle may be on the rest of the path of an event (from the current frame),
+     * by checking if the rectangle is near the bounding box of the path.
+     *
+     * @param event the current event of a ball
+     * @param rect to check
+     * @return true if the rectangle may change the impact of the event
+     */
+    private boolean isOnPath(ImpactEvent event, Rectangle rect) {
+        Point from = event.positionAt(Math.max(this.frame, event.getOriginFrame()));
+        double margin = CollisionCandidates.MARGIN + (this.sweptCollision ? event.getBall().getSize() : 0);
+        double minX = Math.min(from.getX(), event.getEndX()) - margin;
+        double maxX = Math.max(from.getX(), event.getEndX()) + margin;
+        double minY = Math.min(from.getY(), event.getEndY()) - margin;
+        double maxY = Math.max(from.getY(), event.getEndY()) + margin;
+        return rect.getUpperLeft().getX() <= maxX && rect.getLowerRight().getX() >= minX
+                && rect.getUpperLeft().getY() <= maxY && rect.getLowerRight().getY() >= minY;
+    }
+
+    /**
+     * Find again the impacts of the balls that a collidable may change.
+     *
+     * @param c the collidable that was changed
+     * @param isNew true if the collidable may be on paths it wasn't on before [added / moved]
+     */
+    private void collidableChanged(Collidable c, boolean isNew) {
+        Rectangle rect = isNew ? c.getCollisionRectangle() : null;
+        for (int i = 0; i < this.balls.size(); i++) {
+            ImpactEvent event = this.scheduled.get(this.balls.get(i));
+            // the ball that is in the middle of its impact is scheduled after it
+            if (event == null) {
+                continue;
+            }
+            boolean isTarget = event.getCollision() != null && event.getCollision().collisionObject() == c;
+            if (isTarget || (rect != null && isOnPath(event, rect))) {
+                reschedule(event);
+            }
+        }
+    }
+
+    /* EnvironmentListener interface methods */
+
+    @Override
+    public void collidableAdded(Collidable added) {
+        collidableChanged(added, true);
+    }
+
+    @Override
+    public void collidableRemoved(Collidable removed) {
+        collidableChanged(removed, false);
+    }
+
+    @Override
+    public void collidableMoved(Collidable moved) {
+        collidableChanged(moved, true);
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import game.axes.Rectangle;
+
+/**
+ * The class that keeps what the GameEnvironment index knows about one Collidable. mutable object.
+ * The order is the place of the collidable in the environment insertion order,
+ * it is used to keep the results of the indexed queries the same as a linear scan over the collidables.
+ */
+public class IndexedCollidable {
+
+    /** The collidable this entry describes. */
+    private Collidable collidable;
+    /** The insertion order of the collidable in the environment (bigger = added later). */
+    private long order;
+    /** The rectangle the collidable was indexed with, or null if it isn't indexed (no rectangle). */
+    private Rectangle indexedRectangle;
+    /** The lattice the collidable is indexed in, or null if it isn't indexed by lattice. */
+    private BlockLattice lattice;
+    /** The node of the entry in the broadphase that indexes it [for broadphase that needs it], or -1. */
+    private int proxy;
+
+    /**
+     * Constructor for entry of collidable with its insertion order.
+     *
+     * @param collidable the collidable this entry describes
+     * @param order the insertion order of the collidable in the environment
+     */
+    public IndexedCollidable(Collidable collidable, long order) {
+        this.collidable = collidable;
+        this.order = order;
+        this.proxy = -1;
+    }
+
+    /**
+     * Get the collidable this entry describes.
+     *
+     * @return the collidable of this entry
+     */
+    public Collidable getCollidable() {
+        return this.collidable;
+    }
+
+    /**
+     * Get the insertion order of the collidable in the environment.
+     *
+     * @return the insertion order (bigger = added later)
+     */
+    public long getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Get the rectangle the collidable was indexed with.
+     *
+     * @return the indexed rectangle, or null if the collidable isn't indexed
+     */
+    public Rectangle getIndexedRectangle() {
+        return this.indexedRectangle;
+    }
+
+    /**
+     * Set the rectangle the collidable was indexed with.
+     *
+     * @param rect the indexed rectangle, or null if the collidable isn't indexed
+     */
+    public void setIndexedRectangle(Rectangle rect) {
+        this.indexedRectangle = rect;
+    }
+
+    /**
+     * Get the lattice the collidable is indexed in.
+     *
+     * @return the lattice, or null if the collidable isn't indexed by lattice
+     */
+    public BlockLattice getLattice() {
+        return this.lattice;
+    }
+
+    /**
+     * Set the lattice the collidable is indexed in.
+     *
+     * @param blockLattice the lattice, or null if the collidable isn't indexed by lattice
+     */
+    public void setLattice(BlockLattice blockLattice) {
+        this.lattice = blockLattice;
+    }
+
+    /**
+     * Get the node of the entry in the broadphase that indexes it.
+     *
+     * @return the node of the entry, or -1 if the broadphase doesn't keep it
+     */
+    public int getProxy() {
+        return this.proxy;
+    }
+
+    /**
+     * Set the node of the entry in the broadphase that indexes it.
+     *
+     * @param node the node of the entry, or -1 if the broadphase doesn't keep it
+     */
+    public void setProxy(int node) {
+        this.proxy = node;
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import biuoop.DrawSurface;
+
+/**
+ * The interface for sprite that moves, and can be drawn between its state before the last simulation tick
+ * (timePassed) and its current state, when the frames are drawn more often than the ticks.
+ * The sprite captures its previous state at the start of each timePassed().
+ * drawOn(surface) should be the same as drawOn(surface, 1).
+ */
+public interface InterpolatedSprite extends Sprite {
+
+    /**
+     * Draw the sprite at the state between its previous and current state.
+     *
+     * @param surface to draw on it.
+     * @param alpha the part of the way from the previous state (0) to the current state (1)
+     */
+    void drawOn(DrawSurface surface, double alpha);
+}
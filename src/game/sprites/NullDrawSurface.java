@@ -0,0 +1,94 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+import biuoop.DrawSurface;
+
+/**
+ * The class of DrawSurface that ignores all the drawing (null sink) - only its size is kept.
+ * It lets the game run without window and without drawing cost.
+ */
+public class NullDrawSurface implements DrawSurface {
+
+    /** The width of the surface. */
+    private int width;
+    /** The height of the surface. */
+    private int height;
+
+    /**
+     * Constructor for surface with the given size.
+     *
+     * @param width of the surface
+     * @param height of the surface
+     */
+    public NullDrawSurface(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /* DrawSurface interface methods */
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class represents set of objects (by identity, no 'null') that keeps their adding order,
+ * with O(1) add / remove / contains.
+ * The objects are kept in list by their adding order, and the slot of each object is kept in identity hash table
+ * (open addressing by System.identityHashCode) of primitive slots - so adding / removing / compacting doesn't
+ * create objects once the list and the table are big enough.
+ * Removed object leaves a hole in its slot, and the holes are closed (compaction) when they are more than the objects,
+ * or when the objects are read by their index - so each operation is O(1) amortized.
+ *
+ * @param <T> the type of the objects
+ */
+public class OrderedIdentitySet<T> {
+
+    /** Start capacity of the hash table (power of 2). */
+    private static final int START_CAPACITY = 16;
+
+    /** The objects by their adding order, with 'null' holes of removed objects. */
+    private List<T> items;
+    /** The objects of the set in their places in the hash table, null for empty place. */
+    private Object[] keys;
+    /** The slot in the list of the object at each place of the hash table. */
+    private int[] slots;
+    /** How much objects are in the set. */
+    private int count;
+
+    /**
+     * Constructor for empty set.
+     */
+    public OrderedIdentitySet() {
+        this.items = new ArrayList<T>();
+        this.keys = new Object[START_CAPACITY];
+        this.slots = new int[START_CAPACITY];
+        this.count = 0;
+    }
+
+    /**
+     * Get how much objects are in the set.
+     *
+     * @return number of objects
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Check if the object is in the set.
+     *
+     * @param item the object to check
+     * @return true if the object is in the set
+     */
+    public boolean contains(T item) {
+        return item != null && findPlace(item) >= 0;
+    }
+
+    /**
+     * Add object at the end of the order, if it isn't null and isn't in the set.
+     *
+     * @param item the object to add
+     * @return true if the object was added
+     */
+    public boolean add(T item) {
+        if (item == null || findPlace(item) >= 0) {
+            return false;
+        }
+        // the table is kept at most half full, so the probes are short
+        if (2 * (this.count + 1) > this.keys.length) {
+            resize(this.keys.length * 2);
+        }
+        insert(item, this.items.size());
+        this.items.add(item);
+        this.count++;
+        return true;
+    }
+
+    /**
+     * Remove object from the set, the other objects keep their order.
+     *
+     * @param item the object to remove
+     * @return true if the object was in the set
+     */
+    public boolean remove(T item) {
+        int place = item == null ? -1 : findPlace(item);
+        if (place < 0) {
+            return false;
+        }
+        this.items.set(this.slots[place], null);
+        removePlace(place);
+        this.count--;
+        // close the holes when they are more than the objects
+        if (this.items.size() - this.count > this.count) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Get the object at the given index of the adding order.
+     * Reading the objects by their index doesn't change the set, as long as no object is added / removed.
+     *
+     * @param index of the object, 0 <= index < size()
+     * @return the object at that index
+     */
+    public T get(int index) {
+        if (this.items.size() > this.count) {
+            compact();
+        }
+        return this.items.get(index);
+    }
+
+    /**
+     * Close the holes of the removed objects, and keep the order of the other objects.
+     */
+    private void compact() {
+        int next = 0;
+        for (int i = 0; i < this.items.size(); i++) {
+            T item = this.items.get(i);
+            if (item != null) {
+                this.items.set(next, item);
+                this.slots[findPlace(item)] = next;
+                next++;
+            }
+        }
+        this.items.subList(next, this.items.size()).clear();
+    }
+
+    /**
+     * Get the place in the hash table that an object is looked for from.
+     *
+     * @param item the object
+     * @return the first place of the object's probes
+     */
+    private int homeOf(Object item) {
+        int hash = System.identityHashCode(item);
+        // spread the high bits to the low bits, which select the place
+        return (hash ^ (hash >>> 16)) & (this.keys.length - 1);
+    }
+
+    /**
+     * Find the place of an object in the hash table.
+     *
+     * @param item the object, not null
+     * @return the place of the object, or -1 if it isn't in the set
+     */
+    private int findPlace(Object item) {
+        int mask = this.keys.length - 1;
+        for (int place = homeOf(item); this.keys[place] != null; place = (place + 1) & mask) {
+            if (this.keys[place] == item) {
+                return place;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Put an object that isn't in the hash table at its first empty place, with its slot in the list.
+     *
+     * @param item the object, not null
+     * @param slot the slot of the object in the list
+     */
+    private void insert(Object item, int slot) {
+        int mask = this.keys.length - 1;
+        int place = homeOf(item);
+        while (this.keys[place] != null) {
+            place = (place + 1) & mask;
+        }
+        this.keys[place] = item;
+        this.slots[place] = slot;
+    }
+
+    /**
+     * Empty a place of the hash table, and move back the objects after it that can't be found without it
+     * (so the table doesn't need deleted marks).
+     *
+     * @param place the place to empty
+     */
+    private void removePlace(int place) {
+        int mask = this.keys.length - 1;
+        int hole = place;
+        this.keys[hole] = null;
+        for (int next = (hole + 1) & mask; this.keys[next] != null; next = (next + 1) & mask) {
+            int home = homeOf(this.keys[next]);
+            // the object stays if its home is cyclically after the hole and not after its place
+            boolean isReachable = hole < next ? home > hole && home <= next : home > hole || home <= next;
+            if (!isReachable) {
+                this.keys[hole] = this.keys[next];
+                this.slots[hole] = this.slots[next];
+                this.keys[next] = null;
+                hole = next;
+            }
+        }
+    }
+
+    /**
+     * Move the objects to new hash table with the given capacity.
+     *
+     * @param capacity of the new table, power of 2
+     */
+    private void resize(int capacity) {
+        Object[] oldKeys = this.keys;
+        int[] oldSlots = this.slots;
+        this.keys = new Object[capacity];
+        this.slots = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                insert(oldKeys[i], oldSlots[i]);
+            }
+        }
+    }
+}
@@ -4,22 +4,30 @@
 
 package game.sprites;
 
+import java.util.List;
+import java.util.ArrayList;
+
 import java.awt.Color;
 import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 import game.animation.GameLevel;
-import game.axes.Line;
+import game.axes.IntersectionKernel;
+import game.axes.MathUtil;
 import game.axes.Point;
 import game.axes.Rectangle;
 import game.axes.Velocity;
+import game.listeners.MovementListener;
+import game.listeners.MovementNotifier;
 
 /**
- * Class for paddle of arkanoid game. implements Sprite + Collidable interfaces.
+ * Class for paddle of arkanoid game. implements Sprite + Collidable + MovementNotifier interfaces.
  */
-public class Paddle implements Sprite, Collidable {
+public class Paddle implements InterpolatedSprite, Collidable, MovementNotifier {
 
     /** The paddle-shape rectangle. */
     private Rectangle rectangle;
+    /** The paddle rectangle before the last timePassed() (for drawing between the frames). */
+    private Rectangle previousRectangle;
     /** The color of the paddle. */
     private Color color;
     /** The proprety if to draw the paddle as '3D'. */
@@ -34,6 +42,8 @@ public class Paddle implements Sprite, Collidable {
     private Rectangle movementRectangle;
     /** whether the paddle can 'fly' or only move left-right. */
     private boolean alsoUpDown;
+    /** List of listeners to be notified when this paddle 'has moved' [=its rectangle was changed]. */
+    private List<MovementListener> movementListeners;
 
     /**
      * Constructor which give some defaults values.
@@ -45,11 +55,13 @@ public class Paddle implements Sprite, Collidable {
      */
     public Paddle(Rectangle rectangle, Color color, KeyboardSensor keyboard, double speed) {
         this.rectangle = rectangle;
+        this.previousRectangle = rectangle;
         this.color = color;
         this.is3D = false;
         this.keyboard = keyboard;
         this.speedSizeByPress = speed;
         this.alsoUpDown = false;
+        this.movementListeners = new ArrayList<MovementListener>();
     }
 
     /**
@@ -82,7 +94,25 @@ public class Paddle implements Sprite, Collidable {
         Velocity minV = Velocity.min(v1, vToSprite);
         minV = Velocity.min(minV, vToBorders);
         //apply lower velocity to keep distance from the sprites/borders
-        this.rectangle =  minV.lower().applyToRectangle(this.rectangle);
+        Rectangle movedRectangle = minV.lower().applyToRectangle(this.rectangle);
+        // keep the same rectangle if the paddle didn't move, so the listeners won't be notified for nothing
+        if (movedRectangle.getUpperLeft().getX() == this.rectangle.getUpperLeft().getX()
+                && movedRectangle.getUpperLeft().getY() == this.rectangle.getUpperLeft().getY()) {
+            return;
+        }
+        this.rectangle = movedRectangle;
+        this.notifyMovement();
+    }
+
+    /**
+     * Notify all the listeners that this paddle has moved.
+     */
+    private void notifyMovement() {
+        // Make a copy of the movementListeners before iterating over them.
+        List<MovementListener> listeners = new ArrayList<MovementListener>(this.movementListeners);
+        for (MovementListener ml : listeners) {
+            ml.movementEvent(this);
+        }
     }
 
     /**
@@ -119,22 +149,33 @@ public class Paddle implements Sprite, Collidable {
 
     @Override
     public void drawOn(DrawSurface surface) {
+        this.drawRectangle(surface, this.rectangle);
+    }
+
+    /**
+     * Draw the paddle at a given rectangle.
+     *
+     * @param surface to draw on it.
+     * @param rect where to draw the paddle
+     */
+    private void drawRectangle(DrawSurface surface, Rectangle rect) {
         //check if the paddle is not transparent
         if (color.getTransparency() != Color.OPAQUE) {
             return;
         }
         //check if the paddle is flat
         if (!this.is3D) {
-            ColorsUtil.drawFlatRectangle(surface, this.rectangle, this.color, true);
+            ColorsUtil.drawFlatRectangle(surface, rect, this.color, true);
             return;
         }
 
-        double startX = this.rectangle.getUpperLeft().getX();
-        double startY = this.rectangle.getUpperLeft().getY();
-        double width = this.rectangle.getWidth();
-        double height = this.rectangle.getHeight();
+        double startX = rect.getUpperLeft().getX();
+        double startY = rect.getUpperLeft().getY();
+        double width = rect.getWidth();
+        double height = rect.getHeight();
 
-        Color edgesColor = ColorsUtil.isSimilarColor(Color.RED, this.color) ? Color.GRAY : Color.RED;
+        // red edges, or gray ones if the paddle is red
+        Color edgesColor = ColorsUtil.getShades(this.color).getEdge();
         // draw 2 3D balls(="edges") at the 2 corners
         double ballR = height / 2;
         ColorsUtil.drawBall(surface, startX + ballR, startY + ballR, ballR, edgesColor, true);
@@ -147,6 +188,8 @@ public class Paddle implements Sprite, Collidable {
 
     @Override
     public void timePassed() {
+        // remember where the paddle was, for drawing between the frames
+        this.previousRectangle = this.rectangle;
         // enable up/down if 'u' or 'U' is pressed
         this.alsoUpDown = this.alsoUpDown || this.keyboard.isPressed("u") || this.keyboard.isPressed("U");
 
@@ -187,6 +230,35 @@ public class Paddle implements Sprite, Collidable {
         move(velocity);
     }
 
+    /* InterpolatedSprite interface methods */
+
+    @Override
+    public void drawOn(DrawSurface surface, double alpha) {
+        if (alpha >= 1 || this.previousRectangle == this.rectangle) {
+            this.drawRectangle(surface, this.rectangle);
+            return;
+        }
+        Point previous = this.previousRectangle.getUpperLeft();
+        Point current = this.rectangle.getUpperLeft();
+        Point upperLeft = new Point(MathUtil.interpolate(previous.getX(), current.getX(), alpha),
+                                    MathUtil.interpolate(previous.getY(), current.getY(), alpha));
+        this.drawRectangle(surface, new Rectangle(upperLeft, this.rectangle.getWidth(), this.rectangle.getHeight()));
+    }
+
+    /* MovementNotifier interface methods */
+
+    @Override
+    public void addMovementListener(MovementListener ml) {
+        if (ml != null && !this.movementListeners.contains(ml)) {
+            this.movementListeners.add(ml);
+        }
+    }
+
+    @Override
+    public void removeMovementListener(MovementListener ml) {
+        this.movementListeners.remove(ml);
+    }
+
     /* Collidable interface methods */
 
     @Override
@@ -203,10 +275,16 @@ public class Paddle implements Sprite, Collidable {
         //check where the collision point is
         double dx = currentVelocity.getDx();
         double dy = currentVelocity.getDy();
-        boolean collidedWithUpperLine = this.rectangle.getUpperLine().isIntersecting(collisionPoint);
-        boolean collidedWithLowerLine = this.rectangle.getLowerLine().isIntersecting(collisionPoint);
-        boolean collidedWithLeftLine = this.rectangle.getLeftLine().isIntersecting(collisionPoint);
-        boolean collidedWithRightLine = this.rectangle.getRightLine().isIntersecting(collisionPoint);
+        double x = collisionPoint.getX();
+        double y = collisionPoint.getY();
+        double left = this.rectangle.getUpperLeft().getX();
+        double top = this.rectangle.getUpperLeft().getY();
+        double right = this.rectangle.getLowerRight().getX();
+        double bottom = this.rectangle.getLowerRight().getY();
+        boolean collidedWithUpperLine = IntersectionKernel.isOnSegment(x, y, left, top, right, top);
+        boolean collidedWithLowerLine = IntersectionKernel.isOnSegment(x, y, left, bottom, right, bottom);
+        boolean collidedWithLeftLine = IntersectionKernel.isOnSegment(x, y, left, top, left, bottom);
+        boolean collidedWithRightLine = IntersectionKernel.isOnSegment(x, y, right, top, right, bottom);
         //if the ball hit the bottom edge that are not the upper edge return velocity with -1*dy
         if (!collidedWithUpperLine && collidedWithLowerLine) {
             dy = -dy;
@@ -228,22 +306,19 @@ public class Paddle implements Sprite, Collidable {
         // the higer region that the hit was at, the more angle we add to the new angle towards the right direction
         double angleFromLeftToRight = (Velocity.RIGHT_ANGLE - Velocity.LEFT_ANGLE + 360) % 360;
         double eachRegionAngleAddition = angleFromLeftToRight / (regions + 1);
-        double y = collisionPoint.getY();
-        double leftX = this.rectangle.getUpperLeft().getX();
-        double rightX = this.rectangle.getUpperRight().getX();
-        double distanceX = (rightX - leftX) / regions;
+        double distanceX = (right - left) / regions;
         for (int i = 1; i <= regions; i++) {
             // check if the collision is on the region line
-            double currRegionLeftX = leftX + (i - 1) * distanceX;
+            double currRegionLeftX = left + (i - 1) * distanceX;
             double currRegionRightX = currRegionLeftX + distanceX;
-            Line currRegionLine = new Line(currRegionLeftX, y, currRegionRightX, y);
+            boolean isInRegion = IntersectionKernel.isInRange(x, currRegionLeftX, currRegionRightX);
             boolean isMiddleRegion = (regions + 1) / 2 == i;
             //if it is the middle region just to turn upside down the dy component
-            if (isMiddleRegion && currRegionLine.isXInRange(collisionPoint.getX())) {
+            if (isMiddleRegion && isInRegion) {
                 return new Velocity(currentVelocity.getDx(), -1 * currentVelocity.getDy());
             }
             //if it isn't the middle region add to the current angle according to the hitted region
-            if (currRegionLine.isXInRange(collisionPoint.getX())) {
+            if (isInRegion) {
                 newAngle += i * eachRegionAngleAddition;
                 break;
             }
@@ -0,0 +1,827 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import biuoop.DrawSurface;
+
+/**
+ * The class of DrawSurface that records the drawing commands instead of drawing them (reusable object).
+ * The commands are kept in primitive arrays - opcode, int arguments and bounding box for each command,
+ * and the colors / images / texts in one reference array - so recording doesn't create objects
+ * once the arrays are big enough.
+ * The recorded commands can be replayed on another DrawSurface (all of them, or only the ones that may change
+ * pixels of a given rectangle), and two recordings can be compared, to know if they draw the same pixels.
+ * The commands can also be replayed batched by color (replayBatched()) - commands of the current color are drawn
+ * earlier than their turn when they don't overlap the commands they pass, so there are less color changes
+ * and the pixels are the same.
+ * Circles are recorded as ovals, exactly as the gui DrawSurface draws them.
+ * The buffer can be recorded by one thread and replayed by another: the recording thread calls seal() when it
+ * finishes, and the other thread replays it after isSealed() returns true. Sealed buffer can't be recorded
+ * till reset(), which is called by the thread that records it again after the replay ended.
+ * Images that are changed after they are drawn (mutable images, drawn by drawMutableImage() - like a back buffer)
+ * may be changed while another thread replays the buffer, so buffer that is replayed by another thread should copy
+ * them when they are recorded (setCopyingImages()). The copies are kept for the next recordings, and a copy of the
+ * same image and version isn't copied again.
+ */
+public class RenderCommandBuffer implements DrawSurface {
+
+    /** Opcode of setColor(). */
+    public static final int SET_COLOR = 0;
+    /** Opcode of drawLine(). */
+    public static final int DRAW_LINE = 1;
+    /** Opcode of drawOval() / drawCircle(). */
+    public static final int DRAW_OVAL = 2;
+    /** Opcode of fillOval() / fillCircle(). */
+    public static final int FILL_OVAL = 3;
+    /** Opcode of drawRectangle(). */
+    public static final int DRAW_RECTANGLE = 4;
+    /** Opcode of fillRectangle(). */
+    public static final int FILL_RECTANGLE = 5;
+    /** Opcode of drawImage(). */
+    public static final int DRAW_IMAGE = 6;
+    /** Opcode of drawText(). */
+    public static final int DRAW_TEXT = 7;
+    /** Opcode of drawPolygon(). */
+    public static final int DRAW_POLYGON = 8;
+    /** Opcode of fillPolygon(). */
+    public static final int FILL_POLYGON = 9;
+
+    /** How much int arguments each command has. */
+    private static final int ARGS = 4;
+    /** Start capacity of the arrays (in commands). */
+    private static final int START_CAPACITY = 16;
+    /** How much commands after the next command in order are checked for being drawn earlier by batched replay. */
+    private static final int BATCH_WINDOW = 32;
+
+    /** The width of the recorded surface. */
+    private int width;
+    /** The height of the recorded surface. */
+    private int height;
+    /** The opcode of each command. */
+    private int[] ops;
+    /** The int arguments of each command (ARGS for each command). */
+    private int[] args;
+    /** The color / image / text of each command, or null. */
+    private Object[] refs;
+    /** The bounding box of the pixels each command may change - left, top, right, bottom (exclusive). */
+    private int[] bounds;
+    /** The points of the recorded polygons - x values and then y values of each polygon. */
+    private int[] points;
+    /** How much commands were recorded. */
+    private int size;
+    /** How much polygon points values were recorded. */
+    private int pointsSize;
+    /** The bounding box of all the commands - left, top, right, bottom (exclusive). */
+    private int[] totalBounds;
+    /** The order of the recorded sprite in its frame, for who keeps recordings of sprites. */
+    private long order;
+    /** For each command, the index of the setColor command it is drawn by, or -1 if no color was set before it. */
+    private int[] colorIndexes;
+    /** The index of the last setColor command, or -1. */
+    private int currentColor;
+    /** Whether each command was drawn already by the running batched replay. */
+    private boolean[] isDrawn;
+    /** The commands the running batched replay passed without drawing them (can't be overlapped). */
+    private int[] blockers;
+    /** Reusable polygon for the replay of the polygon commands. */
+    private Polygon polygon;
+    /** How much times the last replay set the color of the surface. */
+    private int lastColorChanges;
+    /** Whether the recording was finished, and the buffer may be replayed by another thread. */
+    private volatile boolean isSealedFlag;
+    /** Whether mutable images are copied when they are recorded. */
+    private boolean isCopyingImages;
+    /** The copies of the mutable images, by their recording order (kept for the next recordings). */
+    private BufferedImage[] imageCopies;
+    /** The image each copy was copied from. */
+    private Object[] copiedImages;
+    /** The version of the image each copy was copied from. */
+    private int[] copiedVersions;
+    /** How much mutable images were copied since the last reset. */
+    private int copyCount;
+
+    /**
+     * Constructor for empty buffer of surface with the given size.
+     *
+     * @param width of the recorded surface
+     * @param height of the recorded surface
+     */
+    public RenderCommandBuffer(int width, int height) {
+        this.ops = new int[START_CAPACITY];
+        this.args = new int[START_CAPACITY * ARGS];
+        this.refs = new Object[START_CAPACITY];
+        this.bounds = new int[START_CAPACITY * 4];
+        this.points = new int[START_CAPACITY];
+        this.totalBounds = new int[4];
+        this.colorIndexes = new int[START_CAPACITY];
+        this.isDrawn = new boolean[START_CAPACITY];
+        this.blockers = new int[BATCH_WINDOW];
+        this.polygon = new Polygon();
+        this.isCopyingImages = false;
+        this.imageCopies = new BufferedImage[0];
+        this.copiedImages = new Object[0];
+        this.copiedVersions = new int[0];
+        reset(width, height);
+    }
+
+    /**
+     * Forget the recorded commands, and start recording surface with the given size.
+     *
+     * @param surfaceWidth width of the recorded surface
+     * @param surfaceHeight height of the recorded surface
+     */
+    public void reset(int surfaceWidth, int surfaceHeight) {
+        // don't keep references to old colors / images
+        Arrays.fill(this.refs, 0, this.size, null);
+        this.width = surfaceWidth;
+        this.height = surfaceHeight;
+        this.size = 0;
+        this.pointsSize = 0;
+        this.totalBounds[0] = Integer.MAX_VALUE;
+        this.totalBounds[1] = Integer.MAX_VALUE;
+        this.totalBounds[2] = Integer.MIN_VALUE;
+        this.totalBounds[3] = Integer.MIN_VALUE;
+        this.currentColor = -1;
+        this.copyCount = 0;
+        this.isSealedFlag = false;
+    }
+
+    /**
+     * Finish the recording - nothing can be recorded till reset(), and another thread may replay the buffer.
+     */
+    public void seal() {
+        this.isSealedFlag = true;
+    }
+
+    /**
+     * Check if the recording was finished (by seal()), so the buffer can be replayed by this thread.
+     *
+     * @return true if the buffer is sealed
+     */
+    public boolean isSealed() {
+        return this.isSealedFlag;
+    }
+
+    /**
+     * Check if mutable images are copied when they are recorded.
+     *
+     * @return true if the buffer records copies of the mutable images
+     */
+    public boolean isCopyingImages() {
+        return this.isCopyingImages;
+    }
+
+    /**
+     * Set whether mutable images are copied when they are recorded - for buffer that is replayed by another thread,
+     * while the images may be changed.
+     *
+     * @param state true to record copies of the mutable images
+     */
+    public void setCopyingImages(boolean state) {
+        this.isCopyingImages = state;
+    }
+
+    /**
+     * Get how much times the last replay set the color of the surface.
+     *
+     * @return number of setColor calls of the last replay
+     */
+    public int getLastColorChanges() {
+        return this.lastColorChanges;
+    }
+
+    /**
+     * Get how much commands were recorded.
+     *
+     * @return number of commands
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get how much drawing commands (without setColor) were recorded.
+     *
+     * @return number of drawing primitives
+     */
+    public int getPrimitiveCount() {
+        int count = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.ops[i] != SET_COLOR) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check if nothing that changes pixels was recorded.
+     *
+     * @return true if the recording doesn't change any pixel
+     */
+    public boolean isEmpty() {
+        return this.totalBounds[0] >= this.totalBounds[2] || this.totalBounds[1] >= this.totalBounds[3];
+    }
+
+    /**
+     * Get the left of the bounding box of all the recorded commands.
+     *
+     * @return the minimum x value the recording may change
+     */
+    public int getLeft() {
+        return this.totalBounds[0];
+    }
+
+    /**
+     * Get the top of the bounding box of all the recorded commands.
+     *
+     * @return the minimum y value the recording may change
+     */
+    public int getTop() {
+        return this.totalBounds[1];
+    }
+
+    /**
+     * Get the right of the bounding box of all the recorded commands (exclusive).
+     *
+     * @return the x value after the maximum x value the recording may change
+     */
+    public int getRight() {
+        return this.totalBounds[2];
+    }
+
+    /**
+     * Get the bottom of the bounding box of all the recorded commands (exclusive).
+     *
+     * @return the y value after the maximum y value the recording may change
+     */
+    public int getBottom() {
+        return this.totalBounds[3];
+    }
+
+    /**
+     * Get the order of the recorded sprite in its frame.
+     *
+     * @return the order that was set
+     */
+    public long getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Set the order of the recorded sprite in its frame.
+     *
+     * @param frameOrder the order of the sprite
+     */
+    public void setOrder(long frameOrder) {
+        this.order = frameOrder;
+    }
+
+    /**
+     * Check if another recording has exactly the same commands, so it draws exactly the same pixels.
+     * Images are compared by identity and version - sprite that changes the pixels of its image must draw another
+     * image, or draw it by drawMutableImage() with another version. Colors and texts are compared by their values.
+     *
+     * @param other the recording to compare with
+     * @return true if the recordings are the same
+     */
+    public boolean contentEquals(RenderCommandBuffer other) {
+        if (other == null || other.size != this.size || other.pointsSize != this.pointsSize) {
+            return false;
+        }
+        for (int i = 0; i < this.size; i++) {
+            if (this.ops[i] != other.ops[i]) {
+                return false;
+            }
+            if (!isSameRef(this.ops[i], this.refs[i], other.refs[i])) {
+                return false;
+            }
+        }
+        for (int i = 0; i < this.size * ARGS; i++) {
+            if (this.args[i] != other.args[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < this.pointsSize; i++) {
+            if (this.points[i] != other.points[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if two references of commands with the same opcode draw the same.
+     *
+     * @param op opcode of the commands
+     * @param ref reference of one command, may be null
+     * @param otherRef reference of the other command, may be null
+     * @return true if the references draw the same
+     */
+    private static boolean isSameRef(int op, Object ref, Object otherRef) {
+        if (op == DRAW_IMAGE || ref == null) {
+            return ref == otherRef;
+        }
+        return ref.equals(otherRef);
+    }
+
+    /**
+     * Draw all the recorded commands on a surface, by their order.
+     *
+     * @param surface to draw on
+     * @return how much drawing primitives (without setColor) were drawn
+     */
+    public int replay(DrawSurface surface) {
+        return replay(surface, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Draw on a surface, by their order, the recorded commands that may change pixels of the given rectangle
+     * (the colors are always set, so each command is drawn with its own color).
+     *
+     * @param surface to draw on
+     * @param left of the rectangle
+     * @param top of the rectangle
+     * @param right of the rectangle (exclusive)
+     * @param bottom of the rectangle (exclusive)
+     * @return how much drawing primitives (without setColor) were drawn
+     */
+    public int replay(DrawSurface surface, int left, int top, int right, int bottom) {
+        return replay(surface, null, left, top, right, bottom);
+    }
+
+    /**
+     * Draw all the recorded commands on a surface, batched by color.
+     * The commands are drawn by their order, but after each command, the next commands (up to BATCH_WINDOW)
+     * that have the same color - or don't need color, like images - are drawn too, if they don't overlap any
+     * command they pass. So the surface gets the same pixels, with less color changes.
+     *
+     * @param surface to draw on
+     * @return how much drawing primitives (without setColor) were drawn
+     */
+    public int replayBatched(DrawSurface surface) {
+        if (this.isDrawn.length < this.size) {
+            this.isDrawn = new boolean[this.ops.length];
+        }
+        Arrays.fill(this.isDrawn, 0, this.size, false);
+        this.lastColorChanges = 0;
+        int drawnColor = -1;
+        int drawn = 0;
+        for (int first = 0; first < this.size; first++) {
+            if (this.ops[first] == SET_COLOR || this.isDrawn[first]) {
+                continue;
+            }
+            drawnColor = replayWithColor(surface, first, drawnColor);
+            drawn++;
+            // commands without color were recorded before any color was set, so they are never passed
+            if (this.colorIndexes[first] < 0) {
+                continue;
+            }
+            int blockerCount = 0;
+            for (int next = first + 1; next < this.size && blockerCount < BATCH_WINDOW; next++) {
+                if (this.ops[next] == SET_COLOR || this.isDrawn[next]) {
+                    continue;
+                }
+                boolean isSameColor = this.ops[next] == DRAW_IMAGE
+                                      || isSameRef(SET_COLOR, colorOf(next), colorOf(first));
+                if (isSameColor && !isOverlapping(next, blockerCount)) {
+                    drawnColor = replayWithColor(surface, next, drawnColor);
+                    drawn++;
+                } else {
+                    this.blockers[blockerCount++] = next;
+                }
+            }
+        }
+        return drawn;
+    }
+
+    /**
+     * Get the color a command is drawn by.
+     *
+     * @param i index of the command
+     * @return the color, or null if no color was set before the command
+     */
+    private Color colorOf(int i) {
+        int colorIndex = this.colorIndexes[i];
+        return colorIndex < 0 ? null : (Color) this.refs[colorIndex];
+    }
+
+    /**
+     * Check if the bounding box of a command overlaps the bounding box of one of the blockers.
+     *
+     * @param i index of the command
+     * @param blockerCount how much blockers there are
+     * @return true if the command overlaps a blocker
+     */
+    private boolean isOverlapping(int i, int blockerCount) {
+        int b = i * 4;
+        for (int k = 0; k < blockerCount; k++) {
+            int c = this.blockers[k] * 4;
+            if (this.bounds[b] < this.bounds[c + 2] && this.bounds[c] < this.bounds[b + 2]
+                    && this.bounds[b + 1] < this.bounds[c + 3] && this.bounds[c + 1] < this.bounds[b + 3]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Draw a command by batched replay, and set the surface color first if the command needs another color.
+     *
+     * @param surface to draw on
+     * @param i index of the command
+     * @param drawnColor the index of the setColor command the surface color was set by, or -1
+     * @return the index of the setColor command the surface color is set by after the drawing, or -1
+     */
+    private int replayWithColor(DrawSurface surface, int i, int drawnColor) {
+        this.isDrawn[i] = true;
+        int colorIndex = this.colorIndexes[i];
+        int surfaceColor = drawnColor;
+        boolean isNewColor = surfaceColor < 0 || !isSameRef(SET_COLOR, this.refs[surfaceColor], colorOf(i));
+        if (this.ops[i] != DRAW_IMAGE && colorIndex >= 0 && isNewColor) {
+            surface.setColor((Color) this.refs[colorIndex]);
+            this.lastColorChanges++;
+            surfaceColor = colorIndex;
+        }
+        replayCommand(surface, i);
+        return surfaceColor;
+    }
+
+    /**
+     * Draw on an image surface, by their order, the recorded commands that may change pixels of the given rectangle,
+     * and clip to the rectangle the commands that are clipped exactly - rectangles and images.
+     * The other commands are drawn whole, because Java2D draws curves that cross the clip a bit differently,
+     * so the pixels inside the rectangle are exactly the pixels of drawing the commands without clip.
+     * The clip of the surface is reset at the end.
+     *
+     * @param surface to draw on
+     * @param left of the rectangle
+     * @param top of the rectangle
+     * @param right of the rectangle (exclusive)
+     * @param bottom of the rectangle (exclusive)
+     * @return how much drawing primitives (without setColor) were drawn
+     */
+    public int replayClipped(ImageDrawSurface surface, int left, int top, int right, int bottom) {
+        int drawn = replay(surface, surface, left, top, right, bottom);
+        surface.resetClip();
+        return drawn;
+    }
+
+    /**
+     * Check if Java2D draws the command exactly the same with and without clip (inside the clip).
+     *
+     * @param op opcode of the command
+     * @return true for the commands that draw only axis-aligned rectangles of pixels
+     */
+    private static boolean isClipExact(int op) {
+        return op == FILL_RECTANGLE || op == DRAW_RECTANGLE || op == DRAW_IMAGE;
+    }
+
+    /**
+     * Draw on a surface, by their order, the recorded commands that may change pixels of the given rectangle.
+     *
+     * @param surface to draw on
+     * @param clipSurface the surface, to clip the commands that are clipped exactly, or null for no clip
+     * @param left of the rectangle
+     * @param top of the rectangle
+     * @param right of the rectangle (exclusive)
+     * @param bottom of the rectangle (exclusive)
+     * @return how much drawing primitives (without setColor) were drawn
+     */
+    private int replay(DrawSurface surface, ImageDrawSurface clipSurface, int left, int top, int right, int bottom) {
+        int drawn = 0;
+        boolean isClipped = false;
+        this.lastColorChanges = 0;
+        for (int i = 0; i < this.size; i++) {
+            int op = this.ops[i];
+            if (op == SET_COLOR) {
+                surface.setColor((Color) this.refs[i]);
+                this.lastColorChanges++;
+                continue;
+            }
+            int b = i * 4;
+            if (this.bounds[b] >= right || this.bounds[b + 2] <= left
+                    || this.bounds[b + 1] >= bottom || this.bounds[b + 3] <= top) {
+                continue;
+            }
+            if (clipSurface != null && isClipExact(op) != isClipped) {
+                isClipped = !isClipped;
+                if (isClipped) {
+                    clipSurface.setClip(left, top, right - left, bottom - top);
+                } else {
+                    clipSurface.resetClip();
+                }
+            }
+            replayCommand(surface, i);
+            drawn++;
+        }
+        return drawn;
+    }
+
+    /**
+     * Draw one recorded drawing command on a surface.
+     *
+     * @param surface to draw on
+     * @param i index of the command
+     */
+    private void replayCommand(DrawSurface surface, int i) {
+        int a = i * ARGS;
+        switch (this.ops[i]) {
+            case DRAW_LINE:
+                surface.drawLine(this.args[a], this.args[a + 1], this.args[a + 2], this.args[a + 3]);
+                break;
+            case DRAW_OVAL:
+                surface.drawOval(this.args[a], this.args[a + 1], this.args[a + 2], this.args[a + 3]);
+                break;
+            case FILL_OVAL:
+                surface.fillOval(this.args[a], this.args[a + 1], this.args[a + 2], this.args[a + 3]);
+                break;
+            case DRAW_RECTANGLE:
+                surface.drawRectangle(this.args[a], this.args[a + 1], this.args[a + 2], this.args[a + 3]);
+                break;
+            case FILL_RECTANGLE:
+                surface.fillRectangle(this.args[a], this.args[a + 1], this.args[a + 2], this.args[a + 3]);
+                break;
+            case DRAW_IMAGE:
+                surface.drawImage(this.args[a], this.args[a + 1], (Image) this.refs[i]);
+                break;
+            case DRAW_TEXT:
+                surface.drawText(this.args[a], this.args[a + 1], (String) this.refs[i], this.args[a + 2]);
+                break;
+            case DRAW_POLYGON:
+                surface.drawPolygon(toPolygon(i));
+                break;
+            case FILL_POLYGON:
+                surface.fillPolygon(toPolygon(i));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Set the reusable polygon to the points of a recorded polygon command.
+     *
+     * @param i index of the command
+     * @return the reusable polygon with the recorded points
+     */
+    private Polygon toPolygon(int i) {
+        int start = this.args[i * ARGS];
+        int count = this.args[i * ARGS + 1];
+        this.polygon.reset();
+        for (int k = 0; k < count; k++) {
+            this.polygon.addPoint(this.points[start + k], this.points[start + count + k]);
+        }
+        return this.polygon;
+    }
+
+    /**
+     * Record a command.
+     *
+     * @param op opcode of the command
+     * @param a0 first int argument
+     * @param a1 second int argument
+     * @param a2 third int argument
+     * @param a3 fourth int argument
+     * @param ref the color / image / text of the command, or null
+     * @param left of the pixels the command may change
+     * @param top of the pixels the command may change
+     * @param right of the pixels the command may change (exclusive)
+     * @param bottom of the pixels the command may change (exclusive)
+     */
+    private void record(int op, int a0, int a1, int a2, int a3, Object ref, int left, int top, int right,
+                        int bottom) {
+        if (this.isSealedFlag) {
+            throw new IllegalStateException("A sealed render command buffer can't be recorded till it is reset");
+        }
+        if (this.size == this.ops.length) {
+            int capacity = this.size * 2;
+            this.ops = Arrays.copyOf(this.ops, capacity);
+            this.args = Arrays.copyOf(this.args, capacity * ARGS);
+            this.refs = Arrays.copyOf(this.refs, capacity);
+            this.bounds = Arrays.copyOf(this.bounds, capacity * 4);
+            this.colorIndexes = Arrays.copyOf(this.colorIndexes, capacity);
+        }
+        int i = this.size++;
+        this.colorIndexes[i] = this.currentColor;
+        if (op == SET_COLOR) {
+            this.currentColor = i;
+        }
+        this.ops[i] = op;
+        this.refs[i] = ref;
+        this.args[i * ARGS] = a0;
+        this.args[i * ARGS + 1] = a1;
+        this.args[i * ARGS + 2] = a2;
+        this.args[i * ARGS + 3] = a3;
+        this.bounds[i * 4] = left;
+        this.bounds[i * 4 + 1] = top;
+        this.bounds[i * 4 + 2] = right;
+        this.bounds[i * 4 + 3] = bottom;
+        if (left < right && top < bottom) {
+            this.totalBounds[0] = Math.min(this.totalBounds[0], left);
+            this.totalBounds[1] = Math.min(this.totalBounds[1], top);
+            this.totalBounds[2] = Math.max(this.totalBounds[2], right);
+            this.totalBounds[3] = Math.max(this.totalBounds[3], bottom);
+        }
+    }
+
+    /**
+     * Record a command of shape inside box (the box of outline shape has one more pixel at right and bottom).
+     *
+     * @param op opcode of the command
+     * @param x of the box
+     * @param y of the box
+     * @param w width of the box
+     * @param h height of the box
+     * @param isOutline true for outline shape (draw), false for filled shape (fill)
+     */
+    private void recordBox(int op, int x, int y, int w, int h, boolean isOutline) {
+        int extra = isOutline ? 1 : 0;
+        // negative size draws nothing
+        if (w < 0 || h < 0) {
+            record(op, x, y, w, h, null, x, y, x, y);
+        } else {
+            record(op, x, y, w, h, null, x, y, x + w + extra, y + h + extra);
+        }
+    }
+
+    /**
+     * Record a polygon command.
+     *
+     * @param op opcode of the command
+     * @param polygon the polygon to record
+     */
+    private void recordPolygon(int op, Polygon polygon) {
+        int count = polygon.npoints;
+        if (this.pointsSize + 2 * count > this.points.length) {
+            this.points = Arrays.copyOf(this.points, Math.max(this.points.length * 2, this.pointsSize + 2 * count));
+        }
+        int start = this.pointsSize;
+        System.arraycopy(polygon.xpoints, 0, this.points, start, count);
+        System.arraycopy(polygon.ypoints, 0, this.points, start + count, count);
+        this.pointsSize += 2 * count;
+        if (count == 0) {
+            record(op, start, count, 0, 0, null, 0, 0, 0, 0);
+            return;
+        }
+        Rectangle box = polygon.getBounds();
+        record(op, start, count, 0, 0, null, box.x, box.y, box.x + box.width + 1, box.y + box.height + 1);
+    }
+
+    /**
+     * Record drawing of an image whose pixels may be changed later (mutable image), with the version of its pixels.
+     * Recordings of the same image with different versions aren't equal (contentEquals()).
+     *
+     * @param x of the image
+     * @param y of the image
+     * @param image the image to draw
+     * @param version of the pixels of the image, changed each time they are changed
+     */
+    public void drawImage(int x, int y, Image image, int version) {
+        int w = Math.max(0, image.getWidth(null));
+        int h = Math.max(0, image.getHeight(null));
+        Image recorded = image;
+        if (this.isCopyingImages && image instanceof BufferedImage && !this.isSealedFlag) {
+            recorded = copyOf((BufferedImage) image, version);
+        }
+        record(DRAW_IMAGE, x, y, version, 0, recorded, x, y, x + w, y + h);
+    }
+
+    /**
+     * Get copy of the pixels of a mutable image, that is owned by this buffer.
+     * The copy of the same recording order is reused, and isn't copied again if it has the same image and version.
+     *
+     * @param image the mutable image
+     * @param version of the pixels of the image
+     * @return the copy
+     */
+    private BufferedImage copyOf(BufferedImage image, int version) {
+        int i = this.copyCount++;
+        if (i == this.imageCopies.length) {
+            this.imageCopies = Arrays.copyOf(this.imageCopies, i + 1);
+            this.copiedImages = Arrays.copyOf(this.copiedImages, i + 1);
+            this.copiedVersions = Arrays.copyOf(this.copiedVersions, i + 1);
+        }
+        BufferedImage copy = this.imageCopies[i];
+        boolean isSameSize = copy != null && copy.getWidth() == image.getWidth()
+                             && copy.getHeight() == image.getHeight() && copy.getType() == image.getType();
+        if (isSameSize && this.copiedImages[i] == image && this.copiedVersions[i] == version) {
+            return copy;
+        }
+        if (!isSameSize) {
+            copy = new BufferedImage(image.getColorModel(),
+                                     image.getRaster().createCompatibleWritableRaster(),
+                                     image.isAlphaPremultiplied(), null);
+            this.imageCopies[i] = copy;
+        }
+        copy.getRaster().setRect(image.getRaster());
+        this.copiedImages[i] = image;
+        this.copiedVersions[i] = version;
+        return copy;
+    }
+
+    /**
+     * Draw a mutable image on a surface - with its version if the surface records the drawing, so a recording of
+     * the image isn't equal to a recording of other version of its pixels.
+     *
+     * @param surface to draw on it
+     * @param x of the image
+     * @param y of the image
+     * @param image the image to draw
+     * @param version of the pixels of the image, changed each time they are changed
+     */
+    public static void drawMutableImage(DrawSurface surface, int x, int y, Image image, int version) {
+        if (surface instanceof RenderCommandBuffer) {
+            ((RenderCommandBuffer) surface).drawImage(x, y, image, version);
+        } else {
+            surface.drawImage(x, y, image);
+        }
+    }
+
+    /* DrawSurface interface methods */
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        record(SET_COLOR, 0, 0, 0, 0, color, 0, 0, 0, 0);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        record(DRAW_LINE, x1, y1, x2, y2, null, Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2) + 1,
+               Math.max(y1, y2) + 1);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        recordBox(DRAW_OVAL, x, y, w, h, true);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        recordBox(FILL_OVAL, x, y, w, h, false);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        recordBox(DRAW_RECTANGLE, x, y, w, h, true);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        recordBox(FILL_RECTANGLE, x, y, w, h, false);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        int w = Math.max(0, image.getWidth(null));
+        int h = Math.max(0, image.getHeight(null));
+        record(DRAW_IMAGE, x, y, 0, 0, image, x, y, x + w, y + h);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        recordBox(DRAW_OVAL, x - r, y - r, r * 2, r * 2, true);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        recordBox(FILL_OVAL, x - r, y - r, r * 2, r * 2, false);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        // the glyphs are surely inside few font sizes around the base line
+        int margin = Math.abs(fontSize) + 1;
+        record(DRAW_TEXT, x, y, fontSize, 0, text, x - margin, y - 2 * margin,
+               x + margin * (text.length() + 1), y + margin);
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        recordPolygon(DRAW_POLYGON, polygon);
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        recordPolygon(FILL_POLYGON, polygon);
+    }
+}
@@ -40,7 +40,7 @@ public class ScoreIndicator implements Sprite {
 
     @Override
     public void addToGameLevel(GameLevel g) {
-        g.addSprite(this);
+        g.addSprite(this, SpriteCollection.HUD_LAYER);
     }
     @Override
     public void removeFromGameLevel(GameLevel g) {
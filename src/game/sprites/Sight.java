@@ -37,7 +37,7 @@ public class Sight implements Sprite {
 
     @Override
     public void addToGameLevel(GameLevel g) {
-        g.addSprite(this);
+        g.addSprite(this, SpriteCollection.BACKGROUND_LAYER);
     }
 
     @Override
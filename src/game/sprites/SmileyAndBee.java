@@ -1,25 +1,31 @@
 package game.sprites;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
 import biuoop.DrawSurface;
 import game.animation.GameLevel;
 import game.axes.Point;
 import game.axes.Rectangle;
 import game.axes.Velocity;
+import game.listeners.SpriteChangeListener;
+import game.listeners.SpriteChangeNotifier;
 
 /** The class for draw Smiley And Bee higher it, on DrawSurface. Use only on one drawsurface.
  *  [meaning one defenitoin of hegiht x width]. */
-public class SmileyAndBee implements Sprite {
+public class SmileyAndBee implements Sprite, SpriteChangeNotifier {
     /** Where the be placed. we represnt it by Ball which can also move. */
     private Ball beePlace = null;
     /** The height of the drawSurface. */
     private int winHeight;
     /** The width of the drawSurface. */
     private int winWidth;
+    /** The listeners to the changes of the drawing [the bee moves every frame]. */
+    private List<SpriteChangeListener> changeListeners = new ArrayList<SpriteChangeListener>();
 
     @Override
     public void addToGameLevel(GameLevel g) {
-        g.addSprite(this);
+        g.addSprite(this, SpriteCollection.BACKGROUND_LAYER);
     }
 
     @Override
@@ -134,6 +140,25 @@ public class SmileyAndBee implements Sprite {
            notice that according to the limits of the possible movement of the bee,
            there are things dependence on it in drawOn() */
         this.beePlace.moveOneStep(0, 0, this.winWidth / 3, this.winHeight);
+        // Make a copy of the changeListeners before iterating over them.
+        List<SpriteChangeListener> listeners = new ArrayList<SpriteChangeListener>(this.changeListeners);
+        for (SpriteChangeListener scl : listeners) {
+            scl.spriteChanged(this);
+        }
+    }
+
+    /* SpriteChangeNotifier interface methods */
+
+    @Override
+    public void addSpriteChangeListener(SpriteChangeListener scl) {
+        if (scl != null && !this.changeListeners.contains(scl)) {
+            this.changeListeners.add(scl);
+        }
+    }
+
+    @Override
+    public void removeSpriteChangeListener(SpriteChangeListener scl) {
+        this.changeListeners.remove(scl);
     }
 
 }
\ No newline at end of file
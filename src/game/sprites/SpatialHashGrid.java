@@ -0,0 +1,305 @@
+/**
+ * @author [Ehud Wasserman] [ID *********]
+ */
+
+package game.sprites;
+
+import game.axes.Rectangle;
+
+/**
+ * The class represents uniform spatial hash grid of collidables. mutable object.
+ * Each collidable is kept in every (square) cell its rectangle [expanded by CollisionCandidates.MARGIN] touches,
+ * so a trajectory needs to check only the collidables that are in the cells it passes through.
+ * The cells are kept in open addressing hash table, so the grid has no bounds.
+ */
+public class SpatialHashGrid implements Broadphase {
+
+    /** Default size (width == height) of each cell, in pixels. */
+    public static final double DEFAULT_CELL_SIZE = 40;
+
+    /** Start size of the hash table (must be power of 2). */
+    private static final int START_TABLE_SIZE = 256;
+    /** Start capacity of each cell. */
+    private static final int START_CELL_CAPACITY = 4;
+
+    /** The size (width == height) of each cell. */
+    private double cellSize;
+    /** The keys (packed column & row) of the cells in the hash table. */
+    private long[] keys;
+    /** The collidables in each cell of the hash table, null if the table slot isn't used. */
+    private IndexedCollidable[][] cells;
+    /** How much collidables are in each cell of the hash table. */
+    private int[] counts;
+    /** How much slots of the hash table are used. */
+    private int usedSlots;
+
+    /**
+     * Constructor for empty grid with adjustable cell size.
+     *
+     * @param cellSize the size (width == height) of each cell. must be positive.
+     */
+    public SpatialHashGrid(double cellSize) {
+        this.cellSize = cellSize;
+        this.keys = new long[START_TABLE_SIZE];
+        this.cells = new IndexedCollidable[START_TABLE_SIZE][];
+        this.counts = new int[START_TABLE_SIZE];
+        this.usedSlots = 0;
+    }
+
+    /**
+     * Constructor for empty grid with the default cell size.
+     */
+    public SpatialHashGrid() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    @Override
+    public void insert(IndexedCollidable entry, Rectangle rect) {
+        entry.setIndexedRectangle(rect);
+        int minCol = toCell(rect.getUpperLeft().getX() - CollisionCandidates.MARGIN);
+        int maxCol = toCell(rect.getLowerRight().getX() + CollisionCandidates.MARGIN);
+        int minRow = toCell(rect.getUpperLeft().getY() - CollisionCandidates.MARGIN);
+        int maxRow = toCell(rect.getLowerRight().getY() + CollisionCandidates.MARGIN);
+        for (int col = minCol; col <= maxCol; col++) {
+            for (int row = minRow; row <= maxRow; row++) {
+                int slot = findSlot(key(col, row), true);
+                if (this.counts[slot] == this.cells[slot].length) {
+                    IndexedCollidable[] bigger = new IndexedCollidable[this.counts[slot] * 2];
+                    System.arraycopy(this.cells[slot], 0, bigger, 0, this.counts[slot]);
+                    this.cells[slot] = bigger;
+                }
+                this.cells[slot][this.counts[slot]] = entry;
+                this.counts[slot]++;
+            }
+        }
+    }
+
+    @Override
+    public void remove(IndexedCollidable entry) {
+        Rectangle rect = entry.getIndexedRectangle();
+        if (rect == null) {
+            return;
+        }
+        int minCol = toCell(rect.getUpperLeft().getX() - CollisionCandidates.MARGIN);
+        int maxCol = toCell(rect.getLowerRight().getX() + CollisionCandidates.MARGIN);
+        int minRow = toCell(rect.getUpperLeft().getY() - CollisionCandidates.MARGIN);
+        int maxRow = toCell(rect.getLowerRight().getY() + CollisionCandidates.MARGIN);
+        for (int col = minCol; col <= maxCol; col++) {
+            for (int row = minRow; row <= maxRow; row++) {
+                int slot = findSlot(key(col, row), false);
+                if (slot < 0) {
+                    continue;
+                }
+                // the order inside a cell isn't important, so replace the removed entry with the last one
+                IndexedCollidable[] cell = this.cells[slot];
+                for (int i = 0; i < this.counts[slot]; i++) {
+                    if (cell[i] == entry) {
+                        this.counts[slot]--;
+                        cell[i] = cell[this.counts[slot]];
+                        cell[this.counts[slot]] = null;
+                        break;
+                    }
+                }
+            }
+        }
+        entry.setIndexedRectangle(null);
+    }
+
+    @Override
+    public void update(IndexedCollidable entry, Rectangle rect) {
+        remove(entry);
+        insert(entry, rect);
+    }
+
+    /**
+     * Walk over the cells the trajectory passes through, from its start to its end,
+     * and offer the collidables in each cell [and in the cells closer than the candidates radius] to the candidates.
+     * The walk stops when the candidates already have collision that is closer than the next cells.
+     *
+     * @param x0 x value of the trajectory start
+     * @param y0 y value of the trajectory start
+     * @param x1 x value of the trajectory end
+     * @param y1 y value of the trajectory end
+     * @param candidates to offer the collidables to
+     */
+    @Override
+    public void traverse(double x0, double y0, double x1, double y1, CollisionCandidates candidates) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        int col = toCell(x0);
+        int row = toCell(y0);
+        int endCol = toCell(x1);
+        int endRow = toCell(y1);
+        int stepCol = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        int stepRow = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        // the trajectory parameter (0 = start, 1 = end) where it crosses the next column / row border
+        double tMaxX = Double.POSITIVE_INFINITY;
+        double tMaxY = Double.POSITIVE_INFINITY;
+        if (stepCol != 0) {
+            tMaxX = ((stepCol > 0 ? col + 1 : col) * this.cellSize - x0) / dx;
+        }
+        if (stepRow != 0) {
+            tMaxY = ((stepRow > 0 ? row + 1 : row) * this.cellSize - y0) / dy;
+        }
+        double tDeltaX = stepCol != 0 ? this.cellSize / Math.abs(dx) : Double.POSITIVE_INFINITY;
+        double tDeltaY = stepRow != 0 ? this.cellSize / Math.abs(dy) : Double.POSITIVE_INFINITY;
+
+        double radius = candidates.getRadius();
+        double tEnter = 0;
+        int cellsLeft = Math.abs(endCol - col) + Math.abs(endRow - row);
+        while (true) {
+            double tExit = cellsLeft <= 0 ? 1 : Math.min(Math.min(tMaxX, tMaxY), 1);
+            if (radius > 0) {
+                offerCellsNear(x0 + tEnter * dx, y0 + tEnter * dy, x0 + tExit * dx, y0 + tExit * dy, radius,
+                                candidates);
+            } else {
+                offerCell(col, row, candidates);
+            }
+            if (cellsLeft <= 0 || candidates.isSettledBefore(tExit * length)) {
+                return;
+            }
+            // never pass the end column / row, even if the floating point calculation says so
+            boolean stepInCol = row == endRow || (col != endCol && tMaxX < tMaxY);
+            if (stepInCol) {
+                col += stepCol;
+                tMaxX += tDeltaX;
+            } else {
+                row += stepRow;
+                tMaxY += tDeltaY;
+            }
+            tEnter = tExit;
+            cellsLeft--;
+        }
+    }
+
+    /**
+     * Offer to the candidates the collidables in all the cells that are closer than the radius
+     * to a part of the trajectory (given by its start & end).
+     *
+     * @param xa x value where the trajectory part starts
+     * @param ya y value where the trajectory part starts
+     * @param xb x value where the trajectory part ends
+     * @param yb y value where the trajectory part ends
+     * @param radius the distance from the trajectory part to offer the cells within
+     * @param candidates to offer the collidables to
+     */
+    private void offerCellsNear(double xa, double ya, double xb, double yb, double radius,
+                                CollisionCandidates candidates) {
+        int minCol = toCell(Math.min(xa, xb) - radius);
+        int maxCol = toCell(Math.max(xa, xb) + radius);
+        int minRow = toCell(Math.min(ya, yb) - radius);
+        int maxRow = toCell(Math.max(ya, yb) + radius);
+        for (int col = minCol; col <= maxCol; col++) {
+            for (int row = minRow; row <= maxRow; row++) {
+                offerCell(col, row, candidates);
+            }
+        }
+    }
+
+    /**
+     * Offer all the collidables in a cell to the candidates.
+     *
+     * @param col the column of the cell
+     * @param row the row of the cell
+     * @param candidates to offer the collidables to
+     */
+    private void offerCell(int col, int row, CollisionCandidates candidates) {
+        int slot = findSlot(key(col, row), false);
+        if (slot < 0) {
+            return;
+        }
+        IndexedCollidable[] cell = this.cells[slot];
+        for (int i = 0; i < this.counts[slot]; i++) {
+            candidates.offer(cell[i]);
+        }
+    }
+
+    /**
+     * Get the column / row of the cell that contains a x / y value.
+     *
+     * @param value x or y value
+     * @return the column (for x) or row (for y) of the cell
+     */
+    private int toCell(double value) {
+        return (int) Math.floor(value / this.cellSize);
+    }
+
+    /**
+     * Pack the column & row of cell to one key.
+     *
+     * @param col the column of the cell
+     * @param row the row of the cell
+     * @return the key of the cell
+     */
+    private static long key(int col, int row) {
+        return ((long) col << 32) | (row & 0xffffffffL);
+    }
+
+    /**
+     * Mix the bits of a cell key, so near cells won't be in near slots of the hash table.
+     *
+     * @param key of the cell
+     * @return hash of the key
+     */
+    private static int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    /**
+     * Find the slot of a cell in the hash table.
+     *
+     * @param key of the cell
+     * @param create whether to create the cell if it isn't in the table
+     * @return the slot of the cell, or -1 if it isn't in the table (and create is false)
+     */
+    private int findSlot(long key, boolean create) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.cells[slot] != null) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return -1;
+        }
+        // keep the table at most half full, so the probing stays short
+        if ((this.usedSlots + 1) * 2 > this.keys.length) {
+            rehash();
+            return findSlot(key, true);
+        }
+        this.keys[slot] = key;
+        this.cells[slot] = new IndexedCollidable[START_CELL_CAPACITY];
+        this.counts[slot] = 0;
+        this.usedSlots++;
+        return slot;
+    }
+
+    /**
+     * Double the hash table size, and put the cells again in the new table.
+     */
+    private void rehash() {
+        long[] oldKeys = this.keys;
+        IndexedCollidable[][] oldCells = this.cells;
+        int[] oldCounts = this.counts;
+        this.keys = new long[oldKeys.length * 2];
+        this.cells = new IndexedCollidable[oldKeys.length * 2][];
+        this.counts = new int[oldKeys.length * 2];
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCells[i] == null) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]) & mask;
+            while (this.cells[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = oldKeys[i];
+            this.cells[slot] = oldCells[i];
+            this.counts[slot] = oldCounts[i];
+        }
+    }
+}
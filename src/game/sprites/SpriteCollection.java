@@ -4,8 +4,9 @@
 
 package game.sprites;
 
-import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import biuoop.DrawSurface;
 import game.axes.Rectangle;
 import game.axes.Velocity;
@@ -13,41 +14,201 @@ import game.axes.Velocity;
 /**
  * The class represents a SpriteCollection for gui, set that instances within cannot repeat.
  * It also have some methods to apply on the collection.
+ * The sprites are drawn by render layers - background, blocks, actors (paddle & balls) and HUD,
+ * so sprite of upper layer is drawn over the sprites of the lower layers, whenever it was added.
+ * Inside a layer the sprites are kept in OrderedIdentitySet by their adding (drawing) order - O(1) add / remove,
+ * and the passes over them run on the sets themselves.
+ * Layer can be declared as static - its sprites look the same as long as no sprite is added to / removed from it,
+ * and each layer has version that is increased on such change, so the drawing of static layer can be cached.
+ * Sprites that are added / removed during a pass [like blocks that are removed when they are hit]
+ * are kept in a buffer by their order, and the buffer is applied when the pass ends,
+ * so the pass calls exactly the sprites that were in the collection when it started.
  */
 public class SpriteCollection {
 
-    /** List that is the 'collection' of the sprite. */
-    private List<Sprite> spritesList;
+    /** The layer of the background of the level, drawn first. */
+    public static final int BACKGROUND_LAYER = 0;
+    /** The layer of the blocks. */
+    public static final int BLOCK_LAYER = 1;
+    /** The layer of the moving sprites (paddle, balls), the default layer. */
+    public static final int ACTOR_LAYER = 2;
+    /** The layer of the indicators (score, lives), drawn last. */
+    public static final int HUD_LAYER = 3;
+    /** How much layers there are. */
+    public static final int LAYER_COUNT = 4;
+
+    /** Start capacity of the pending arrays. */
+    private static final int START_CAPACITY = 16;
+    /** The pending layer of removal. */
+    private static final int REMOVAL = -1;
+
+    /** The sprites of each layer, by their adding order. */
+    private List<OrderedIdentitySet<Sprite>> layers;
+    /** Whether each layer is static (its sprites don't change their drawing by themselves). */
+    private boolean[] staticLayers;
+    /** The version of each layer, increased whenever sprite is added to / removed from it. */
+    private long[] layerVersions;
+    /** How much passes over the sprites are running right now [the sprites can't be changed till they end]. */
+    private int passes;
+    /** The sprites that were added / removed during the passes, by the order of the calls. */
+    private Sprite[] pendingSprites;
+    /** For each of the pending sprites, the layer it was added to, or REMOVAL if it was removed. */
+    private int[] pendingLayers;
+    /** How much additions / removals are pending. */
+    private int pendingCount;
+    /** The part of the way between the previous and current states that the interpolated sprites are drawn at. */
+    private double interpolation;
 
     /**
      * Constructor for the collection.
      */
     public SpriteCollection() {
-        this.spritesList = new ArrayList<Sprite>();
+        this.layers = new ArrayList<OrderedIdentitySet<Sprite>>();
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            this.layers.add(new OrderedIdentitySet<Sprite>());
+        }
+        this.staticLayers = new boolean[LAYER_COUNT];
+        this.layerVersions = new long[LAYER_COUNT];
+        this.passes = 0;
+        this.pendingSprites = new Sprite[START_CAPACITY];
+        this.pendingLayers = new int[START_CAPACITY];
+        this.pendingCount = 0;
+        this.interpolation = 1;
+    }
+
+    /**
+     * Get how much sprites are in the collection (without the pending additions / removals).
+     *
+     * @return number of sprites
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            size += this.layers.get(i).size();
+        }
+        return size;
+    }
+
+    /**
+     * Get the sprite at the given index of the drawing order (over all the layers).
+     *
+     * @param index of the sprite, 0 <= index < size()
+     * @return the sprite at that index
+     */
+    public Sprite getSprite(int index) {
+        int inLayer = index;
+        int layer = 0;
+        while (inLayer >= this.layers.get(layer).size()) {
+            inLayer -= this.layers.get(layer).size();
+            layer++;
+        }
+        return this.layers.get(layer).get(inLayer);
+    }
+
+    /**
+     * Get how much sprites are in a layer.
+     *
+     * @param layer index of the layer
+     * @return number of sprites in the layer
+     */
+    public int getLayerSize(int layer) {
+        return this.layers.get(layer).size();
+    }
+
+    /**
+     * Get the sprite at the given index of a layer (its drawing order inside the layer).
+     *
+     * @param layer index of the layer
+     * @param index of the sprite, 0 <= index < getLayerSize(layer)
+     * @return the sprite at that index
+     */
+    public Sprite getLayerSprite(int layer, int index) {
+        return this.layers.get(layer).get(index);
+    }
+
+    /**
+     * Get the version of a layer - it is increased whenever sprite is added to / removed from the layer.
+     *
+     * @param layer index of the layer
+     * @return the current version of the layer
+     */
+    public long getLayerVersion(int layer) {
+        return this.layerVersions[layer];
+    }
+
+    /**
+     * Check if a layer is static - its drawing is changed only when its version is changed.
+     *
+     * @param layer index of the layer
+     * @return true if the layer is static
+     */
+    public boolean isLayerStatic(int layer) {
+        return this.staticLayers[layer];
     }
 
     /**
-     * Add sprite to the collection, if it isn't null.
+     * Declare a layer as static (its drawing is changed only when its version is changed) or dynamic.
+     *
+     * @param layer index of the layer
+     * @param state true for static layer
+     */
+    public void setLayerStatic(int layer, boolean state) {
+        this.staticLayers[layer] = state;
+    }
+
+    /**
+     * Get how much additions / removals wait for the end of the running pass.
+     *
+     * @return number of pending additions / removals
+     */
+    public int getPendingCount() {
+        return this.pendingCount;
+    }
+
+    /**
+     * Add sprite to the actors layer of the collection, if it isn't null.
      * Each sprite can be only once in the collection.
+     * During a pass over the sprites, the sprite is added when the pass ends.
      *
      * @param s Sprite to add
      */
     public void addSprite(Sprite s) {
-        // avoid null Sprite or repeated sprite
-        if (s != null && !this.spritesList.contains(s)) {
-            this.spritesList.add(s);
+        addSprite(s, ACTOR_LAYER);
+    }
+
+    /**
+     * Add sprite to a layer of the collection, if it isn't null.
+     * Each sprite can be only once in the collection (in one layer).
+     * During a pass over the sprites, the sprite is added when the pass ends.
+     *
+     * @param s Sprite to add
+     * @param layer index of the layer, like BACKGROUND_LAYER
+     */
+    public void addSprite(Sprite s, int layer) {
+        if (s == null) {
+            return;
+        }
+        if (this.passes > 0) {
+            defer(s, layer);
+        } else {
+            insert(s, layer);
         }
     }
 
     /**
      * Remove sprite from the collection, if it isn't null, and within the collection.
+     * During a pass over the sprites, the sprite is removed when the pass ends.
      *
      * @param s Sprite to remove from the collection
      */
     public void removeSprite(Sprite s) {
-        // avoid null Sprite or not existed sprite
-        if (s != null && this.spritesList.contains(s)) {
-            this.spritesList.remove(s);
+        if (s == null) {
+            return;
+        }
+        if (this.passes > 0) {
+            defer(s, REMOVAL);
+        } else {
+            delete(s);
         }
     }
 
@@ -55,26 +216,162 @@ public class SpriteCollection {
      * Call timePassed() on all sprites.
      */
     public void notifyAllTimePassed() {
-        // Make a copy list of the sprites before iterating over them.
-        List<Sprite> sprites = new ArrayList<Sprite>(this.spritesList);
-        for (Sprite s : sprites) {
-            s.timePassed();
+        // the sprites that are added / removed meanwhile are changed at the end of the pass
+        this.passes++;
+        try {
+            for (int layer = 0; layer < LAYER_COUNT; layer++) {
+                OrderedIdentitySet<Sprite> sprites = this.layers.get(layer);
+                int size = sprites.size();
+                for (int i = 0; i < size; i++) {
+                    sprites.get(i).timePassed();
+                }
+            }
+        } finally {
+            endPass();
         }
     }
 
     /**
-     * Call drawOn(surface) on all sprites.
+     * Get the part of the way between the previous and current states that the interpolated sprites are drawn at.
      *
+     * @return the interpolation alpha [0-1], 1 for the current states
+     */
+    public double getInterpolation() {
+        return this.interpolation;
+    }
+
+    /**
+     * Set the part of the way between the previous and current states that the interpolated sprites
+     * (InterpolatedSprite) are drawn at, by the next drawings.
+     *
+     * @param alpha the interpolation alpha [0-1], 1 for the current states
+     */
+    public void setInterpolation(double alpha) {
+        this.interpolation = alpha;
+    }
+
+    /**
+     * Draw one sprite on the surface, between its previous and current states if it is interpolated sprite.
+     *
+     * @param s the sprite to draw
      * @param surface to draw the sprite on it.
      */
-    public void drawAllOn(DrawSurface surface) {
-        // Make a copy list of the sprites before iterating over them.
-        List<Sprite> sprites = new ArrayList<Sprite>(this.spritesList);
-        for (Sprite s : sprites) {
+    public void drawSprite(Sprite s, DrawSurface surface) {
+        if (this.interpolation < 1 && s instanceof InterpolatedSprite) {
+            ((InterpolatedSprite) s).drawOn(surface, this.interpolation);
+        } else {
             s.drawOn(surface);
         }
     }
 
+    /**
+     * Call drawOn(surface) on all sprites, layer after layer.
+     *
+     * @param surface to draw the sprite on it.
+     */
+    public void drawAllOn(DrawSurface surface) {
+        for (int layer = 0; layer < LAYER_COUNT; layer++) {
+            drawLayerOn(layer, surface);
+        }
+    }
+
+    /**
+     * Call drawOn(surface) on the sprites of one layer.
+     *
+     * @param layer index of the layer
+     * @param surface to draw the sprite on it.
+     */
+    public void drawLayerOn(int layer, DrawSurface surface) {
+        // the sprites that are added / removed meanwhile are changed at the end of the pass
+        OrderedIdentitySet<Sprite> sprites = this.layers.get(layer);
+        int size = sprites.size();
+        this.passes++;
+        try {
+            for (int i = 0; i < size; i++) {
+                drawSprite(sprites.get(i), surface);
+            }
+        } finally {
+            endPass();
+        }
+    }
+
+    /**
+     * End a pass over the sprites, and if no other pass runs, apply the pending additions / removals by their order.
+     */
+    private void endPass() {
+        this.passes--;
+        if (this.passes > 0) {
+            return;
+        }
+        for (int i = 0; i < this.pendingCount; i++) {
+            if (this.pendingLayers[i] == REMOVAL) {
+                delete(this.pendingSprites[i]);
+            } else {
+                insert(this.pendingSprites[i], this.pendingLayers[i]);
+            }
+            this.pendingSprites[i] = null;
+        }
+        this.pendingCount = 0;
+    }
+
+    /**
+     * Keep addition / removal of sprite till the running pass ends.
+     *
+     * @param s the sprite to add / remove
+     * @param layer the layer to add the sprite to, or REMOVAL for removal
+     */
+    private void defer(Sprite s, int layer) {
+        if (this.pendingCount == this.pendingSprites.length) {
+            this.pendingSprites = Arrays.copyOf(this.pendingSprites, this.pendingCount * 2);
+            this.pendingLayers = Arrays.copyOf(this.pendingLayers, this.pendingCount * 2);
+        }
+        this.pendingSprites[this.pendingCount] = s;
+        this.pendingLayers[this.pendingCount] = layer;
+        this.pendingCount++;
+    }
+
+    /**
+     * Add sprite at the end of a layer, if it isn't already in the collection.
+     *
+     * @param s the sprite to add. not null.
+     * @param layer index of the layer
+     */
+    private void insert(Sprite s, int layer) {
+        if (layerOf(s) >= 0) {
+            return;
+        }
+        this.layers.get(layer).add(s);
+        this.layerVersions[layer]++;
+    }
+
+    /**
+     * Remove sprite from its layer, the other sprites keep their order.
+     *
+     * @param s the sprite to remove. not existing sprite is ignored.
+     */
+    private void delete(Sprite s) {
+        int layer = layerOf(s);
+        if (layer >= 0) {
+            this.layers.get(layer).remove(s);
+            this.layerVersions[layer]++;
+        }
+    }
+
+    /**
+     * Find the layer of sprite.
+     *
+     * @param s the sprite to find
+     * @return index of its layer, or -1 if it isn't in the collection
+     */
+    private int layerOf(Sprite s) {
+        for (int layer = 0; layer < LAYER_COUNT; layer++) {
+            if (this.layers.get(layer).contains(s)) {
+                return layer;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Get the closest velocity - to a given velocity and given sprite -
      * that won't create intersection with other sprite.
@@ -97,9 +394,17 @@ public class SpriteCollection {
         }
         // collect the rectangles of the sprites in the collection [that are not the given, and have 'real' rectangle]
         ArrayList<Rectangle> rectangleList = new ArrayList<Rectangle>();
-        for (Sprite s : this.spritesList) {
-            if (s != givenSprite && s.getSpriteRectangle() != null) {
-                rectangleList.add(s.getSpriteRectangle());
+        for (int layer = 0; layer < LAYER_COUNT; layer++) {
+            OrderedIdentitySet<Sprite> sprites = this.layers.get(layer);
+            for (int i = 0; i < sprites.size(); i++) {
+                Sprite s = sprites.get(i);
+                // the balls of ball system are sprites by themselves
+                if (s != givenSprite && s instanceof BallSystem) {
+                    ((BallSystem) s).addSpriteRectangles(rectangleList);
+                }
+                if (s != givenSprite && s.getSpriteRectangle() != null) {
+                    rectangleList.add(s.getSpriteRectangle());
+                }
             }
         }
 